@@ -0,0 +1,310 @@
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applique les renommages directement au bytecode (ClassRemapper d'ASM).
+ * Les classes sont renommées d'après leur clé dans le projet (a/b/C.class -> a/b/C) ; les
+ * méthodes et champs d'après les renommages enregistrés, toujours par noms d'origine.
+ * Chaque classe est remappée depuis son bytecode d'origine : appliquer à nouveau les
+ * mappings ne cumule rien, et l'index des références reste sur les noms d'origine.
+ */
+public class BytecodeRemapper {
+    private final ClassBytesMap classBytes;
+    private final ReferenceManager referenceManager;
+    // Membres renommés (noms d'origine) -> nouveau nom
+    private final Map<MemberIndex.MemberRef, String> members = new LinkedHashMap<>();
+    // Vrai une fois les mappings appliqués : une classe relue depuis le JAR doit être remappée aussi
+    private volatile boolean applied;
+
+    public BytecodeRemapper(ClassBytesMap classBytes, ReferenceManager referenceManager) {
+        this.classBytes = classBytes;
+        this.referenceManager = referenceManager;
+    }
+
+    /**
+     * Enregistre le nouveau nom d'un membre (désigné par ses noms d'origine).
+     * Revenir au nom d'origine efface le renommage.
+     */
+    public synchronized void renameMember(MemberIndex.MemberRef member, String newName) {
+        if (member.name.equals(newName)) members.remove(member);
+        else members.put(member, newName);
+    }
+
+    /**
+     * Enregistre un renommage de méthode fait dans le code (par nom, tous propriétaires) :
+     * méthodes du projet qui portent actuellement ce nom, déjà renommées ou non.
+     */
+    public synchronized void recordMethodRename(String currentName, String newName) {
+        if (currentName.startsWith("<") || currentName.equals(newName)) return;
+        List<MemberIndex.MemberRef> renamed = new ArrayList<>();
+        for (Map.Entry<MemberIndex.MemberRef, String> e : members.entrySet()) {
+            if (e.getKey().kind == MemberIndex.Kind.METHOD && e.getValue().equals(currentName)) renamed.add(e.getKey());
+        }
+        for (MemberIndex.MemberRef m : referenceManager.getDeclaredMembers(MemberIndex.Kind.METHOD, currentName)) {
+            if (!members.containsKey(m)) renamed.add(m);
+        }
+        for (MemberIndex.MemberRef m : renamed) renameMember(m, newName);
+    }
+
+    /**
+     * Enregistre un renommage de champ fait dans le code. owner est le nom interne actuel de la
+     * classe qui le déclare (ses classes internes comprises) ; null = tous les propriétaires.
+     */
+    public synchronized void recordFieldRename(String owner, String currentName, String newName) {
+        if (currentName.equals(newName)) return;
+        Map<String, String> classes = classMapping();
+        List<MemberIndex.MemberRef> renamed = new ArrayList<>();
+        for (Map.Entry<MemberIndex.MemberRef, String> e : members.entrySet()) {
+            MemberIndex.MemberRef m = e.getKey();
+            if (m.kind == MemberIndex.Kind.FIELD && e.getValue().equals(currentName)
+                && ownedBy(classes.getOrDefault(m.owner, m.owner), owner)) renamed.add(m);
+        }
+        for (MemberIndex.MemberRef m : referenceManager.getDeclaredMembers(MemberIndex.Kind.FIELD, currentName)) {
+            if (!members.containsKey(m) && ownedBy(classes.getOrDefault(m.owner, m.owner), owner)) renamed.add(m);
+        }
+        System.out.println("DEBUG: Renommage de champ " + currentName + " -> " + newName + " : " + renamed.size() + " membres");
+        for (MemberIndex.MemberRef m : renamed) renameMember(m, newName);
+    }
+
+    private static boolean ownedBy(String type, String owner) {
+        return owner == null || type.equals(owner) || type.startsWith(owner + "$");
+    }
+
+    /**
+     * Renommages de classes : nom interne d'origine -> nom tiré de la clé actuelle.
+     * Les classes imbriquées suivent leur classe englobante si leur clé n'a pas bougé.
+     * Les classes chargées seules (sans entrée de JAR) ne sont pas suivies.
+     */
+    public Map<String, String> classMapping() {
+        Map<String, String> classes = new TreeMap<>();
+        List<String> unchanged = new ArrayList<>();
+        for (String key : classBytes.keySet()) {
+            String entry = classBytes.originalEntryName(key);
+            if (entry == null || !entry.endsWith(".class") || !key.endsWith(".class")) continue;
+            String from = entry.substring(0, entry.length() - 6);
+            String to = key.substring(0, key.length() - 6);
+            if (!from.equals(to)) classes.put(from, to);
+            else if (from.indexOf('$') > 0) unchanged.add(from);
+        }
+        for (String nested : unchanged) {
+            // Englobante renommée la plus proche : a/B$C$1 -> a/B$C puis a/B
+            for (int i = nested.lastIndexOf('$'); i > 0; i = nested.lastIndexOf('$', i - 1)) {
+                String outer = classes.get(nested.substring(0, i));
+                if (outer != null) {
+                    classes.put(nested, outer + nested.substring(i));
+                    break;
+                }
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Mappings actuels, à exporter.
+     */
+    public synchronized MappingFiles.Mappings toMappings() {
+        MappingFiles.Mappings m = new MappingFiles.Mappings();
+        m.classes.putAll(classMapping());
+        m.members.putAll(members);
+        return m;
+    }
+
+    /**
+     * Reprend les membres d'un fichier de mappings et retourne les renommages de clés
+     * (clé actuelle -> nouvelle clé) à faire pour ses classes.
+     */
+    public synchronized Map<String, String> importMappings(MappingFiles.Mappings mappings) {
+        for (Map.Entry<MemberIndex.MemberRef, String> e : mappings.members.entrySet()) {
+            MemberIndex.MemberRef ref = e.getKey();
+            if (!ref.desc.isEmpty()) {
+                renameMember(ref, e.getValue());
+                continue;
+            }
+            // Champ SRG sans descripteur : repris de la déclaration dans le projet
+            for (MemberIndex.MemberRef declared : referenceManager.getDeclaredMembers(ref.kind, ref.name)) {
+                if (declared.owner.equals(ref.owner)) renameMember(declared, e.getValue());
+            }
+        }
+        Map<String, String> renameMap = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : mappings.classes.entrySet()) {
+            String key = classBytes.keyForEntry(e.getKey() + ".class");
+            String newKey = e.getValue() + ".class";
+            if (key == null || key.equals(newKey)) continue;
+            if (classBytes.containsKey(newKey)) {
+                System.out.println("DEBUG: ✗ Mapping ignoré, clé déjà utilisée : " + newKey);
+                continue;
+            }
+            renameMap.put(key, newKey);
+        }
+        return renameMap;
+    }
+
+    /**
+     * Oublie les renommages de membres (nouveau projet).
+     */
+    public synchronized void clear() {
+        members.clear();
+        applied = false;
+    }
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    /**
+     * Applique tous les renommages au bytecode. Seules les classes touchées (renommées,
+     * qui référencent une classe ou un membre renommé, ou déjà remappées) sont traitées.
+     * Retourne les clés dont le bytecode a changé, à redécompiler.
+     */
+    public Set<String> apply() {
+        Map<String, String> classes = classMapping();
+        Map<MemberIndex.MemberRef, String> snapshot;
+        synchronized (this) {
+            snapshot = new LinkedHashMap<>(members);
+        }
+        Set<String> impacted = new LinkedHashSet<>();
+        for (String key : classBytes.keySet()) {
+            if (classBytes.isRemapped(key)) impacted.add(key);
+        }
+        for (String to : classes.values()) impacted.addAll(referenceManager.getClassRenameImpact(to + ".class"));
+        for (MemberIndex.MemberRef m : snapshot.keySet()) impacted.addAll(referenceManager.getMemberRenameImpact(m));
+        Set<String> changed = remap(impacted, classes, snapshot);
+        applied = true;
+        return changed;
+    }
+
+    /**
+     * Remappe des classes relues depuis le JAR (mise à jour), si les mappings ont déjà été appliqués.
+     */
+    public Set<String> reapply(Collection<String> keys) {
+        if (!applied) return new HashSet<>();
+        Map<MemberIndex.MemberRef, String> snapshot;
+        synchronized (this) {
+            snapshot = new LinkedHashMap<>(members);
+        }
+        return remap(keys, classMapping(), snapshot);
+    }
+
+    private Set<String> remap(Collection<String> keys, Map<String, String> classes, Map<MemberIndex.MemberRef, String> memberNames) {
+        long t0 = System.nanoTime();
+        // Format SimpleRemapper : classe, owner.nom+descripteur (méthode), owner.nom (champ)
+        Map<String, String> mapping = new HashMap<>(classes);
+        Map<String, String> lambdaNames = new HashMap<>();
+        for (Map.Entry<MemberIndex.MemberRef, String> e : memberNames.entrySet()) {
+            MemberIndex.MemberRef m = e.getKey();
+            if (m.kind == MemberIndex.Kind.METHOD) {
+                mapping.put(m.owner + "." + m.name + m.desc, e.getValue());
+                lambdaNames.put(m.owner + "." + m.name, e.getValue());
+            } else {
+                mapping.put(m.owner + "." + m.name, e.getValue());
+            }
+        }
+        Map<String, List<String>> hierarchy = new ConcurrentHashMap<>();
+        Set<String> changed = ConcurrentHashMap.newKeySet();
+        new ArrayList<>(keys).parallelStream().forEach(key -> {
+            byte[] original = classBytes.getOriginal(key);
+            if (original == null || original.length == 0) return;
+            try {
+                Mapper mapper = new Mapper(mapping, lambdaNames, hierarchy);
+                ClassWriter writer = new ClassWriter(0);
+                new ClassReader(original).accept(new ClassRemapper(writer, mapper), 0);
+                if (mapper.hit) {
+                    classBytes.putRemapped(key, writer.toByteArray());
+                    changed.add(key);
+                } else if (classBytes.isRemapped(key)) {
+                    classBytes.restoreOriginal(key);
+                    changed.add(key);
+                }
+            } catch (RuntimeException ex) {
+                System.out.println("DEBUG: ✗ Remappage impossible de " + key + " : " + ex);
+            }
+        });
+        System.out.println("DEBUG: Remappage du bytecode : " + changed.size() + "/" + keys.size() + " classes modifiées en "
+                           + (System.nanoTime() - t0) / 1_000_000 + " ms");
+        return changed;
+    }
+
+    /**
+     * SimpleRemapper qui résout les méthodes et champs en remontant la hiérarchie du projet
+     * (appel via une sous-classe, redéfinition) et note si un renommage a servi.
+     */
+    private class Mapper extends SimpleRemapper {
+        private final Map<String, String> lambdaNames;
+        private final Map<String, List<String>> hierarchy;
+        boolean hit;
+
+        Mapper(Map<String, String> mapping, Map<String, String> lambdaNames, Map<String, List<String>> hierarchy) {
+            super(mapping);
+            this.lambdaNames = lambdaNames;
+            this.hierarchy = hierarchy;
+        }
+
+        @Override
+        public String map(String key) {
+            String mapped = super.map(key);
+            if (mapped != null) hit = true;
+            return mapped;
+        }
+
+        @Override
+        public String mapMethodName(String owner, String name, String descriptor) {
+            if (name.startsWith("<")) return name;
+            for (String type : typeAndSupertypes(owner)) {
+                String mapped = map(type + "." + name + descriptor);
+                if (mapped != null) return mapped;
+            }
+            return name;
+        }
+
+        @Override
+        public String mapFieldName(String owner, String name, String descriptor) {
+            for (String type : typeAndSupertypes(owner)) {
+                String mapped = map(type + "." + name);
+                if (mapped != null) return mapped;
+            }
+            return name;
+        }
+
+        @Override
+        public String mapRecordComponentName(String owner, String name, String descriptor) {
+            return mapFieldName(owner, name, descriptor);
+        }
+
+        @Override
+        public String mapInvokeDynamicMethodName(String name, String descriptor) {
+            // Lambda : le nom est celui de la méthode de l'interface fonctionnelle (type retourné)
+            Type type = Type.getReturnType(descriptor);
+            if (type.getSort() != Type.OBJECT) return name;
+            for (String owner : typeAndSupertypes(type.getInternalName())) {
+                String mapped = lambdaNames.get(owner + "." + name);
+                if (mapped != null) {
+                    hit = true;
+                    return mapped;
+                }
+            }
+            return name;
+        }
+
+        // Type puis ses super-types connus du projet, du plus proche au plus lointain
+        private List<String> typeAndSupertypes(String owner) {
+            return hierarchy.computeIfAbsent(owner, o -> {
+                List<String> result = new ArrayList<>();
+                Set<String> seen = new HashSet<>();
+                Deque<String> queue = new ArrayDeque<>();
+                queue.add(o);
+                while (!queue.isEmpty()) {
+                    String t = queue.poll();
+                    if (!seen.add(t)) continue;
+                    result.add(t);
+                    queue.addAll(referenceManager.getSupertypes(t));
+                }
+                return result;
+            });
+        }
+    }
+}
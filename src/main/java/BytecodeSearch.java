@@ -0,0 +1,225 @@
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import java.util.*;
+
+/**
+ * Recherche directement dans le bytecode, sans décompiler : constantes LDC (chaînes, nombres,
+ * classes), constantes des champs, chaînes des invokedynamic (concaténations), appels de
+ * méthodes, accès aux champs et références de types (new, checkcast, extends...).
+ * Une requête peut combiner plusieurs termes avec "&&" : ils doivent tous apparaître dans
+ * la même méthode ("setUnlocalizedName && palamod:" = appels avec cette constante).
+ */
+public final class BytecodeSearch {
+
+    /**
+     * Une occurrence dans une méthode (ou dans l'en-tête / un champ de la classe).
+     */
+    public static class Match {
+        public final String member;
+        public final String description;
+        // Texte à chercher dans le code décompilé pour se placer sur l'occurrence
+        public final String needle;
+
+        Match(String member, String description, String needle) {
+            this.member = member;
+            this.description = description;
+            this.needle = needle;
+        }
+    }
+
+    // Élément du bytecode : texte comparé à la requête + affichage
+    private static class Item {
+        final String text;
+        final String description;
+        final String needle;
+
+        Item(String text, String description, String needle) {
+            this.text = text;
+            this.description = description;
+            this.needle = needle;
+        }
+    }
+
+    private BytecodeSearch() {}
+
+    /**
+     * Découpe une requête en termes ("a && b"), chacun compilé avec les mêmes options.
+     */
+    public static List<SearchQuery> compileTerms(String text, boolean regex, boolean wholeWord, boolean ignoreCase) {
+        List<SearchQuery> terms = new ArrayList<>();
+        for (String part : text.split("&&")) {
+            String term = part.trim();
+            if (!term.isEmpty()) terms.add(SearchQuery.compile(term, regex, wholeWord, ignoreCase));
+        }
+        return terms;
+    }
+
+    /**
+     * Occurrences des termes dans une classe, dans l'ordre du bytecode.
+     * Un membre n'est retenu que si chaque terme y trouve au moins un élément.
+     */
+    public static List<Match> search(byte[] bytes, List<SearchQuery> terms) {
+        List<Match> matches = new ArrayList<>();
+        if (bytes == null || bytes.length == 0 || terms.isEmpty()) return matches;
+        Map<String, List<Item>> items = new LinkedHashMap<>();
+        try {
+            new ClassReader(bytes).accept(new Collector(items), ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
+        } catch (Exception e) {
+            // Classe illisible (obfuscation) : ignorée
+            return matches;
+        }
+        for (Map.Entry<String, List<Item>> e : items.entrySet()) {
+            boolean[] termFound = new boolean[terms.size()];
+            List<Item> hits = new ArrayList<>();
+            for (Item item : e.getValue()) {
+                boolean hit = false;
+                for (int t = 0; t < terms.size(); t++) {
+                    if (terms.get(t).finder(item.text).find(0) >= 0) {
+                        termFound[t] = true;
+                        hit = true;
+                    }
+                }
+                if (hit) hits.add(item);
+            }
+            boolean all = true;
+            for (boolean found : termFound) all &= found;
+            if (!all) continue;
+            Set<String> seen = new HashSet<>();
+            for (Item item : hits) {
+                if (seen.add(item.description)) matches.add(new Match(e.getKey(), item.description, item.needle));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Visiteur en flux : un élément par constante ou référence, regroupé par membre.
+     */
+    private static class Collector extends ClassVisitor {
+        private final Map<String, List<Item>> items;
+        private List<Item> current;
+        private final MethodVisitor methodVisitor;
+
+        Collector(Map<String, List<Item>> items) {
+            super(Opcodes.ASM9);
+            this.items = items;
+            this.methodVisitor = new MethodVisitor(Opcodes.ASM9) {
+                @Override
+                public void visitLdcInsn(Object value) {
+                    addConstant("ldc", value);
+                }
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                    String target = dotted(owner) + "." + name;
+                    // Un constructeur apparaît sous le nom simple de sa classe dans le code décompilé
+                    String needle = name.equals("<init>") ? simpleName(owner) : name;
+                    current.add(new Item(target + descriptor, "appel " + target + descriptor, needle));
+                }
+
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                    String target = dotted(owner) + "." + name;
+                    String access = opcode == Opcodes.PUTFIELD || opcode == Opcodes.PUTSTATIC ? "écriture " : "lecture ";
+                    current.add(new Item(target + ":" + descriptor, access + target, name));
+                }
+
+                @Override
+                public void visitTypeInsn(int opcode, String type) {
+                    String op = opcode == Opcodes.NEW ? "new " : opcode == Opcodes.CHECKCAST ? "checkcast "
+                              : opcode == Opcodes.INSTANCEOF ? "instanceof " : "new[] ";
+                    addType(op, type);
+                }
+
+                @Override
+                public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+                    addType("new[] ", Type.getType(descriptor).getElementType().getInternalName());
+                }
+
+                @Override
+                public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrap, Object... args) {
+                    // Les concaténations (StringConcatFactory) gardent leurs morceaux constants ici
+                    for (Object arg : args) {
+                        if (arg instanceof String) addConstant("indy", arg);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            current = items.computeIfAbsent("<classe>", k -> new ArrayList<>());
+            if (superName != null) addType("extends ", superName);
+            if (interfaces != null) {
+                for (String iface : interfaces) addType("implements ", iface);
+            }
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            if (value != null) {
+                current = items.computeIfAbsent(name, k -> new ArrayList<>());
+                addConstant("const", value);
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            current = items.computeIfAbsent(name + descriptor, k -> new ArrayList<>());
+            return methodVisitor;
+        }
+
+        private void addConstant(String op, Object value) {
+            if (value instanceof String) {
+                String s = (String) value;
+                current.add(new Item(s, op + " \"" + preview(s) + "\"", firstLine(s)));
+            } else if (value instanceof Type) {
+                Type type = (Type) value;
+                if (type.getSort() == Type.ARRAY) type = type.getElementType();
+                if (type.getSort() == Type.OBJECT) addType(op + " ", type.getInternalName());
+            } else if (value instanceof Number || value instanceof Character) {
+                String s = String.valueOf(value);
+                current.add(new Item(s, op + " " + s, s));
+            }
+        }
+
+        private void addType(String op, String internalName) {
+            String name = dotted(internalName);
+            current.add(new Item(name, op + name, simpleName(internalName)));
+        }
+    }
+
+    private static String dotted(String internalName) {
+        return internalName.replace('/', '.');
+    }
+
+    private static String simpleName(String internalName) {
+        String name = internalName.substring(internalName.lastIndexOf('/') + 1);
+        return name.substring(name.lastIndexOf('$') + 1);
+    }
+
+    private static String preview(String s) {
+        // \u0001 = emplacement d'une valeur dans une recette de concaténation
+        String p = s.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t").replace("\u0001", "{}");
+        return p.length() > 100 ? p.substring(0, 100) + "..." : p;
+    }
+
+    private static String firstLine(String s) {
+        int cut = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            // Caractères échappés dans le code décompilé : on s'arrête avant
+            if (c == '\n' || c == '\r' || c == '\t' || c == '"' || c == '\\' || c < 32) {
+                cut = i;
+                break;
+            }
+        }
+        return s.substring(0, cut);
+    }
+}
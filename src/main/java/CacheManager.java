@@ -1,35 +1,360 @@
-import java.io.File;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * Gère le cache de décompilation.
+ * Les entrées sont adressées par le contenu : hash des bytes de la classe, des réglages
+ * du décompilateur et de la version de Procyon. Une classe inchangée entre deux versions
+ * d'un JAR retrouve donc son code, et une classe modifiée ne renvoie jamais un code périmé.
+ * Le stockage est un fichier unique compacté (voir {@link PackedCacheStore}), chaque entrée
+ * est compressée (deflate) et le total est borné par un budget avec éviction LRU.
  */
 public class CacheManager {
+    // Ancienne disposition : un fichier .java par classe + index.txt
+    private static final String LEGACY_INDEX_FILE = "index.txt";
+    // Format des entrées, inclus dans la clé : changer de format invalide les anciennes entrées
+    private static final String ENTRY_FORMAT = "deflate-1";
+    private static final byte CODEC_RAW = 0;
+    private static final byte CODEC_DEFLATE = 1;
+    // Budget par défaut, modifiable avec -Dpaladium.cache.maxMB=... (prioritaire sur le réglage enregistré)
+    private static final long DEFAULT_MAX_BYTES = Long.getLong("paladium.cache.maxMB", 512) * 1024 * 1024;
+    // Budget maximal accepté, en Mo
+    public static final long MAX_BUDGET_MB = 64 * 1024;
+    // Réglages du cache, à côté du magasin (non effacés par clearCache)
+    private static final String SETTINGS_FILE = "cache.properties";
+    private static final String BUDGET_SETTING = "maxMB";
+
     private final File cacheDir;
-    
+    private final PackedCacheStore store;
+    private volatile boolean opened = false;
+    private volatile long maxBytes = DEFAULT_MAX_BYTES;
+    // Ordre d'accès des clés (la moins récemment utilisée en premier)
+    private final LinkedHashMap<String, Boolean> lru = new LinkedHashMap<>(1024, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
     public CacheManager(File cacheDir) {
         this.cacheDir = cacheDir;
+        this.store = new PackedCacheStore(cacheDir);
+        if (System.getProperty("paladium.cache.maxMB") == null) loadBudget();
+    }
+
+    // Budget enregistré par setMaxBytes lors d'une session précédente
+    private void loadBudget() {
+        File file = new File(cacheDir, SETTINGS_FILE);
+        if (!file.isFile()) return;
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+            long mb = Long.parseLong(props.getProperty(BUDGET_SETTING, "").trim());
+            if (mb > 0 && mb <= MAX_BUDGET_MB) maxBytes = mb * 1024 * 1024;
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("DEBUG CACHE: réglages du cache illisibles : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Calcule la clé de cache d'une classe (SHA-256 en hexadécimal).
+     */
+    public String computeKey(byte[] classBytes, String settingsFingerprint) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(classBytes);
+            md.update((byte) 0);
+            md.update(settingsFingerprint.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(com.strobel.Procyon.version().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(ENTRY_FORMAT.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Retourne le code en cache pour cette clé, ou null s'il est absent.
+     */
+    public String get(String key) {
+        return read(key, CacheManager::decode);
+    }
+
+    /**
+     * Retourne les octets d'une entrée écrite par putRaw, en tranche du fichier mappé (sans
+     * copie), ou null s'ils sont absents. La tranche est à lire tout de suite : une compaction
+     * ou clearCache abandonne le fichier.
+     */
+    public ByteBuffer getMapped(String key) {
+        return read(key, slice -> {
+            if (slice.get(slice.position()) != CODEC_RAW) return ByteBuffer.wrap(decodeBytes(slice));
+            slice.position(slice.position() + 5);
+            return slice.slice();
+        });
+    }
+
+    private interface Decoder<T> {
+        T decode(ByteBuffer slice) throws DataFormatException;
+    }
+
+    private <T> T read(String key, Decoder<T> decoder) {
+        if (!ensureOpen()) return null;
+        try {
+            ByteBuffer slice = store.read(key);
+            if (slice == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            T value = decoder.decode(slice);
+            hits.incrementAndGet();
+            store.touch(key);
+            synchronized (lru) {
+                lru.get(key);
+            }
+            return value;
+        } catch (IOException | DataFormatException e) {
+            System.out.println("DEBUG CACHE: lecture impossible pour " + key + " : " + e.getMessage());
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Écrit une entrée compressée dans le cache, puis évince les moins récentes si le budget est dépassé.
+     */
+    public void put(String key, String code) throws IOException {
+        write(key, encode(code.getBytes(StandardCharsets.UTF_8)));
     }
-    
+
     /**
-     * Vide le cache.
+     * Écrit des octets non compressés (instantanés binaires), relus par getMapped directement
+     * dans le fichier mappé. L'entrée compte dans le budget et part avec clearCache.
      */
-    public void clearCache() {
-        if (cacheDir.exists()) {
-            for (File f : cacheDir.listFiles()) {
-                if (f.isFile()) {
-                    f.delete();
+    public void putRaw(String key, byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 5);
+        out.write(CODEC_RAW);
+        writeInt(out, data.length);
+        out.write(data, 0, data.length);
+        write(key, out.toByteArray());
+    }
+
+    private void write(String key, byte[] entry) throws IOException {
+        if (!ensureOpen()) return;
+        store.write(key, entry);
+        synchronized (lru) {
+            lru.put(key, Boolean.TRUE);
+        }
+        enforceBudget();
+    }
+
+    private synchronized void enforceBudget() throws IOException {
+        while (store.getLiveBytes() > maxBytes) {
+            String eldest;
+            synchronized (lru) {
+                Iterator<String> it = lru.keySet().iterator();
+                if (!it.hasNext()) break;
+                eldest = it.next();
+                it.remove();
+            }
+            store.remove(eldest);
+            evictions.incrementAndGet();
+        }
+        if (store.needsCompaction()) store.compact();
+    }
+
+    private static byte[] encode(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 3 + 16);
+            out.write(CODEC_DEFLATE);
+            writeInt(out, raw.length);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            if (out.size() < raw.length + 5) return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+        // Incompressible : stocké tel quel
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length + 5);
+        out.write(CODEC_RAW);
+        writeInt(out, raw.length);
+        out.write(raw, 0, raw.length);
+        return out.toByteArray();
+    }
+
+    private static String decode(ByteBuffer slice) throws DataFormatException {
+        if (slice.get(slice.position()) == CODEC_RAW) {
+            slice.position(slice.position() + 5);
+            return StandardCharsets.UTF_8.decode(slice).toString();
+        }
+        return new String(decodeBytes(slice), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decodeBytes(ByteBuffer slice) throws DataFormatException {
+        byte codec = slice.get();
+        int rawLength = slice.getInt();
+        if (codec == CODEC_RAW) {
+            byte[] raw = new byte[slice.remaining()];
+            slice.get(raw);
+            return raw;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            // Décompression directement depuis la tranche mappée
+            inflater.setInput(slice);
+            byte[] raw = new byte[rawLength];
+            int off = 0;
+            while (off < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, off, rawLength - off);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("entrée tronquée");
                 }
+                off += n;
             }
+            return off == rawLength ? raw : Arrays.copyOf(raw, off);
+        } finally {
+            inflater.end();
         }
     }
-    
+
+    private static void writeInt(ByteArrayOutputStream out, int v) {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+
+    public boolean contains(String key) {
+        return ensureOpen() && store.contains(key);
+    }
+
+    public int size() {
+        return ensureOpen() ? store.size() : 0;
+    }
+
+    /**
+     * Fixe le budget disque du cache (octets compressés, entre 1 Mo et MAX_BUDGET_MB) et
+     * l'enregistre pour les sessions suivantes.
+     */
+    public void setMaxBytes(long maxBytes) throws IOException {
+        if (maxBytes < 1024 * 1024 || maxBytes > MAX_BUDGET_MB * 1024 * 1024) {
+            throw new IllegalArgumentException("budget hors limites (1 à " + MAX_BUDGET_MB + " Mo)");
+        }
+        this.maxBytes = maxBytes;
+        ensureCacheDir();
+        Properties props = new Properties();
+        props.setProperty(BUDGET_SETTING, Long.toString(maxBytes / (1024 * 1024)));
+        try (OutputStream out = new FileOutputStream(new File(cacheDir, SETTINGS_FILE))) {
+            props.store(out, "Réglages du cache de décompilation");
+        }
+        if (ensureOpen()) enforceBudget();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getSizeBytes() {
+        return ensureOpen() ? store.getLiveBytes() : 0;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Résumé lisible des compteurs, pour régler le budget.
+     */
+    public String getStatsSummary() {
+        long h = hits.get(), m = misses.get();
+        return String.format("Entrées : %d%nTaille : %.1f Mo / %.1f Mo%nHits : %d  Misses : %d  (%.0f %%)%nÉvictions : %d",
+                             size(), getSizeBytes() / 1048576.0, maxBytes / 1048576.0,
+                             h, m, (h + m) == 0 ? 0.0 : 100.0 * h / (h + m), evictions.get());
+    }
+
+    /**
+     * Récupère l'espace des entrées remplacées ou supprimées.
+     */
+    public void compact() throws IOException {
+        if (ensureOpen()) store.compact();
+    }
+
+    private boolean ensureOpen() {
+        if (opened) return true;
+        synchronized (this) {
+            if (opened) return true;
+            try {
+                store.open();
+                opened = true;
+                deleteLegacyFiles();
+                synchronized (lru) {
+                    // Ordre d'utilisation noté dans l'index : la LRU reprend où la session précédente s'est arrêtée
+                    for (String key : store.keysInUseOrder()) lru.put(key, Boolean.TRUE);
+                }
+                enforceBudget();
+            } catch (IOException e) {
+                System.out.println("DEBUG CACHE: cache indisponible : " + e.getMessage());
+            }
+            return opened;
+        }
+    }
+
+    // Supprime les fichiers de l'ancienne disposition (un .java par classe, instantanés
+    // refs-*.idx hors du magasin) : ils ne seraient plus jamais relus
+    private void deleteLegacyFiles() {
+        new File(cacheDir, LEGACY_INDEX_FILE).delete();
+        File[] files = cacheDir.listFiles((d, name) -> name.endsWith(".java")
+                || (name.startsWith("refs-") && name.endsWith(".idx")));
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+    }
+
+    /**
+     * Vide le cache (bascule en O(1) vers un fichier vide).
+     */
+    public synchronized void clearCache() {
+        try {
+            if (ensureOpen()) store.clear();
+            synchronized (lru) {
+                lru.clear();
+            }
+        } catch (IOException e) {
+            System.out.println("DEBUG CACHE: impossible de vider le cache : " + e.getMessage());
+        }
+    }
+
     /**
      * Vérifie si le cache existe.
      */
     public boolean cacheExists() {
         return cacheDir.exists();
     }
-    
+
     /**
      * Crée le répertoire de cache s'il n'existe pas.
      */
@@ -39,4 +364,3 @@ public class CacheManager {
         }
     }
 }
-
@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map nom de classe -> bytecode dont les entrées peuvent rester dans le JAR.
+ * Une entrée paresseuse n'est lue qu'au premier accès, puis gardée par une
+ * SoftReference : le GC peut la libérer sous pression mémoire, elle sera relue au besoin.
+ * Les entrées ajoutées avec put() sont gardées normalement.
+ */
+public class ClassBytesMap extends AbstractMap<String, byte[]> {
+
+    // Référence vers une entrée du JAR, avec cache souple des bytes
+    private static class LazyEntry {
+        final JarSource source;
+        final String entryName;
+        volatile SoftReference<byte[]> cached;
+
+        LazyEntry(JarSource source, String entryName) {
+            this.source = source;
+            this.entryName = entryName;
+        }
+
+        byte[] load() {
+            SoftReference<byte[]> ref = cached;
+            byte[] bytes = ref != null ? ref.get() : null;
+            if (bytes != null) return bytes;
+            try {
+                bytes = source.read(entryName);
+            } catch (IOException e) {
+                System.out.println("DEBUG: ✗ Lecture impossible de " + entryName + " : " + e.getMessage());
+                bytes = null;
+            }
+            if (bytes == null) bytes = new byte[0];
+            cached = new SoftReference<>(bytes);
+            return bytes;
+        }
+    }
+
+    // Bytecode remappé (renommages appliqués) ; l'entrée d'origine reste connue pour
+    // remapper à nouveau depuis les noms d'origine et suivre les mises à jour du JAR
+    private static class Remapped {
+        final Object original;
+        final byte[] bytes;
+
+        Remapped(Object original, byte[] bytes) {
+            this.original = original;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Résultat de la mise à jour vers une nouvelle version du JAR (clés courantes,
+     * donc après renommage éventuel).
+     */
+    public static class JarDiff {
+        public final List<String> added = new ArrayList<>();
+        public final List<String> removed = new ArrayList<>();
+        public final List<String> changed = new ArrayList<>();
+        // Nouvelles entrées non ajoutées : une classe renommée occupe déjà leur nom
+        public final List<String> skipped = new ArrayList<>();
+        public int unchanged;
+        // Clé courante -> nom de l'entrée dans le JAR (différent si la classe a été renommée)
+        public final Map<String, String> entryNames = new HashMap<>();
+
+        @Override
+        public String toString() {
+            return added.size() + " ajoutée(s), " + removed.size() + " supprimée(s), "
+                 + changed.size() + " modifiée(s), " + unchanged + " inchangée(s)"
+                 + (skipped.isEmpty() ? "" : ", " + skipped.size() + " ignorée(s)");
+        }
+    }
+
+    // Valeur = byte[] (entrée en mémoire), LazyEntry (entrée dans le JAR) ou Remapped
+    private final Map<String, Object> entries = new ConcurrentHashMap<>();
+    // Nom d'entrée d'origine -> clé courante (vérifiée à la lecture : keySet().remove ne le suit pas)
+    private final Map<String, String> keyByEntry = new ConcurrentHashMap<>();
+    private final List<JarSource> sources = new ArrayList<>();
+
+    /**
+     * Enregistre toutes les classes d'une source sans les lire.
+     */
+    public synchronized List<String> attach(JarSource source) {
+        sources.add(source);
+        List<String> names = new ArrayList<>(source.classEntryNames());
+        for (String name : names) {
+            entries.put(name, new LazyEntry(source, name));
+            keyByEntry.put(name, name);
+        }
+        return names;
+    }
+
+    /**
+     * Remplace les sources actuelles par une nouvelle version du JAR.
+     * Chaque clé est rattachée à son entrée d'origine (même après renommage) ; les empreintes
+     * du répertoire central (CRC-32 + taille) indiquent si la classe a changé, sans rien décompresser.
+     * Les classes inchangées gardent leur clé, les classes disparues sont retirées et les
+     * nouvelles sont ajoutées sous leur nom d'entrée.
+     */
+    public synchronized JarDiff update(JarSource newSource) {
+        JarDiff diff = new JarDiff();
+        Set<String> newNames = new LinkedHashSet<>(newSource.classEntryNames());
+        Set<String> matched = new HashSet<>();
+        for (Map.Entry<String, Object> e : new ArrayList<>(entries.entrySet())) {
+            String key = e.getKey();
+            Object value = e.getValue();
+            Remapped remapped = value instanceof Remapped ? (Remapped) value : null;
+            if (remapped != null) value = remapped.original;
+            String entryName;
+            long oldPrint;
+            if (value instanceof LazyEntry) {
+                LazyEntry lazy = (LazyEntry) value;
+                entryName = lazy.entryName;
+                oldPrint = lazy.source.entryFingerprint(entryName);
+            } else {
+                byte[] bytes = (byte[]) value;
+                entryName = internalNameOf(bytes, key);
+                oldPrint = JarSource.fingerprintOf(bytes);
+            }
+            if (!newNames.contains(entryName) || !matched.add(entryName)) {
+                entries.remove(key);
+                diff.removed.add(key);
+                continue;
+            }
+            long newPrint = newSource.entryFingerprint(entryName);
+            LazyEntry rebound = new LazyEntry(newSource, entryName);
+            if (oldPrint != -1 && oldPrint == newPrint) {
+                // Mêmes bytes : les bytes déjà lus restent valables
+                if (value instanceof LazyEntry) rebound.cached = ((LazyEntry) value).cached;
+                diff.unchanged++;
+                entries.put(key, remapped != null ? new Remapped(rebound, remapped.bytes) : rebound);
+            } else {
+                // Nouveau bytecode sous les noms d'origine : le remappage est à refaire
+                diff.changed.add(key);
+                entries.put(key, rebound);
+            }
+            diff.entryNames.put(key, entryName);
+        }
+        for (String name : newNames) {
+            if (matched.contains(name)) continue;
+            if (entries.containsKey(name)) {
+                // Une classe renommée occupe déjà ce nom : la nouvelle classe ne peut pas y aller
+                System.out.println("DEBUG: ✗ Clé déjà utilisée, nouvelle classe ignorée : " + name);
+                diff.skipped.add(name);
+                continue;
+            }
+            entries.put(name, new LazyEntry(newSource, name));
+            diff.added.add(name);
+            diff.entryNames.put(name, name);
+        }
+        keyByEntry.clear();
+        for (String key : entries.keySet()) {
+            String entryName = originalEntryName(key);
+            if (entryName != null) keyByEntry.put(entryName, key);
+        }
+        closeSources();
+        sources.add(newSource);
+        return diff;
+    }
+
+    // Nom d'entrée d'origine d'une classe chargée en mémoire : lu dans le bytecode
+    private static String internalNameOf(byte[] bytes, String fallback) {
+        try {
+            return new org.objectweb.asm.ClassReader(bytes).getClassName() + ".class";
+        } catch (RuntimeException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Déplace une entrée sans la lire (une entrée paresseuse le reste).
+     */
+    public void rename(String oldKey, String newKey) {
+        Object value = entries.remove(oldKey);
+        if (value == null) return;
+        entries.put(newKey, value);
+        String entryName = entryNameOf(value);
+        if (entryName != null) keyByEntry.put(entryName, newKey);
+    }
+
+    @Override
+    public byte[] get(Object key) {
+        return unwrap(entries.get(key));
+    }
+
+    /**
+     * Bytecode d'origine d'une classe, avant remappage.
+     */
+    public byte[] getOriginal(String key) {
+        Object value = entries.get(key);
+        return unwrap(value instanceof Remapped ? ((Remapped) value).original : value);
+    }
+
+    /**
+     * Remplace le bytecode d'une classe par sa version remappée, en gardant l'original.
+     */
+    public void putRemapped(String key, byte[] bytes) {
+        entries.computeIfPresent(key, (k, value) ->
+            new Remapped(value instanceof Remapped ? ((Remapped) value).original : value, bytes));
+    }
+
+    /**
+     * Revient au bytecode d'origine (plus aucun renommage ne touche la classe).
+     */
+    public void restoreOriginal(String key) {
+        entries.computeIfPresent(key, (k, value) -> value instanceof Remapped ? ((Remapped) value).original : value);
+    }
+
+    public boolean isRemapped(String key) {
+        return entries.get(key) instanceof Remapped;
+    }
+
+    /**
+     * Nom de l'entrée du JAR d'où vient la classe (a/b/C.class), même après renommage de la clé ;
+     * null pour une classe chargée seule en mémoire.
+     */
+    public String originalEntryName(String key) {
+        return entryNameOf(entries.get(key));
+    }
+
+    /**
+     * Clé courante de la classe venue de cette entrée du JAR (a/b/C.class), même renommée ;
+     * null si aucune classe du projet ne vient de cette entrée.
+     */
+    public String keyForEntry(String entryName) {
+        String key = keyByEntry.get(entryName);
+        return key != null && entryName.equals(originalEntryName(key)) ? key : null;
+    }
+
+    private static String entryNameOf(Object value) {
+        if (value instanceof Remapped) value = ((Remapped) value).original;
+        return value instanceof LazyEntry ? ((LazyEntry) value).entryName : null;
+    }
+
+    @Override
+    public byte[] put(String key, byte[] value) {
+        // put(clé, null) = pas d'entrée (une Map classique garderait une valeur nulle)
+        Object old = value == null ? entries.remove(key) : entries.put(key, value);
+        return unwrap(old);
+    }
+
+    @Override
+    public byte[] remove(Object key) {
+        return unwrap(entries.remove(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return entries.keySet();
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        keyByEntry.clear();
+        closeSources();
+    }
+
+    private void closeSources() {
+        for (JarSource source : sources) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                // Ignore : la source n'est plus utilisée
+            }
+        }
+        sources.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, byte[]>> entrySet() {
+        return new AbstractSet<Map.Entry<String, byte[]>>() {
+            @Override
+            public Iterator<Map.Entry<String, byte[]>> iterator() {
+                Iterator<String> keys = entries.keySet().iterator();
+                return new Iterator<Map.Entry<String, byte[]>>() {
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    public Map.Entry<String, byte[]> next() {
+                        String key = keys.next();
+                        // Valeur lue seulement si on la demande
+                        return new AbstractMap.SimpleEntry<String, byte[]>(key, null) {
+                            @Override
+                            public byte[] getValue() {
+                                return ClassBytesMap.this.get(key);
+                            }
+                        };
+                    }
+
+                    public void remove() {
+                        keys.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+    private static byte[] unwrap(Object value) {
+        if (value instanceof LazyEntry) return ((LazyEntry) value).load();
+        if (value instanceof Remapped) return ((Remapped) value).bytes;
+        return (byte[]) value;
+    }
+}
@@ -0,0 +1,44 @@
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ITypeLoader;
+
+/**
+ * Charge les types pour Procyon directement depuis les bytes en mémoire.
+ * La classe cible est servie en priorité, puis ses voisines du JAR chargé
+ * (super-classes, classes internes...), sans aucun passage par le disque.
+ * Les noms demandés sont ceux du bytecode de la cible : noms d'entrée d'origine tant qu'il
+ * n'est pas remappé (même si les clés ont été renommées), clés courantes sinon.
+ */
+public class ClassBytesTypeLoader implements ITypeLoader {
+    private final ClassBytesMap classBytes;
+    private final String targetInternalName;
+    private final byte[] targetBytes;
+    private final boolean remapped;
+
+    public ClassBytesTypeLoader(ClassBytesMap classBytes, String targetInternalName, byte[] targetBytes, boolean remapped) {
+        this.classBytes = classBytes;
+        this.targetInternalName = targetInternalName;
+        this.targetBytes = targetBytes;
+        this.remapped = remapped;
+    }
+
+    @Override
+    public boolean tryLoadType(String internalName, Buffer buffer) {
+        byte[] bytes;
+        if (internalName.equals(targetInternalName)) {
+            bytes = targetBytes;
+        } else if (remapped) {
+            bytes = classBytes.get(internalName + ".class");
+        } else {
+            // Noms d'origine : la voisine peut avoir changé de clé, on la sert non remappée
+            String entryName = internalName + ".class";
+            String key = classBytes.keyForEntry(entryName);
+            if (key != null) bytes = classBytes.getOriginal(key);
+            else bytes = classBytes.originalEntryName(entryName) == null ? classBytes.get(entryName) : null;
+        }
+        if (bytes == null || bytes.length == 0) return false;
+        buffer.reset(bytes.length);
+        buffer.putByteArray(bytes, 0, bytes.length);
+        buffer.position(0);
+        return true;
+    }
+}
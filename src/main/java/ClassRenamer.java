@@ -1,6 +1,5 @@
 
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
  * Classe responsable du renommage intelligent des classes avec détection contextuelle précise.
@@ -20,108 +19,7 @@ public class ClassRenamer {
         if (oldClassName.equals(newClassName)) {
             return code;
         }
-        
-        String result = code;
-        String escapedOldName = Pattern.quote(oldClassName);
-        
-        // 1. Déclaration de classe (public class, class, final class, etc.)
-        result = result.replaceAll(
-            "(public\\s+)?(final\\s+)?(abstract\\s+)?(static\\s+)?class\\s+" + escapedOldName + "\\b",
-            "$1$2$3$4class " + newClassName
-        );
-        
-        // 2. Constructeur (nom de classe suivi de parenthèse)
-        result = result.replaceAll(
-            "\\b" + escapedOldName + "\\s*\\(",
-            newClassName + "("
-        );
-        
-        // 3. Import statements
-        result = result.replaceAll(
-            "(import\\s+[a-zA-Z0-9_\\.]*\\.)" + escapedOldName + "(\\s*;|\\s*$)",
-            "$1" + newClassName + "$2"
-        );
-        
-        // 4. Type de variable après modificateurs (public, private, static, final, etc.)
-        // Pattern: (modifiers)? type variableName;
-        result = result.replaceAll(
-            "(public|private|protected|static|final|transient|volatile|abstract|synchronized|native|strictfp)\\s+" + escapedOldName + "\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*[=;,\\[\\]]",
-            "$1 " + newClassName + " $2"
-        );
-        
-        // 5. Type de variable simple (sans modificateurs mais avec nom de variable après)
-        // Pattern: Type variableName;
-        result = result.replaceAll(
-            "(?<![\\w$])" + escapedOldName + "\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*[=;,\\[\\]]",
-            newClassName + " $1"
-        );
-        
-        // 6. Instanciation avec new
-        result = result.replaceAll(
-            "\\bnew\\s+" + escapedOldName + "\\s*\\(",
-            "new " + newClassName + "("
-        );
-        
-        // 7. Type de retour de méthode
-        // Pattern: (modifiers)? returnType methodName(
-        result = result.replaceAll(
-            "(public|private|protected|static|final|synchronized|native|abstract|strictfp)?\\s*" + escapedOldName + "\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*\\(",
-            "$1 " + newClassName + " $2("
-        );
-        
-        // 8. Type de paramètre de méthode
-        // Pattern: methodName(Type paramName) ou methodName(Type param1, Type param2)
-        result = result.replaceAll(
-            "\\b" + escapedOldName + "\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*[,)]",
-            newClassName + " $1"
-        );
-        
-        // 9. Type générique <Type>
-        result = result.replaceAll(
-            "<\\s*" + escapedOldName + "\\s*>",
-            "<" + newClassName + ">"
-        );
-        result = result.replaceAll(
-            "<([^>]*)\\b" + escapedOldName + "\\b([^>]*)>",
-            "<$1" + newClassName + "$2>"
-        );
-        
-        // 10. Cast explicite (Type) expression
-        result = result.replaceAll(
-            "\\(\\s*" + escapedOldName + "\\s*\\)",
-            "(" + newClassName + ")"
-        );
-        
-        // 11. Extends et implements
-        result = result.replaceAll(
-            "extends\\s+" + escapedOldName + "\\b",
-            "extends " + newClassName
-        );
-        result = result.replaceAll(
-            "implements\\s+([^\\{]*\\b)" + escapedOldName + "\\b",
-            "implements $1" + newClassName
-        );
-        
-        // 12. Javadoc references
-        result = result.replaceAll(
-            "(@see|@link|@throws|@exception|@param|@return)\\s+" + escapedOldName + "\\b",
-            "$1 " + newClassName
-        );
-        
-        // 13. Type dans tableau Type[]
-        result = result.replaceAll(
-            "\\b" + escapedOldName + "\\s*\\[\\s*\\]",
-            newClassName + "[]"
-        );
-        
-        // 14. Type dans déclaration de variable avec initialisation
-        // Pattern: Type var = new Type();
-        result = result.replaceAll(
-            "\\b" + escapedOldName + "\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*=",
-            newClassName + " $1 ="
-        );
-        
-        return result;
+        return renameClassesInCode(code, compile(Collections.singletonMap(oldClassName, newClassName)));
     }
     
     /**
@@ -232,94 +130,509 @@ public class ClassRenamer {
         if (oldClassName.equals(newClassName)) {
             return code;
         }
+        return renameClassReferences(code, compile(Collections.singletonMap(oldClassName, newClassName)));
+    }
+    
+    // ==================== RENOMMAGE GROUPÉ ====================
+    
+    /**
+     * Table de renommages (ancien nom simple -> nouveau) préparée une fois pour tout un lot de classes.
+     * La recherche se fait directement sur les caractères du code, sans créer de sous-chaîne.
+     * Peut aussi porter des noms qualifiés (a.b.C -> x.y.D), remplacés d'un bloc, package compris.
+     */
+    public static final class Renames {
+        private final String[] keys;
+        private final String[] values;
+        private final int mask;
+        private final int minLength;
+        private final int maxLength;
+        private final Map<String, String> qualified;
+        
+        private Renames(Map<String, String> renames, Map<String, String> qualified) {
+            this.qualified = new HashMap<>();
+            for (Map.Entry<String, String> e : qualified.entrySet()) {
+                if (!e.getKey().equals(e.getValue())) this.qualified.put(e.getKey(), e.getValue());
+            }
+            int capacity = Integer.highestOneBit(Math.max(4, renames.size() * 2) - 1) << 1;
+            keys = new String[capacity];
+            values = new String[capacity];
+            mask = capacity - 1;
+            int min = Integer.MAX_VALUE, max = 0;
+            for (Map.Entry<String, String> e : renames.entrySet()) {
+                String key = e.getKey();
+                if (key == null || key.isEmpty() || e.getValue() == null || key.equals(e.getValue())) continue;
+                int i = slot(key.hashCode());
+                while (keys[i] != null && !keys[i].equals(key)) i = (i + 1) & mask;
+                keys[i] = key;
+                values[i] = e.getValue();
+                min = Math.min(min, key.length());
+                max = Math.max(max, key.length());
+            }
+            minLength = min;
+            maxLength = max;
+        }
         
-        String result = code;
-        String escapedOldName = Pattern.quote(oldClassName);
-        
-        // Ne pas toucher aux déclarations de classe, seulement aux usages
-        
-        // 1. Import statements
-        result = result.replaceAll(
-            "(import\\s+[a-zA-Z0-9_\\.]*\\.)" + escapedOldName + "(\\s*;|\\s*$)",
-            "$1" + newClassName + "$2"
-        );
-        
-        // 2. Type de variable après modificateurs (public, private, static, final, etc.)
-        result = result.replaceAll(
-            "(public|private|protected|static|final|transient|volatile|abstract|synchronized|native|strictfp)\\s+" + escapedOldName + "\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*[=;,\\[\\]]",
-            "$1 " + newClassName + " $2"
-        );
-        
-        // 3. Type de variable simple (sans modificateurs mais avec nom de variable après)
-        result = result.replaceAll(
-            "(?<![\\w$])" + escapedOldName + "\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*[=;,\\[\\]]",
-            newClassName + " $1"
-        );
-        
-        // 4. Instanciation avec new
-        result = result.replaceAll(
-            "\\bnew\\s+" + escapedOldName + "\\s*\\(",
-            "new " + newClassName + "("
-        );
-        
-        // 5. Type de retour de méthode
-        result = result.replaceAll(
-            "(public|private|protected|static|final|synchronized|native|abstract|strictfp)?\\s*" + escapedOldName + "\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*\\(",
-            "$1 " + newClassName + " $2("
-        );
-        
-        // 6. Type de paramètre de méthode
-        result = result.replaceAll(
-            "\\b" + escapedOldName + "\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*[,)]",
-            newClassName + " $1"
-        );
-        
-        // 7. Type générique <Type>
-        result = result.replaceAll(
-            "<\\s*" + escapedOldName + "\\s*>",
-            "<" + newClassName + ">"
-        );
-        result = result.replaceAll(
-            "<([^>]*)\\b" + escapedOldName + "\\b([^>]*)>",
-            "<$1" + newClassName + "$2>"
-        );
-        
-        // 8. Cast explicite (Type) expression
-        result = result.replaceAll(
-            "\\(\\s*" + escapedOldName + "\\s*\\)",
-            "(" + newClassName + ")"
-        );
-        
-        // 9. Extends et implements
-        result = result.replaceAll(
-            "extends\\s+" + escapedOldName + "\\b",
-            "extends " + newClassName
-        );
-        result = result.replaceAll(
-            "implements\\s+([^\\{]*\\b)" + escapedOldName + "\\b",
-            "implements $1" + newClassName
-        );
-        
-        // 10. Javadoc references
-        result = result.replaceAll(
-            "(@see|@link|@throws|@exception|@param|@return)\\s+" + escapedOldName + "\\b",
-            "$1 " + newClassName
-        );
-        
-        // 11. Type dans tableau Type[]
-        result = result.replaceAll(
-            "\\b" + escapedOldName + "\\s*\\[\\s*\\]",
-            newClassName + "[]"
-        );
-        
-        // 12. Type dans déclaration de variable avec initialisation
-        result = result.replaceAll(
-            "\\b" + escapedOldName + "\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*=",
-            newClassName + " $1 ="
-        );
+        public boolean isEmpty() {
+            return maxLength == 0 && qualified.isEmpty();
+        }
         
-        return result;
+        // Nouveau nom de l'identifiant code[start, end), ou null
+        String lookup(String code, int start, int end) {
+            int length = end - start;
+            if (length < minLength || length > maxLength) return null;
+            // Même hachage que String.hashCode(), calculé sur place
+            int h = 0;
+            for (int k = start; k < end; k++) h = 31 * h + code.charAt(k);
+            for (int i = slot(h); keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i].length() == length && code.regionMatches(start, keys[i], 0, length)) return values[i];
+            }
+            return null;
+        }
+        
+        private int slot(int h) {
+            return (h ^ (h >>> 16)) * 0x9E3779B9 >>> 8 & mask;
+        }
+    }
+    
+    /**
+     * Prépare une table de renommages ; les paires identiques ou vides sont ignorées.
+     */
+    public static Renames compile(Map<String, String> renames) {
+        return new Renames(renames, Collections.emptyMap());
+    }
+    
+    /**
+     * Idem, avec des noms qualifiés (a.b.C, a.b.C.Inner) à remplacer en entier : imports et
+     * références qualifiées suivent alors un changement de package.
+     */
+    public static Renames compile(Map<String, String> renames, Map<String, String> qualified) {
+        return new Renames(renames, qualified);
     }
     
+    /**
+     * Applique tous les renommages d'un coup, déclarations comprises (class X, constructeurs).
+     * Retourne la même instance si rien n'a changé.
+     */
+    public String renameClassesInCode(String code, Renames renames) {
+        return new BatchRename(code, renames, true).run();
+    }
+    
+    /**
+     * Applique tous les renommages d'un coup, aux références seulement.
+     * Retourne la même instance si rien n'a changé.
+     */
+    public String renameClassReferences(String code, Renames renames) {
+        return new BatchRename(code, renames, false).run();
+    }
+    
+    public String renameClassReferences(String code, Map<String, String> renames) {
+        return renameClassReferences(code, compile(renames));
+    }
+    
+    /**
+     * Une passe de renommage : le code est découpé une fois en jetons Java, puis chaque
+     * identifiant présent dans la table est renommé s'il est en position de type :
+     * déclaration (T x), new T, cast (T) x, générique, extends / implements / throws, import,
+     * annotation, T[], T..., T.class, T::new, accès statique T.CONST / T.m() et référence T::m.
+     * Un nom qualifié (a.b.C, Foo.Inner) est traité d'un bloc : seuls ses segments de classe
+     * sont renommés, jamais ceux du package. Les chaînes et les commentaires ne sont jamais
+     * touchés, sauf les références @see / @link / @throws de la javadoc.
+     * Le résultat est écrit dans un seul StringBuilder.
+     */
+    private static final class BatchRename {
+        private static final byte ID = 0, NUMBER = 1, STRING = 2, COMMENT = 3, OP = 4;
+        // Jetons après lesquels un identifiant est forcément un type
+        private static final Set<String> TYPE_PREFIXES = new HashSet<>(Arrays.asList(
+            "new", "extends", "implements", "throws", "instanceof"));
+        private static final Set<String> DECLARATION_PREFIXES = new HashSet<>(Arrays.asList(
+            "class", "interface", "enum", "record"));
+        // Mots-clés devant "(" : (a) y est une condition, pas un cast
+        private static final Set<String> CONTROL_KEYWORDS = new HashSet<>(Arrays.asList(
+            "if", "while", "for", "switch", "synchronized", "catch"));
+        private static final Set<String> CAST_OPERAND_KEYWORDS = new HashSet<>(Arrays.asList(
+            "this", "new", "super", "true", "false", "null"));
+        private static final Set<String> PRIMITIVES = new HashSet<>(Arrays.asList(
+            "boolean", "byte", "char", "short", "int", "long", "float", "double", "void"));
+        private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+            "volatile", "while", "true", "false", "null"));
+        private static final Set<String> JAVADOC_TAGS = new HashSet<>(Arrays.asList(
+            "see", "link", "linkplain", "throws", "exception"));
+        
+        private final String code;
+        private final Renames renames;
+        private final boolean declarations;
+        private int[] starts;
+        private int[] ends;
+        private byte[] kinds;
+        private int count;
+        private StringBuilder out;
+        private int copied;
+        
+        BatchRename(String code, Renames renames, boolean declarations) {
+            this.code = code;
+            this.renames = renames;
+            this.declarations = declarations;
+        }
+        
+        String run() {
+            if (code == null || renames.isEmpty()) return code;
+            tokenize();
+            boolean inImport = false;
+            boolean staticImport = false;
+            boolean inTypeList = false;
+            int genericUntil = -1;
+            for (int i = 0; i < count; i++) {
+                byte kind = kinds[i];
+                if (kind == COMMENT) {
+                    renameInJavadoc(i);
+                    continue;
+                }
+                if (kind == OP) {
+                    char c = code.charAt(starts[i]);
+                    if (c == ';' || c == '{') {
+                        inImport = false;
+                        inTypeList = false;
+                    } else if (c == '<' && i > genericUntil) {
+                        int close = genericEnd(i);
+                        if (close > 0) genericUntil = close;
+                    }
+                    continue;
+                }
+                if (kind != ID) continue;
+                if (is(i, "import")) {
+                    inImport = true;
+                    staticImport = is(next(i), "static");
+                    continue;
+                }
+                if (is(i, "extends") || is(i, "implements") || is(i, "throws")) {
+                    if (i > genericUntil) inTypeList = true;
+                    continue;
+                }
+                // Cas courant : identifiant isolé absent de la table
+                if (!isOp(next(i), '.') && renames.lookup(code, starts[i], ends[i]) == null) continue;
+                int last = chainEnd(i);
+                if (last > i && !isMemberOf(i) && renameQualified(i, last)) {
+                    i = last;
+                    continue;
+                }
+                if (hasRename(i, last) && !isMemberOf(i)) {
+                    renameChain(i, last, inImport, staticImport, i < genericUntil, inTypeList);
+                }
+                i = last;
+            }
+            if (out == null) return code;
+            out.append(code, copied, code.length());
+            return out.toString();
+        }
+        
+        // Dernier segment du nom qualifié a.b.C commençant au jeton first (first lui-même si non qualifié)
+        private int chainEnd(int first) {
+            int last = first;
+            for (int dot = next(last); isOp(dot, '.'); dot = next(last)) {
+                int segment = next(dot);
+                // Après un point, seuls ces mots-clés peuvent apparaître
+                if (segment < 0 || kinds[segment] != ID || is(segment, "class") || is(segment, "this")
+                    || is(segment, "new") || is(segment, "super")) break;
+                last = segment;
+            }
+            return last;
+        }
+        
+        // Plus long préfixe a.b.C de [first, last] présent dans la table qualifiée, remplacé d'un bloc
+        private boolean renameQualified(int first, int last) {
+            if (renames.qualified.isEmpty()) return false;
+            List<Integer> segments = new ArrayList<>();
+            for (int k = first; k >= 0 && k <= last; k = next(next(k))) segments.add(k);
+            StringBuilder name = new StringBuilder();
+            String[] prefixes = new String[segments.size()];
+            for (int s = 0; s < segments.size(); s++) {
+                if (s > 0) name.append('.');
+                name.append(code, starts[segments.get(s)], ends[segments.get(s)]);
+                prefixes[s] = name.toString();
+            }
+            for (int s = segments.size() - 1; s > 0; s--) {
+                String newName = renames.qualified.get(prefixes[s]);
+                if (newName != null) {
+                    replace(starts[first], ends[segments.get(s)], newName);
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private boolean hasRename(int first, int last) {
+            for (int k = first; k >= 0 && k <= last; k = next(next(k))) {
+                if (renames.lookup(code, starts[k], ends[k]) != null) return true;
+            }
+            return false;
+        }
+        
+        // Nom précédé d'un point (appel().x, this.x) ou commençant par this / super : membre d'une expression
+        private boolean isMemberOf(int first) {
+            return isOp(prev(first), '.') || KEYWORDS.contains(text(first));
+        }
+        
+        /**
+         * Renomme les segments de classe du nom qualifié [first, last]. Le segment qui est
+         * forcément un type (dernier segment d'un type, classe d'un import static) est toujours
+         * renommé ; les autres seulement s'ils commencent par une majuscule, les packages et les
+         * variables étant en minuscules. Les segments qui suivent la classe d'un accès statique
+         * (Foo.CONST, Foo.m()) sont des membres et ne sont pas touchés.
+         */
+        private void renameChain(int first, int last, boolean inImport, boolean staticImport,
+                                 boolean inGeneric, boolean inTypeList) {
+            int n = next(last);
+            int forced = -1;
+            int limit;
+            if (inImport) {
+                boolean wildcard = isOp(n, '.') && isOp(next(n), '*');
+                if (!wildcard && !isOp(n, ';')) return;
+                // import p.C; / import static p.C.*; -> C ; import static p.C.m; -> C ; import p.*; -> rien de forcé
+                if (staticImport) {
+                    forced = wildcard ? last : previousSegment(first, last);
+                } else if (!wildcard) {
+                    forced = last;
+                }
+                limit = forced >= 0 ? forced : last;
+            } else if (isTypeName(first, last, inGeneric, inTypeList)) {
+                forced = last;
+                limit = last;
+            } else if (isOp(n, "::") || isOp(n, '.')) {
+                // Foo::m, Foo.<T>m(), Foo.this : aucun segment n'est un membre
+                limit = last;
+            } else if (last > first) {
+                // Foo.CONST, Foo.m(), a.b.C.m() : le dernier segment est le membre
+                limit = previousSegment(first, last);
+            } else {
+                return;
+            }
+            for (int k = first; k >= 0 && k <= limit; k = next(next(k))) {
+                if (k != forced && !Character.isUpperCase(code.charAt(starts[k]))) continue;
+                String newName = renames.lookup(code, starts[k], ends[k]);
+                if (newName != null) replace(starts[k], ends[k], newName);
+            }
+        }
+        
+        private int previousSegment(int first, int last) {
+            return last > first ? prev(prev(last)) : -1;
+        }
+        
+        // Le nom [first, last] est-il utilisé comme type ?
+        private boolean isTypeName(int first, int last, boolean inGeneric, boolean inTypeList) {
+            int p = prev(first);
+            int n = next(last);
+            // Arguments génériques : tout nom y est un type
+            if (inGeneric) return true;
+            // Type suivi d'un nom de variable / méthode, de [] ou de ...
+            if (n >= 0 && kinds[n] == ID && !KEYWORDS.contains(text(n))) return true;
+            if (isOp(n, '[') && isOp(next(n), ']')) return true;
+            if (isOp(n, "...")) return true;
+            if (isOp(n, '<') && genericEnd(n) > 0) return true;
+            if (p >= 0 && kinds[p] == ID && TYPE_PREFIXES.contains(text(p))) return true;
+            if (inTypeList && isOp(p, ',')) return true;
+            if (isOp(p, '@')) return true;
+            if (isOp(n, '.') && is(next(n), "class")) return true;
+            if (isOp(n, "::") && is(next(n), "new")) return true;
+            if (isOp(p, '(') && isOp(n, ')') && isCast(p, n)) return true;
+            if (declarations) {
+                if (p >= 0 && kinds[p] == ID && DECLARATION_PREFIXES.contains(text(p))) return true;
+                if (first == last && isOp(n, '(') && isConstructorDeclaration(p, n)) return true;
+            }
+            return false;
+        }
+        
+        // (T) suivi d'une expression, et pas la condition d'un if / while...
+        private boolean isCast(int open, int close) {
+            int before = prev(open);
+            if (before >= 0 && kinds[before] == ID && (CONTROL_KEYWORDS.contains(text(before)) || !KEYWORDS.contains(text(before)))) {
+                return false;
+            }
+            int operand = next(close);
+            if (operand < 0) return false;
+            byte kind = kinds[operand];
+            if (kind == NUMBER || kind == STRING) return true;
+            if (kind == ID) return !KEYWORDS.contains(text(operand)) || CAST_OPERAND_KEYWORDS.contains(text(operand));
+            return isOp(operand, '(') || isOp(operand, '!') || isOp(operand, '~');
+        }
+        
+        // T(...) { ou T(...) throws : déclaration de constructeur, pas un appel de méthode
+        private boolean isConstructorDeclaration(int p, int open) {
+            if (isOp(p, '.') || is(p, "new")) return false;
+            int depth = 0;
+            for (int k = open; k < count; k++) {
+                if (kinds[k] != OP) continue;
+                char c = code.charAt(starts[k]);
+                if (c == '(') depth++;
+                else if (c == ')' && --depth == 0) {
+                    int after = next(k);
+                    return isOp(after, '{') || is(after, "throws");
+                } else if (c == ';' || c == '{' || c == '}') {
+                    return false;
+                }
+            }
+            return false;
+        }
+        
+        // Fin d'une liste d'arguments génériques ouverte au jeton open, ou -1 si ce n'en est pas une
+        // (a < b, comparaisons...) : seuls des noms de types et leur ponctuation peuvent y figurer
+        private int genericEnd(int open) {
+            int depth = 0;
+            for (int k = open; k < count && k < open + 256; k++) {
+                byte kind = kinds[k];
+                if (kind == COMMENT) continue;
+                if (kind == ID) {
+                    String word = text(k);
+                    if (KEYWORDS.contains(word) && !PRIMITIVES.contains(word) && !word.equals("extends") && !word.equals("super")) return -1;
+                    continue;
+                }
+                if (kind != OP) return -1;
+                char c = code.charAt(starts[k]);
+                if (ends[k] - starts[k] > 1) return -1;
+                if (c == '<') {
+                    depth++;
+                } else if (c == '>') {
+                    if (--depth == 0) return k;
+                } else if (".,?&[]@".indexOf(c) < 0) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+        
+        // Références @see / @link / @throws d'un commentaire
+        private void renameInJavadoc(int i) {
+            int start = starts[i];
+            int end = ends[i];
+            int at = code.indexOf('@', start);
+            while (at >= 0 && at < end) {
+                int tagEnd = at + 1;
+                while (tagEnd < end && Character.isLetter(code.charAt(tagEnd))) tagEnd++;
+                if (JAVADOC_TAGS.contains(code.substring(at + 1, tagEnd))) {
+                    int nameStart = tagEnd;
+                    while (nameStart < end && Character.isWhitespace(code.charAt(nameStart))) nameStart++;
+                    if (nameStart > tagEnd) renameJavadocName(nameStart, end);
+                }
+                at = code.indexOf('@', tagEnd);
+            }
+        }
+        
+        // Nom éventuellement qualifié (a.b.C#m) : même règle que renameChain, le dernier segment est la classe
+        private void renameJavadocName(int start, int end) {
+            int segmentStart = start;
+            while (segmentStart < end) {
+                int segmentEnd = segmentStart;
+                while (segmentEnd < end && Character.isJavaIdentifierPart(code.charAt(segmentEnd))) segmentEnd++;
+                if (segmentEnd == segmentStart) return;
+                boolean lastSegment = segmentEnd + 1 >= end || code.charAt(segmentEnd) != '.'
+                                      || !Character.isJavaIdentifierStart(code.charAt(segmentEnd + 1));
+                if (lastSegment || Character.isUpperCase(code.charAt(segmentStart))) {
+                    String newName = renames.lookup(code, segmentStart, segmentEnd);
+                    if (newName != null) replace(segmentStart, segmentEnd, newName);
+                }
+                if (lastSegment) return;
+                segmentStart = segmentEnd + 1;
+            }
+        }
+        
+        private void replace(int start, int end, String newName) {
+            if (out == null) out = new StringBuilder(code.length() + 64);
+            out.append(code, copied, start).append(newName);
+            copied = end;
+        }
+        
+        private void tokenize() {
+            int capacity = Math.max(16, code.length() / 4);
+            starts = new int[capacity];
+            ends = new int[capacity];
+            kinds = new byte[capacity];
+            int n = code.length();
+            int i = 0;
+            while (i < n) {
+                char c = code.charAt(i);
+                int start = i;
+                byte kind;
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    while (i < n && Character.isJavaIdentifierPart(code.charAt(i))) i++;
+                    kind = ID;
+                } else if (c >= '0' && c <= '9') {
+                    while (i < n && (Character.isLetterOrDigit(code.charAt(i)) || code.charAt(i) == '_' || code.charAt(i) == '.')) i++;
+                    kind = NUMBER;
+                } else if (c == '"' && code.startsWith("\"\"\"", i)) {
+                    int close = code.indexOf("\"\"\"", i + 3);
+                    while (close > 0 && code.charAt(close - 1) == '\\') close = code.indexOf("\"\"\"", close + 1);
+                    i = close < 0 ? n : close + 3;
+                    kind = STRING;
+                } else if (c == '"' || c == '\'') {
+                    i++;
+                    while (i < n && code.charAt(i) != c && code.charAt(i) != '\n') {
+                        if (code.charAt(i) == '\\') i++;
+                        i++;
+                    }
+                    i = Math.min(n, i + 1);
+                    kind = STRING;
+                } else if (c == '/' && i + 1 < n && code.charAt(i + 1) == '/') {
+                    int eol = code.indexOf('\n', i);
+                    i = eol < 0 ? n : eol;
+                    kind = COMMENT;
+                } else if (c == '/' && i + 1 < n && code.charAt(i + 1) == '*') {
+                    int close = code.indexOf("*/", i + 2);
+                    i = close < 0 ? n : close + 2;
+                    kind = COMMENT;
+                } else {
+                    // ">" reste seul pour fermer les génériques imbriqués (List<List<T>>)
+                    i += code.startsWith("...", i) ? 3
+                       : code.startsWith("::", i) || code.startsWith("->", i) || code.startsWith("&&", i)
+                         || code.startsWith("||", i) || code.startsWith("<=", i) || code.startsWith(">=", i)
+                         || code.startsWith("<<", i) || code.startsWith("==", i) || code.startsWith("!=", i) ? 2 : 1;
+                    kind = OP;
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                    kinds = Arrays.copyOf(kinds, count * 2);
+                }
+                starts[count] = start;
+                ends[count] = i;
+                kinds[count] = kind;
+                count++;
+            }
+        }
+        
+        // Jetons voisins, commentaires ignorés (-1 aux bords)
+        private int prev(int i) {
+            for (int k = i - 1; k >= 0; k--) if (kinds[k] != COMMENT) return k;
+            return -1;
+        }
+        
+        private int next(int i) {
+            if (i < 0) return -1;
+            for (int k = i + 1; k < count; k++) if (kinds[k] != COMMENT) return k;
+            return -1;
+        }
+        
+        private String text(int i) {
+            return code.substring(starts[i], ends[i]);
+        }
+        
+        private boolean is(int i, String word) {
+            return i >= 0 && kinds[i] == ID && ends[i] - starts[i] == word.length() && code.startsWith(word, starts[i]);
+        }
+        
+        private boolean isOp(int i, char c) {
+            return i >= 0 && kinds[i] == OP && ends[i] - starts[i] == 1 && code.charAt(starts[i]) == c;
+        }
+        
+        private boolean isOp(int i, String op) {
+            return i >= 0 && kinds[i] == OP && ends[i] - starts[i] == op.length() && code.startsWith(op, starts[i]);
+        }
+    }
 }
 
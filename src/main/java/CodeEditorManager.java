@@ -11,7 +11,7 @@ import java.util.List;
 
 public class CodeEditorManager {
     private final Map<RSyntaxTextArea, UndoManager> undoManagers = new HashMap<>();
-    private final Map<RSyntaxTextArea, Map<String, List<Object>>> multiHighlights = new HashMap<>();
+    private final Map<RSyntaxTextArea, EditorSearch> occurrenceSearches = new HashMap<>();
     private final ThemeManager themeManager;
     private final IdentifierAnalyzer identifierAnalyzer;
     private final RenameManager renameManager;
@@ -71,60 +71,59 @@ public class CodeEditorManager {
         });
     }
     
+    // Occurrences de l'identifiant sous le curseur : seule la ligne courante est lue, et rien
+    // n'est refait tant que le curseur reste sur le même mot
     private void addHighlightOccurrences(RSyntaxTextArea area) {
-        area.addCaretListener(e -> {
-            RSyntaxTextArea textArea = (RSyntaxTextArea) e.getSource();
-            int pos = textArea.getCaretPosition();
-            if (pos < 0 || pos >= textArea.getText().length()) return;
-            
-            String text = textArea.getText();
-            int start = pos, end = pos;
-            while (start > 0 && Character.isJavaIdentifierPart(text.charAt(start - 1))) start--;
-            while (end < text.length() && Character.isJavaIdentifierPart(text.charAt(end))) end++;
-            if (start == end) return;
-            
-            String word = text.substring(start, end);
-            if (word.isEmpty() || !Character.isJavaIdentifierStart(word.charAt(0))) return;
-            
-            updateMultiSelectHighlights(textArea, word);
+        // Couleur relue à chaque peinture : suit le changement de thème
+        EditorSearch occurrences = new EditorSearch(area, new javax.swing.text.DefaultHighlighter.DefaultHighlightPainter(null) {
+            @Override
+            public java.awt.Color getColor() {
+                return themeManager.isDarkTheme() ? new java.awt.Color(100, 100, 200, 100) : new java.awt.Color(200, 200, 255, 100);
+            }
         });
-    }
-    
-    private void updateMultiSelectHighlights(RSyntaxTextArea area, String word) {
-        clearMultiHighlights(area);
-        Map<String, List<Object>> highlights = multiHighlights.computeIfAbsent(area, k -> new HashMap<>());
-        List<Object> tags = new ArrayList<>();
-        
-        String text = area.getText();
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("\\b" + java.util.regex.Pattern.quote(word) + "\\b");
-        java.util.regex.Matcher matcher = pattern.matcher(text);
-        
-        javax.swing.text.Highlighter highlighter = area.getHighlighter();
-        while (matcher.find()) {
+        occurrenceSearches.put(area, occurrences);
+        javax.swing.text.Segment line = new javax.swing.text.Segment();
+        area.addCaretListener(e -> {
+            int pos = area.getCaretPosition();
+            int lineStart;
             try {
-                Object tag = highlighter.addHighlight(matcher.start(), matcher.end(), 
-                    new javax.swing.text.DefaultHighlighter.DefaultHighlightPainter(
-                        themeManager.isDarkTheme() ? new java.awt.Color(100, 100, 200, 100) : new java.awt.Color(200, 200, 255, 100)));
-                tags.add(tag);
-            } catch (Exception ex) {}
-        }
-        highlights.put(word, tags);
+                int lineIndex = area.getLineOfOffset(pos);
+                lineStart = area.getLineStartOffset(lineIndex);
+                // La dernière ligne finit un caractère après la fin du document
+                int lineEnd = Math.min(area.getDocument().getLength(), area.getLineEndOffset(lineIndex));
+                area.getDocument().getText(lineStart, lineEnd - lineStart, line);
+            } catch (javax.swing.text.BadLocationException ex) {
+                return;
+            }
+            int limit = line.offset + line.count;
+            int start = line.offset + pos - lineStart;
+            int end = start;
+            while (start > line.offset && Character.isJavaIdentifierPart(line.array[start - 1])) start--;
+            while (end < limit && Character.isJavaIdentifierPart(line.array[end])) end++;
+            if (start == end || !Character.isJavaIdentifierStart(line.array[start])) return;
+            // Même mot qu'avant : setQuery ne refait rien
+            occurrences.setQuery(new String(line.array, start, end - start), true, true);
+        });
     }
     
-    private void clearMultiHighlights(RSyntaxTextArea area) {
-        Map<String, List<Object>> highlights = multiHighlights.get(area);
-        if (highlights == null) return;
-        javax.swing.text.Highlighter highlighter = area.getHighlighter();
-        for (List<Object> tags : highlights.values()) {
-            for (Object tag : tags) {
-                highlighter.removeHighlight(tag);
+    /**
+     * Surligne les autres occurrences du texte sélectionné (dans la zone visible).
+     */
+    public void addSelectionHighlight(RSyntaxTextArea area) {
+        EditorSearch selection = new EditorSearch(area,
+            new javax.swing.text.DefaultHighlighter.DefaultHighlightPainter(java.awt.Color.YELLOW));
+        area.addCaretListener(e -> {
+            if (area.getSelectionStart() == area.getSelectionEnd()) {
+                selection.clear();
+            } else {
+                selection.setQuery(area.getSelectedText(), true, false);
             }
-        }
-        highlights.clear();
+        });
     }
     
     public void clearHighlights(RSyntaxTextArea area) {
-        clearMultiHighlights(area);
+        EditorSearch occurrences = occurrenceSearches.get(area);
+        if (occurrences != null) occurrences.clear();
     }
 }
 
@@ -1,61 +1,242 @@
+import com.strobel.assembler.metadata.ClasspathTypeLoader;
+import com.strobel.assembler.metadata.CompositeTypeLoader;
 import com.strobel.decompiler.Decompiler;
 import com.strobel.decompiler.DecompilerSettings;
 import com.strobel.decompiler.PlainTextOutput;
+import org.objectweb.asm.ClassReader;
 import java.io.*;
 import java.util.*;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Gère la décompilation des classes Java.
  */
 public class DecompilerManager {
-    private final File cacheDir;
-    private final Map<String, byte[]> classBytes;
+    private final CacheManager cacheManager;
+    private final ClassBytesMap classBytes;
     private final Map<String, String> modifiedCode;
+    // Pool de workers partagé par les décompilations de masse (créé à la demande)
+    private ExecutorService workerPool;
+    // Derniers messages de Procyon par classe (vide = décompilation propre)
+    private final Map<String, List<ProcyonDiagnostics.Diagnostic>> diagnostics = new ConcurrentHashMap<>();
     
-    public DecompilerManager(File cacheDir, Map<String, byte[]> classBytes, Map<String, String> modifiedCode) {
-        this.cacheDir = cacheDir;
+    /**
+     * Reçoit les résultats d'une décompilation de masse au fil de l'eau.
+     * Les appels sont faits un par un depuis un thread collecteur (jamais depuis l'EDT).
+     */
+    public interface BulkDecompileListener {
+        void onClassDecompiled(String className, String code, int completed, int total);
+        
+        default void onFinished(boolean cancelled) {}
+    }
+    
+    /**
+     * Poignée sur une décompilation de masse en cours.
+     */
+    public static class BulkDecompilation {
+        private final List<Future<?>> futures = new ArrayList<>();
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private final AtomicInteger completed = new AtomicInteger(0);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final int total;
+        
+        BulkDecompilation(int total) {
+            this.total = total;
+        }
+        
+        /**
+         * Annule les classes pas encore décompilées (celles en cours se terminent).
+         */
+        public void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                synchronized (futures) {
+                    for (Future<?> f : futures) f.cancel(false);
+                }
+            }
+        }
+        
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+        
+        public int getCompleted() {
+            return completed.get();
+        }
+        
+        public int getTotal() {
+            return total;
+        }
+        
+        /**
+         * Attend la fin de la décompilation (ou de son annulation).
+         */
+        public void await() throws InterruptedException {
+            done.await();
+        }
+    }
+    
+    /**
+     * Manière de lire les JAR : {@link MappedZipSource} (mapping mémoire) ou {@link JarFileSource}.
+     */
+    public enum JarBackend {
+        MAPPED,
+        JAR_FILE
+    }
+    
+    // Backend de lecture des JAR, modifiable avec -Dpaladium.jar.backend=jarfile
+    private volatile JarBackend jarBackend =
+        "jarfile".equalsIgnoreCase(System.getProperty("paladium.jar.backend")) ? JarBackend.JAR_FILE : JarBackend.MAPPED;
+    // Empreinte du contenu du JAR ouvert (instantané de l'index des références)
+    private volatile String jarHash;
+    
+    // Empreinte des réglages Procyon, incluse dans la clé de cache
+    private final String settingsFingerprint;
+    // Cache mémoire du code décompilé, devant le cache disque
+    private final HotCache hotCache = new HotCache(Long.getLong("paladium.hotcache.maxMB", 64) * 1024 * 1024);
+    
+    /**
+     * LRU borné par le poids des chaînes (2 octets par caractère).
+     * Une entrée n'est valide que pour le même contenu (taille + CRC-32 des bytes) : si la classe
+     * est remplacée, l'ancienne version n'est jamais renvoyée. Les bytes eux-mêmes ne sont pas
+     * retenus, une classe relue depuis le JAR après un GC reste servie par le cache.
+     */
+    private static class HotCache {
+        private static class Entry {
+            final int length;
+            final long crc;
+            final String code;
+            
+            Entry(int length, long crc, String code) {
+                this.length = length;
+                this.crc = crc;
+                this.code = code;
+            }
+        }
+        
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+        private final long maxWeight;
+        private long weight = 0;
+        
+        HotCache(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+        
+        String get(String className, byte[] bytes) {
+            Entry e;
+            synchronized (this) {
+                e = entries.get(className);
+            }
+            // CRC calculé hors du verrou, seulement si la taille correspond
+            return (e != null && bytes != null && e.length == bytes.length && e.crc == crcOf(bytes)) ? e.code : null;
+        }
+        
+        void put(String className, byte[] bytes, String code) {
+            long w = 2L * code.length();
+            if (w > maxWeight) return;
+            Entry entry = new Entry(bytes.length, crcOf(bytes), code);
+            synchronized (this) {
+                store(className, entry, w);
+            }
+        }
+        
+        private void store(String className, Entry entry, long w) {
+            Entry old = entries.put(className, entry);
+            if (old != null) weight -= 2L * old.code.length();
+            weight += w;
+            Iterator<Entry> it = entries.values().iterator();
+            while (weight > maxWeight && it.hasNext()) {
+                weight -= 2L * it.next().code.length();
+                it.remove();
+            }
+        }
+        
+        synchronized void clear() {
+            entries.clear();
+            weight = 0;
+        }
+        
+        private static long crcOf(byte[] bytes) {
+            java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+            crc.update(bytes, 0, bytes.length);
+            return crc.getValue();
+        }
+    }
+    
+    public DecompilerManager(CacheManager cacheManager, ClassBytesMap classBytes, Map<String, String> modifiedCode) {
+        this.cacheManager = cacheManager;
         this.classBytes = classBytes;
         this.modifiedCode = modifiedCode;
+        this.settingsFingerprint = fingerprint(createSettings());
+    }
+    
+    /**
+     * Réglages Procyon utilisés pour toutes les décompilations.
+     */
+    private DecompilerSettings createSettings() {
+        DecompilerSettings settings = DecompilerSettings.javaDefaults();
+        settings.setForceExplicitImports(true);
+        return settings;
+    }
+    
+    private static String fingerprint(DecompilerSettings s) {
+        return s.getLanguage().getName()
+            + "|imports=" + s.getForceExplicitImports()
+            + "|typeArgs=" + s.getForceExplicitTypeArguments()
+            + "|fqn=" + s.getForceFullyQualifiedReferences()
+            + "|nested=" + s.getExcludeNestedTypes()
+            + "|synthetic=" + s.getShowSyntheticMembers()
+            + "|casts=" + s.getRetainRedundantCasts()
+            + "|switch=" + s.getFlattenSwitchBlocks() + "," + s.getRetainPointlessSwitches()
+            + "|merge=" + s.getMergeVariables()
+            + "|lines=" + s.getShowDebugLineNumbers()
+            + "|unicode=" + s.isUnicodeOutputEnabled()
+            + "|diag=" + s.getIncludeErrorDiagnostics()
+            + "|foreach=" + s.getDisableForEachTransforms()
+            + "|memberRefs=" + s.getSimplifyMemberReferences()
+            + "|catchVars=" + s.getAlwaysGenerateExceptionVariableForCatchBlocks()
+            + "|textBlocks=" + s.getTextBlockLineMinimum()
+            + "|target=" + s.getForcedCompilerTarget();
     }
     
     /**
      * Décompile une classe en String sans affecter l'affichage.
      */
     public String decompileClassToString(String className, byte[] bytes) {
+        String hot = hotCache.get(className, bytes);
+        if (hot != null) return hot;
         try {
-            if (!cacheDir.exists()) cacheDir.mkdirs();
-            // Génère un hash MD5 hexadécimal stable pour le nom de fichier cache
-            java.security.MessageDigest md = java.security.MessageDigest.getInstance("MD5");
-            byte[] hash = md.digest(className.getBytes("UTF-8"));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hash) sb.append(String.format("%02x", b));
-            String cacheKey = sb.toString() + ".java";
-            File cacheFile = new File(cacheDir, cacheKey);
+            // Clé = contenu de la classe + réglages + version de Procyon
+            String cacheKey = cacheManager.computeKey(bytes, settingsFingerprint);
             System.out.println("DEBUG CACHE: " + className + " -> " + cacheKey);
-            if (cacheFile.exists()) {
+            String cached = cacheManager.get(cacheKey);
+            if (cached != null) {
                 System.out.println("DEBUG CACHE: ✓ " + className + " trouvé en cache");
-                return new String(java.nio.file.Files.readAllBytes(cacheFile.toPath()), java.nio.charset.StandardCharsets.UTF_8);
+                hotCache.put(className, bytes, cached);
+                return cached;
             }
             System.out.println("DEBUG CACHE: ✗ " + className + " pas en cache, décompilation...");
-            File temp = File.createTempFile("procyon_", ".class");
-            try (FileOutputStream fos = new FileOutputStream(temp)) {
-                fos.write(bytes);
-            }
+            // Nom interne lu dans le bytecode : la clé peut avoir été renommée entre-temps
+            String internalName = new ClassReader(bytes).getClassName();
             StringWriter sw = new StringWriter();
-            DecompilerSettings settings = DecompilerSettings.javaDefaults();
-            settings.setForceExplicitImports(true);
-            PrintStream originalErr = System.err;
-            System.setErr(new PrintStream(new OutputStream() {
-                public void write(int b) {}
-            }));
-            Decompiler.decompile(temp.getAbsolutePath(), new PlainTextOutput(sw), settings);
-            System.setErr(originalErr);
-            temp.deleteOnExit();
+            DecompilerSettings settings = createSettings();
+            settings.setTypeLoader(new CompositeTypeLoader(
+                new ClassBytesTypeLoader(classBytes, internalName, bytes, classBytes.isRemapped(className)),
+                new ClasspathTypeLoader()));
+            ProcyonDiagnostics.Capture capture = ProcyonDiagnostics.begin(className);
+            try {
+                Decompiler.decompile(internalName, new PlainTextOutput(sw), settings);
+            } catch (RuntimeException ex) {
+                capture.add(ProcyonDiagnostics.Severity.ERROR, String.valueOf(ex));
+                throw ex;
+            } finally {
+                recordDiagnostics(className, capture.getDiagnostics());
+            }
             String code = sw.toString();
-            java.nio.file.Files.write(cacheFile.toPath(), code.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-            System.out.println("DEBUG CACHE: ✓ " + className + " écrit en cache : " + cacheFile.getAbsolutePath());
+            cacheManager.put(cacheKey, code);
+            hotCache.put(className, bytes, code);
+            System.out.println("DEBUG CACHE: ✓ " + className + " écrit en cache : " + cacheKey);
             return code;
         } catch (Exception ex) {
             System.out.println("DEBUG CACHE: ✗ Erreur pour " + className + " : " + ex.getMessage());
@@ -63,23 +244,156 @@ public class DecompilerManager {
         }
     }
     
+    private void recordDiagnostics(String className, List<ProcyonDiagnostics.Diagnostic> list) {
+        if (list.isEmpty()) {
+            diagnostics.remove(className);
+        } else {
+            diagnostics.put(className, list);
+            System.out.println("DEBUG: " + list.size() + " message(s) Procyon pour " + className);
+        }
+    }
+    
     /**
-     * Charge un fichier JAR et extrait toutes les classes.
+     * Messages émis par Procyon lors de la dernière décompilation de cette classe.
+     * Une classe servie depuis le cache garde les messages de sa décompilation d'origine
+     * dans cette session, et n'en a aucun sinon.
      */
-    public List<String> loadJar(File jarFile) throws IOException {
-        List<String> classNames = new ArrayList<>();
-        try (JarFile jar = new JarFile(jarFile)) {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                if (entry.getName().endsWith(".class")) {
-                    classNames.add(entry.getName());
-                    byte[] bytes = readAllBytes(jar.getInputStream(entry));
-                    classBytes.put(entry.getName(), bytes);
+    public List<ProcyonDiagnostics.Diagnostic> getDiagnostics(String className) {
+        return diagnostics.getOrDefault(className, Collections.emptyList());
+    }
+    
+    /**
+     * Toutes les classes ayant produit des messages, avec leurs diagnostics.
+     */
+    public Map<String, List<ProcyonDiagnostics.Diagnostic>> getAllDiagnostics() {
+        return Collections.unmodifiableMap(diagnostics);
+    }
+    
+    /**
+     * Vide le cache mémoire (le cache disque est conservé).
+     */
+    public void clearHotCache() {
+        hotCache.clear();
+    }
+    
+    /**
+     * Décompile un ensemble de classes en parallèle sur le pool de workers.
+     * Les résultats sont transmis au listener dans l'ordre où ils se terminent.
+     */
+    public BulkDecompilation decompileAll(Collection<String> classNames, BulkDecompileListener listener) {
+        List<String> names = new ArrayList<>(classNames);
+        BulkDecompilation job = new BulkDecompilation(names.size());
+        CompletionService<String[]> completion = new ExecutorCompletionService<>(getWorkerPool());
+        synchronized (job.futures) {
+            // Bytes lus par le worker : rien n'est chargé sur le thread appelant (souvent l'EDT)
+            // et aucune tâche en attente ne retient les bytes d'une classe
+            for (String className : names) {
+                job.futures.add(completion.submit(() -> new String[] {
+                    className, decompileClassToString(className, classBytes.get(className))
+                }));
+            }
+        }
+        Thread collector = new Thread(() -> {
+            try {
+                for (int i = 0; i < names.size(); i++) {
+                    Future<String[]> f = completion.take();
+                    if (f.isCancelled()) continue;
+                    String[] result;
+                    try {
+                        result = f.get();
+                    } catch (ExecutionException ex) {
+                        System.out.println("DEBUG: ✗ Erreur de décompilation parallèle : " + ex.getCause());
+                        continue;
+                    }
+                    int count = job.completed.incrementAndGet();
+                    if (!job.isCancelled() && listener != null) {
+                        listener.onClassDecompiled(result[0], result[1], count, names.size());
+                    }
                 }
+            } catch (InterruptedException ex) {
+                job.cancel();
+                Thread.currentThread().interrupt();
+            } finally {
+                job.done.countDown();
+                if (listener != null) listener.onFinished(job.isCancelled());
+            }
+        }, "procyon-bulk-collector");
+        collector.setDaemon(true);
+        collector.start();
+        return job;
+    }
+    
+    /**
+     * Pool borné au nombre de cœurs disponibles.
+     */
+    private synchronized ExecutorService getWorkerPool() {
+        if (workerPool == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            AtomicInteger threadId = new AtomicInteger(1);
+            workerPool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "procyon-worker-" + threadId.getAndIncrement());
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            });
+        }
+        return workerPool;
+    }
+    
+    /**
+     * Ouvre un fichier JAR et enregistre toutes ses classes.
+     * Seul le répertoire central est lu : les bytes de chaque classe sont chargés à la demande.
+     */
+    public List<String> loadJar(File jarFile) throws IOException {
+        JarSource source = openJarSource(jarFile, jarBackend);
+        jarHash = JarSource.contentHash(source);
+        return classBytes.attach(source);
+    }
+    
+    /**
+     * Passe le projet à une nouvelle version du JAR sans le recharger :
+     * seules les classes ajoutées ou modifiées devront être redécompilées.
+     */
+    public ClassBytesMap.JarDiff updateJar(File jarFile) throws IOException {
+        JarSource source = openJarSource(jarFile, jarBackend);
+        jarHash = JarSource.contentHash(source);
+        ClassBytesMap.JarDiff diff = classBytes.update(source);
+        System.out.println("DEBUG: Mise à jour du JAR " + jarFile.getName() + " : " + diff);
+        return diff;
+    }
+    
+    /**
+     * Ouvre un JAR avec le backend demandé. Si le mapping échoue (fichier de plus de 2 Go,
+     * ZIP non standard...), on se rabat sur {@link JarFileSource}.
+     */
+    public static JarSource openJarSource(File jarFile, JarBackend backend) throws IOException {
+        if (backend == JarBackend.MAPPED) {
+            try {
+                return new MappedZipSource(jarFile);
+            } catch (IOException e) {
+                System.out.println("DEBUG: lecture mappée impossible pour " + jarFile.getName() + " (" + e.getMessage() + "), repli sur JarFile");
             }
         }
-        return classNames;
+        return new JarFileSource(jarFile);
+    }
+    
+    /**
+     * Empreinte du JAR ouvert (voir {@link JarSource#contentHash}), ou null.
+     */
+    public String getJarHash() {
+        return jarHash;
+    }
+    
+    public void setJarHash(String jarHash) {
+        this.jarHash = jarHash;
+    }
+    
+    public void setJarBackend(JarBackend jarBackend) {
+        this.jarBackend = jarBackend;
+    }
+    
+    public JarBackend getJarBackend() {
+        return jarBackend;
     }
     
     /**
@@ -0,0 +1,276 @@
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Highlighter;
+import javax.swing.text.Segment;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recherche incrémentale dans un éditeur : lit le Document par Segment (sans getText()),
+ * ne surligne que la zone visible plus une marge, complète les surlignages au défilement
+ * et permet d'aller à l'occurrence suivante / précédente.
+ * Chaque instance ne gère que ses propres surlignages : plusieurs peuvent cohabiter
+ * sur un même éditeur (recherche, occurrences du mot, sélection).
+ * À utiliser depuis l'EDT.
+ */
+public class EditorSearch {
+    // Lignes surlignées au-dessus et en dessous de la zone visible
+    private static final int MARGIN_LINES = 100;
+    // Borne du nombre de surlignages (requête d'un caractère sur une grosse classe)
+    private static final int MAX_HIGHLIGHTS = 2000;
+
+    private final RSyntaxTextArea area;
+    private final Highlighter.HighlightPainter painter;
+    // Segment réutilisé : pas de copie tant que la plage ne chevauche pas le trou d'édition
+    private final Segment segment = new Segment();
+    private final List<Object> tags = new ArrayList<>();
+    private final ChangeListener scrollListener = e -> refresh();
+    private final DocumentListener documentListener = new DocumentListener() {
+        public void insertUpdate(DocumentEvent e) { invalidate(); }
+        public void removeUpdate(DocumentEvent e) { invalidate(); }
+        public void changedUpdate(DocumentEvent e) {}
+    };
+    // Le Document peut être remplacé (setDocument)
+    private final PropertyChangeListener documentSwapListener = e -> {
+        if (e.getOldValue() instanceof Document) ((Document) e.getOldValue()).removeDocumentListener(documentListener);
+        if (e.getNewValue() instanceof Document) ((Document) e.getNewValue()).addDocumentListener(documentListener);
+        invalidate();
+    };
+    private boolean disposed = false;
+    private JViewport viewport;
+    private String text = "";
+    private boolean matchCase = true;
+    private boolean wholeWord = false;
+    // Plage du document déjà surlignée ([-1, -1] = à refaire)
+    private int highlightedFrom = -1;
+    private int highlightedTo = -1;
+    private boolean refreshPending = false;
+    // Position dans le document du premier caractère chargé dans le segment
+    private int loadedFrom;
+
+    public EditorSearch(RSyntaxTextArea area, Highlighter.HighlightPainter painter) {
+        this.area = area;
+        this.painter = painter;
+        segment.setPartialReturn(false);
+        area.getDocument().addDocumentListener(documentListener);
+        area.addPropertyChangeListener("document", documentSwapListener);
+    }
+
+    /**
+     * Change la requête et resurligne la zone visible. Sans effet si elle est identique.
+     */
+    public void setQuery(String text, boolean matchCase, boolean wholeWord) {
+        if (text == null) text = "";
+        if (text.equals(this.text) && matchCase == this.matchCase && wholeWord == this.wholeWord) return;
+        this.text = text;
+        this.matchCase = matchCase;
+        this.wholeWord = wholeWord;
+        invalidate();
+        refresh();
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Retire la requête et ses surlignages.
+     */
+    public void clear() {
+        setQuery("", matchCase, wholeWord);
+    }
+
+    /**
+     * Détache les écouteurs et retire les surlignages (onglet fermé). L'instance n'est plus utilisable.
+     */
+    public void dispose() {
+        disposed = true;
+        removeTags();
+        area.getDocument().removeDocumentListener(documentListener);
+        area.removePropertyChangeListener("document", documentSwapListener);
+        if (viewport != null) viewport.removeChangeListener(scrollListener);
+        viewport = null;
+    }
+
+    /**
+     * Sélectionne la première occurrence à partir de offset (inclus), en repartant du début
+     * si besoin. Sert à la frappe : la sélection reste en place tant qu'elle correspond encore.
+     */
+    public boolean selectFrom(int offset) {
+        int idx = indexOf(offset, area.getDocument().getLength());
+        if (idx < 0) idx = indexOf(0, offset + text.length() - 1);
+        return select(idx);
+    }
+
+    /**
+     * Sélectionne l'occurrence suivante (ou précédente) par rapport au curseur, avec retour au
+     * début (ou à la fin) du document.
+     */
+    public boolean selectNext(boolean forward) {
+        int length = area.getDocument().getLength();
+        int idx;
+        if (forward) {
+            int from = Math.max(area.getSelectionStart() + 1, area.getSelectionEnd());
+            idx = indexOf(from, length);
+            if (idx < 0) idx = indexOf(0, Math.min(length, from + text.length() - 1));
+        } else {
+            int before = area.getSelectionStart();
+            idx = lastIndexOf(0, before + text.length() - 1);
+            if (idx < 0) idx = lastIndexOf(Math.max(0, before), length);
+        }
+        return select(idx);
+    }
+
+    private boolean select(int idx) {
+        if (idx < 0) return false;
+        // Caret posé à la fin puis déplacé au début : le défilement montre l'occurrence
+        area.setCaretPosition(idx + text.length());
+        area.moveCaretPosition(idx);
+        return true;
+    }
+
+    /**
+     * Surligne les occurrences de la zone visible (plus la marge) si elle sort de la plage
+     * déjà traitée. Appelé au défilement, au redimensionnement et après une modification.
+     */
+    public void refresh() {
+        // Un refresh différé peut arriver après la fermeture de l'onglet
+        if (disposed) return;
+        attachViewport();
+        if (text.isEmpty()) {
+            removeTags();
+            return;
+        }
+        Rectangle view = viewport != null ? viewport.getViewRect() : area.getVisibleRect();
+        if (view.height <= 0) return;
+        int first = area.viewToModel2D(new Point(view.x, view.y));
+        int last = area.viewToModel2D(new Point(view.x + view.width, view.y + view.height));
+        if (first >= highlightedFrom && last <= highlightedTo && highlightedFrom >= 0) return;
+        try {
+            int firstLine = Math.max(0, area.getLineOfOffset(Math.max(0, first)) - MARGIN_LINES);
+            int lastLine = Math.min(area.getLineCount() - 1, area.getLineOfOffset(Math.max(0, last)) + MARGIN_LINES);
+            int from = area.getLineStartOffset(firstLine);
+            int to = Math.min(area.getDocument().getLength(), area.getLineEndOffset(lastLine));
+            removeTags();
+            Highlighter highlighter = area.getHighlighter();
+            int n = text.length();
+            int covered = to;
+            // Un seul chargement de la plage, parcourue une fois
+            if (load(from, to)) {
+                int base = segment.offset - loadedFrom;
+                for (int p = from; p + n <= to; p++) {
+                    if (matchesAt(p + base)) {
+                        tags.add(highlighter.addHighlight(p, p + n, painter));
+                        p += n - 1;
+                        if (tags.size() >= MAX_HIGHLIGHTS) {
+                            // Plafond atteint : la suite de la plage n'est pas surlignée
+                            covered = p + 1;
+                            break;
+                        }
+                    }
+                }
+            }
+            highlightedFrom = from;
+            highlightedTo = covered;
+        } catch (BadLocationException ex) {
+            System.out.println("DEBUG: Surlignage de recherche impossible : " + ex.getMessage());
+        }
+    }
+
+    // Le texte a changé : la plage est à refaire, une seule fois après la rafale d'événements
+    private void invalidate() {
+        highlightedFrom = -1;
+        highlightedTo = -1;
+        if (refreshPending) return;
+        refreshPending = true;
+        SwingUtilities.invokeLater(() -> {
+            refreshPending = false;
+            refresh();
+        });
+    }
+
+    private void attachViewport() {
+        JViewport vp = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, area);
+        if (vp == viewport) return;
+        if (viewport != null) viewport.removeChangeListener(scrollListener);
+        viewport = vp;
+        if (viewport != null) viewport.addChangeListener(scrollListener);
+    }
+
+    private void removeTags() {
+        Highlighter highlighter = area.getHighlighter();
+        for (Object tag : tags) highlighter.removeHighlight(tag);
+        tags.clear();
+        highlightedFrom = -1;
+        highlightedTo = -1;
+    }
+
+    // Première occurrence commençant dans [from, to - longueur], ou -1
+    private int indexOf(int from, int to) {
+        int n = text.length();
+        from = Math.max(0, from);
+        to = Math.min(area.getDocument().getLength(), to);
+        if (n == 0 || to - from < n) return -1;
+        if (!load(from, to)) return -1;
+        int base = segment.offset - loadedFrom;
+        for (int p = from; p + n <= to; p++) {
+            if (matchesAt(p + base)) return p;
+        }
+        return -1;
+    }
+
+    // Dernière occurrence commençant dans [from, to - longueur], ou -1
+    private int lastIndexOf(int from, int to) {
+        int n = text.length();
+        from = Math.max(0, from);
+        to = Math.min(area.getDocument().getLength(), to);
+        if (n == 0 || to - from < n) return -1;
+        if (!load(from, to)) return -1;
+        int base = segment.offset - loadedFrom;
+        for (int p = to - n; p >= from; p--) {
+            if (matchesAt(p + base)) return p;
+        }
+        return -1;
+    }
+
+    // Charge [from, to) dans le segment, avec un caractère de contexte de chaque côté pour les bornes de mot
+    private boolean load(int from, int to) {
+        Document doc = area.getDocument();
+        loadedFrom = Math.max(0, from - 1);
+        int loadedTo = Math.min(doc.getLength(), to + 1);
+        try {
+            doc.getText(loadedFrom, loadedTo - loadedFrom, segment);
+            return true;
+        } catch (BadLocationException ex) {
+            return false;
+        }
+    }
+
+    private boolean matchesAt(int i) {
+        char[] a = segment.array;
+        int n = text.length();
+        for (int k = 0; k < n; k++) {
+            char c = a[i + k];
+            char q = text.charAt(k);
+            if (c != q && (matchCase || fold(c) != fold(q))) return false;
+        }
+        if (!wholeWord) return true;
+        int start = segment.offset;
+        int end = segment.offset + segment.count;
+        return (i == start || !Character.isJavaIdentifierPart(a[i - 1]))
+            && (i + n >= end || !Character.isJavaIdentifierPart(a[i + n]));
+    }
+
+    private static char fold(char c) {
+        if (c < 128) return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
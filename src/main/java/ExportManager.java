@@ -39,7 +39,7 @@ public class ExportManager {
                     RSyntaxTextArea area = openTabs.get(className);
                     String code;
                     if (area != null) {
-                        code = area.getText();
+                        code = TabManager.textOf(area);
                     } else {
                         code = decompilerManager.decompileClassToString(className, classBytes.get(className));
                     }
@@ -74,7 +74,7 @@ public class ExportManager {
                     RSyntaxTextArea area = openTabs.get(className);
                     String code;
                     if (area != null) {
-                        code = area.getText();
+                        code = TabManager.textOf(area);
                     } else {
                         code = decompilerManager.decompileClassToString(className, classBytes.get(className));
                     }
@@ -0,0 +1,82 @@
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compare les deux backends de lecture des JAR (JarFile et mapping mémoire) :
+ * ouverture du répertoire central puis lecture de toutes les classes.
+ * Usage : gradle benchmarkJar -Pjar=chemin/vers/mod.jar [-Piterations=5]
+ */
+public class JarBackendBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage : JarBackendBenchmark <fichier.jar> [itérations]");
+            return;
+        }
+        File jar = new File(args[0]);
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        System.out.printf("%s (%.1f Mo), %d itérations%n", jar.getName(), jar.length() / 1048576.0, iterations);
+
+        checkSameContent(jar);
+        // Préchauffage : JIT et cache disque de l'OS
+        for (DecompilerManager.JarBackend backend : DecompilerManager.JarBackend.values()) {
+            run(jar, backend);
+        }
+        for (DecompilerManager.JarBackend backend : DecompilerManager.JarBackend.values()) {
+            long openNanos = 0, readNanos = 0, bytes = 0;
+            long gcBefore = gcCount(), gcTimeBefore = gcTime();
+            for (int i = 0; i < iterations; i++) {
+                long[] r = run(jar, backend);
+                openNanos += r[0];
+                readNanos += r[1];
+                bytes = r[2];
+            }
+            System.out.printf("%-9s ouverture %8.2f ms  lecture %8.2f ms  (%d octets)  GC : %d collections, %d ms%n",
+                              backend, openNanos / 1e6 / iterations, readNanos / 1e6 / iterations, bytes,
+                              gcCount() - gcBefore, gcTime() - gcTimeBefore);
+        }
+    }
+
+    // Retourne {durée d'ouverture, durée de lecture, octets lus}
+    private static long[] run(File jar, DecompilerManager.JarBackend backend) throws Exception {
+        long t0 = System.nanoTime();
+        try (JarSource source = DecompilerManager.openJarSource(jar, backend)) {
+            List<String> names = source.classEntryNames();
+            long t1 = System.nanoTime();
+            long total = 0;
+            for (String name : names) {
+                total += source.read(name).length;
+            }
+            return new long[] { t1 - t0, System.nanoTime() - t1, total };
+        }
+    }
+
+    private static void checkSameContent(File jar) throws Exception {
+        try (JarSource reference = DecompilerManager.openJarSource(jar, DecompilerManager.JarBackend.JAR_FILE);
+             JarSource mapped = DecompilerManager.openJarSource(jar, DecompilerManager.JarBackend.MAPPED)) {
+            if (!reference.classEntryNames().equals(mapped.classEntryNames())) {
+                throw new IllegalStateException("Les deux backends ne listent pas les mêmes classes");
+            }
+            for (String name : reference.classEntryNames()) {
+                if (!Arrays.equals(reference.read(name), mapped.read(name))) {
+                    throw new IllegalStateException("Contenu différent pour " + name);
+                }
+            }
+        }
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcTime() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionTime());
+        return n;
+    }
+}
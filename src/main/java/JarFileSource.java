@@ -0,0 +1,54 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Source JAR basée sur {@link JarFile} : le répertoire central reste ouvert
+ * et chaque classe est lue à la demande.
+ */
+public class JarFileSource implements JarSource {
+    private final JarFile jar;
+    private final List<String> classNames = new ArrayList<>();
+
+    public JarFileSource(File file) throws IOException {
+        this.jar = new JarFile(file);
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if (entry.getName().endsWith(".class")) {
+                classNames.add(entry.getName());
+            }
+        }
+    }
+
+    @Override
+    public List<String> classEntryNames() {
+        return classNames;
+    }
+
+    @Override
+    public byte[] read(String entryName) throws IOException {
+        JarEntry entry = jar.getJarEntry(entryName);
+        if (entry == null) return null;
+        try (InputStream in = jar.getInputStream(entry)) {
+            // Taille connue dans le répertoire central : une seule allocation
+            return entry.getSize() >= 0 ? in.readNBytes((int) entry.getSize()) : in.readAllBytes();
+        }
+    }
+
+    @Override
+    public long entryFingerprint(String entryName) {
+        JarEntry entry = jar.getJarEntry(entryName);
+        return entry == null ? -1 : JarSource.fingerprint(entry.getCrc(), entry.getSize());
+    }
+
+    @Override
+    public void close() throws IOException {
+        jar.close();
+    }
+}
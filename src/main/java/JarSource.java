@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Accès en lecture aux entrées d'un JAR, sans tout charger en mémoire.
+ */
+public interface JarSource extends AutoCloseable {
+    /**
+     * Noms des entrées .class, dans l'ordre du répertoire central.
+     */
+    List<String> classEntryNames();
+
+    /**
+     * Lit les bytes d'une entrée (décompressés si besoin).
+     */
+    byte[] read(String entryName) throws IOException;
+
+    /**
+     * Empreinte d'une entrée lue dans le répertoire central, sans décompresser :
+     * CRC-32 dans les 32 bits hauts, taille décompressée dans les 32 bits bas.
+     * Retourne -1 si l'entrée est absente ou si son CRC est inconnu.
+     */
+    long entryFingerprint(String entryName);
+
+    /**
+     * Même empreinte, calculée sur des bytes déjà en mémoire.
+     */
+    static long fingerprintOf(byte[] bytes) {
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        crc.update(bytes);
+        return fingerprint(crc.getValue(), bytes.length);
+    }
+
+    static long fingerprint(long crc, long size) {
+        if (crc < 0 || size < 0) return -1;
+        return (crc << 32) | (size & 0xffffffffL);
+    }
+
+    /**
+     * Empreinte SHA-256 du contenu du JAR, calculée sur le répertoire central (noms, CRC-32, tailles) :
+     * elle change dès qu'une classe est ajoutée, retirée ou modifiée, sans rien décompresser.
+     */
+    static String contentHash(JarSource source) throws IOException {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String name : source.classEntryNames()) {
+                long print = source.entryFingerprint(name);
+                if (print == -1) print = fingerprintOf(source.read(name));
+                md.update(name.getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0);
+                for (int shift = 56; shift >= 0; shift -= 8) md.update((byte) (print >>> shift));
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,339 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Source JAR qui mappe le fichier en mémoire et lit elle-même le répertoire central.
+ * Les entrées stockées (sans compression) sont des tranches du mapping, sans copie ;
+ * les entrées deflate sont décompressées directement depuis le mapping avec des
+ * Inflater réutilisés. Chaque entrée lue est vérifiée contre le CRC-32 du répertoire central.
+ * Sous Windows, un fichier mappé ne peut pas être remplacé (recompiler le JAR puis
+ * « Mettre à jour ») : la source y lit donc par défaut avec des lectures positionnées
+ * sur le FileChannel, dans des buffers réutilisés, sans mapping.
+ * Le mapping est libéré explicitement à la fermeture.
+ * Limité aux fichiers de moins de 2 Go (taille maximale d'un mapping unique).
+ */
+public class MappedZipSource implements JarSource {
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int ZIP64_EOCD_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_EOCD_SIG = 0x06064b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final boolean MAP_BY_DEFAULT =
+        Boolean.parseBoolean(System.getProperty("paladium.jar.map",
+            String.valueOf(!System.getProperty("os.name", "").startsWith("Windows"))));
+
+    private static class Entry {
+        final int method;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final long localHeaderOffset;
+        volatile long dataOffset = -1;
+
+        Entry(int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long fileSize;
+    // null : lectures positionnées sur le canal
+    private final MappedByteBuffer mapped;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<String> classNames = new ArrayList<>();
+    // Inflater réutilisés : leur création alloue un flux zlib natif
+    private final Queue<Inflater> inflaterPool = new ConcurrentLinkedQueue<>();
+    // Buffers directs réutilisés pour les données compressées (lecture sans mapping)
+    private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+    // Lectures en parallèle ; la fermeture attend la fin des lectures avant de libérer le mapping
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    public MappedZipSource(File file) throws IOException {
+        this(file, MAP_BY_DEFAULT);
+    }
+
+    public MappedZipSource(File file, boolean map) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        MappedByteBuffer buffer = null;
+        try {
+            fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) throw new IOException("JAR trop gros pour un mapping unique : " + fileSize);
+            if (map) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            mapped = buffer;
+            readCentralDirectory();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (buffer != null) unmap(buffer);
+            throw e;
+        }
+    }
+
+    public boolean isMapped() {
+        return mapped != null;
+    }
+
+    private void readCentralDirectory() throws IOException {
+        // Commentaire de fin : 65535 octets maximum après l'enregistrement de 22 octets
+        long tailStart = Math.max(0, fileSize - 22 - 0xffff);
+        ByteBuffer tail = region(tailStart, (int) (fileSize - tailStart));
+        int eocd = findEndOfCentralDirectory(tail);
+        long cenCount = tail.getShort(eocd + 10) & 0xffff;
+        long cenSize = tail.getInt(eocd + 12) & 0xffffffffL;
+        long cenOffset = tail.getInt(eocd + 16) & 0xffffffffL;
+        if (cenCount == 0xffff || cenSize == 0xffffffffL || cenOffset == 0xffffffffL) {
+            // ZIP64 : le localisateur précède l'enregistrement de fin classique
+            long locatorOffset = tailStart + eocd - 20;
+            if (locatorOffset < 0) throw new ZipException("Localisateur ZIP64 introuvable");
+            ByteBuffer locator = region(locatorOffset, 20);
+            if (locator.getInt(0) != ZIP64_EOCD_LOCATOR_SIG) throw new ZipException("Localisateur ZIP64 introuvable");
+            ByteBuffer zip64Eocd = region(checkedOffset(locator.getLong(8), 56), 56);
+            if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIG) throw new ZipException("Fin ZIP64 invalide");
+            cenCount = zip64Eocd.getLong(32);
+            cenSize = zip64Eocd.getLong(40);
+            cenOffset = zip64Eocd.getLong(48);
+        }
+        ByteBuffer cen = region(checkedOffset(cenOffset, cenSize), (int) cenSize);
+        int pos = 0;
+        for (long i = 0; i < cenCount; i++) {
+            if (pos + 46 > cen.limit() || cen.getInt(pos) != CEN_SIG) {
+                throw new ZipException("Répertoire central corrompu à " + (cenOffset + pos));
+            }
+            int method = cen.getShort(pos + 10) & 0xffff;
+            long crc = cen.getInt(pos + 16) & 0xffffffffL;
+            long compressedSize = cen.getInt(pos + 20) & 0xffffffffL;
+            long size = cen.getInt(pos + 24) & 0xffffffffL;
+            int nameLength = cen.getShort(pos + 28) & 0xffff;
+            int extraLength = cen.getShort(pos + 30) & 0xffff;
+            int commentLength = cen.getShort(pos + 32) & 0xffff;
+            long localOffset = cen.getInt(pos + 42) & 0xffffffffL;
+            String name = readName(cen, pos + 46, nameLength);
+            if (size == 0xffffffffL || compressedSize == 0xffffffffL || localOffset == 0xffffffffL) {
+                // Champ extra ZIP64 (id 0x0001) : valeurs dans l'ordre size, csize, offset
+                int extra = pos + 46 + nameLength;
+                int extraEnd = extra + extraLength;
+                while (extra + 4 <= extraEnd) {
+                    int id = cen.getShort(extra) & 0xffff;
+                    int len = cen.getShort(extra + 2) & 0xffff;
+                    if (id == 0x0001) {
+                        int p = extra + 4;
+                        if (size == 0xffffffffL) { size = cen.getLong(p); p += 8; }
+                        if (compressedSize == 0xffffffffL) { compressedSize = cen.getLong(p); p += 8; }
+                        if (localOffset == 0xffffffffL) { localOffset = cen.getLong(p); }
+                        break;
+                    }
+                    extra += 4 + len;
+                }
+            }
+            if (!name.endsWith("/")) {
+                entries.put(name, new Entry(method, crc, compressedSize, size, localOffset));
+                if (name.endsWith(".class")) classNames.add(name);
+            }
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) throws ZipException {
+        for (int pos = tail.limit() - 22; pos >= 0; pos--) {
+            if (tail.getInt(pos) == EOCD_SIG) return pos;
+        }
+        throw new ZipException("Fin du répertoire central introuvable");
+    }
+
+    private static String readName(ByteBuffer buffer, int pos, int length) {
+        byte[] raw = new byte[length];
+        buffer.get(pos, raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private long checkedOffset(long offset, long length) throws ZipException {
+        if (offset < 0 || length < 0 || offset + length > fileSize) throw new ZipException("Offset hors du fichier : " + offset);
+        return offset;
+    }
+
+    /**
+     * Octets [offset, offset + length) du fichier, en little-endian, indexés depuis 0 :
+     * tranche du mapping, ou lecture positionnée dans un buffer neuf sans mapping.
+     */
+    private ByteBuffer region(long offset, int length) throws IOException {
+        checkedOffset(offset, length);
+        if (mapped != null) {
+            ByteBuffer dup = mapped.duplicate();
+            dup.position((int) offset);
+            dup.limit((int) offset + length);
+            return dup.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(buffer, offset);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        long pos = offset;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, pos);
+            if (n < 0) throw new EOFException("Fin de fichier inattendue à " + pos);
+            pos += n;
+        }
+    }
+
+    // Début des données : l'en-tête local peut avoir un champ extra différent du répertoire central
+    private long dataOffset(Entry e) throws IOException {
+        long cached = e.dataOffset;
+        if (cached >= 0) return cached;
+        ByteBuffer loc = region(e.localHeaderOffset, 30);
+        if (loc.getInt(0) != LOC_SIG) throw new ZipException("En-tête local invalide à " + e.localHeaderOffset);
+        int nameLength = loc.getShort(26) & 0xffff;
+        int extraLength = loc.getShort(28) & 0xffff;
+        long offset = e.localHeaderOffset + 30 + nameLength + extraLength;
+        if (offset + e.compressedSize > fileSize) throw new ZipException("Entrée tronquée");
+        e.dataOffset = offset;
+        return offset;
+    }
+
+    @Override
+    public List<String> classEntryNames() {
+        return classNames;
+    }
+
+    @Override
+    public long entryFingerprint(String entryName) {
+        Entry e = entries.get(entryName);
+        return e == null ? -1 : JarSource.fingerprint(e.crc, e.size);
+    }
+
+    /**
+     * Tranche en lecture seule sur les données brutes (compressées ou non) de l'entrée.
+     */
+    private ByteBuffer rawSlice(Entry e) throws IOException {
+        return region(dataOffset(e), (int) e.compressedSize).asReadOnlyBuffer();
+    }
+
+    @Override
+    public byte[] read(String entryName) throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            Entry e = entries.get(entryName);
+            if (e == null) return null;
+            if (e.size > Integer.MAX_VALUE) throw new ZipException("Entrée trop grande : " + entryName);
+            byte[] out = new byte[(int) e.size];
+            if (e.method == METHOD_STORED) {
+                if (mapped != null) rawSlice(e).get(out);
+                else readFully(ByteBuffer.wrap(out), dataOffset(e));
+            } else if (e.method == METHOD_DEFLATED) {
+                inflate(e, entryName, out);
+            } else {
+                throw new ZipException("Méthode de compression non gérée : " + e.method);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(out);
+            if (crc.getValue() != e.crc) throw new ZipException("CRC invalide pour " + entryName);
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void inflate(Entry e, String entryName, byte[] out) throws IOException {
+        ByteBuffer src;
+        ByteBuffer pooled = null;
+        if (mapped != null) {
+            src = rawSlice(e);
+        } else {
+            pooled = borrowBuffer((int) e.compressedSize);
+            readFully(pooled, dataOffset(e));
+            pooled.flip();
+            src = pooled;
+        }
+        Inflater inflater = inflaterPool.poll();
+        if (inflater == null) inflater = new Inflater(true);
+        try {
+            inflater.setInput(src);
+            int off = 0;
+            while (off < out.length) {
+                int n = inflater.inflate(out, off, out.length - off);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                off += n;
+            }
+            if (off != out.length) throw new ZipException("Entrée deflate tronquée : " + entryName);
+        } catch (DataFormatException ex) {
+            throw new ZipException("Entrée deflate invalide : " + entryName + " (" + ex.getMessage() + ")");
+        } finally {
+            inflater.reset();
+            inflaterPool.offer(inflater);
+            if (pooled != null) bufferPool.offer(pooled);
+        }
+    }
+
+    // Buffer direct d'au moins size octets, prêt à recevoir une lecture
+    private ByteBuffer borrowBuffer(int size) {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(64 * 1024, Integer.highestOneBit(Math.max(1, size - 1)) << 1));
+        }
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("Source JAR fermée");
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+            Inflater inflater;
+            while ((inflater = inflaterPool.poll()) != null) inflater.end();
+            bufferPool.clear();
+            channel.close();
+            // Sans cela le fichier reste mappé (et verrouillé sous Windows) jusqu'au passage du GC
+            if (mapped != null) unmap(mapped);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Libère le mapping tout de suite (Unsafe.invokeCleaner, module jdk.unsupported)
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            System.out.println("DEBUG: Mapping libéré au prochain GC seulement (" + e + ")");
+        }
+    }
+}
@@ -0,0 +1,325 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Lecture et écriture des fichiers de mappings : SRG (CL/FD/MD), Tiny v1/v2 et ProGuard.
+ * Un mapping va toujours des noms d'origine du bytecode (obfusqués) vers les nouveaux noms ;
+ * le sens ProGuard (nom clair -> nom obfusqué) est inversé à la lecture comme à l'écriture.
+ */
+public final class MappingFiles {
+
+    public enum Format {
+        SRG,
+        TINY,
+        PROGUARD
+    }
+
+    /**
+     * Renommages par noms d'origine : classes (noms internes) et membres (nouveau nom).
+     * Un champ venu d'un SRG n'a pas de descripteur (desc vide).
+     */
+    public static class Mappings {
+        public final Map<String, String> classes = new LinkedHashMap<>();
+        public final Map<MemberIndex.MemberRef, String> members = new LinkedHashMap<>();
+    }
+
+    private MappingFiles() {}
+
+    /**
+     * Format d'après l'extension : .srg, .tiny, sinon ProGuard (.txt, .map...).
+     */
+    public static Format formatOf(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".srg")) return Format.SRG;
+        if (name.endsWith(".tiny")) return Format.TINY;
+        return Format.PROGUARD;
+    }
+
+    /**
+     * Lit un fichier de mappings, format reconnu d'après son contenu.
+     */
+    public static Mappings read(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) lines.add(line);
+        }
+        String first = lines.isEmpty() ? "" : lines.get(0);
+        if (first.startsWith("v1\t")) return readTinyV1(lines);
+        if (first.startsWith("tiny\t2\t")) return readTinyV2(lines);
+        for (String line : lines) {
+            if (line.startsWith("CL: ") || line.startsWith("FD: ") || line.startsWith("MD: ")) return readSrg(lines);
+        }
+        for (String line : lines) {
+            if (line.contains(" -> ")) return readProGuard(lines);
+        }
+        throw new IOException("Format de mappings non reconnu");
+    }
+
+    /**
+     * Écrit des mappings dans le format demandé.
+     */
+    public static void write(File file, Mappings mappings, Format format) throws IOException {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            switch (format) {
+                case SRG: writeSrg(out, mappings); break;
+                case TINY: writeTiny(out, mappings); break;
+                default: writeProGuard(out, mappings); break;
+            }
+        }
+    }
+
+    // ---------- SRG ----------
+
+    private static Mappings readSrg(List<String> lines) {
+        Mappings m = new Mappings();
+        for (String line : lines) {
+            String[] p = line.trim().split("\\s+");
+            if (p[0].equals("CL:") && p.length >= 3) {
+                putClass(m, p[1], p[2]);
+            } else if (p[0].equals("FD:") && p.length >= 3) {
+                int a = p[1].lastIndexOf('/');
+                int b = p[2].lastIndexOf('/');
+                if (a > 0) putMember(m, MemberIndex.Kind.FIELD, p[1].substring(0, a), p[1].substring(a + 1), "", p[2].substring(b + 1));
+            } else if (p[0].equals("MD:") && p.length >= 5) {
+                int a = p[1].lastIndexOf('/');
+                int b = p[3].lastIndexOf('/');
+                if (a > 0) putMember(m, MemberIndex.Kind.METHOD, p[1].substring(0, a), p[1].substring(a + 1), p[2], p[3].substring(b + 1));
+            }
+        }
+        return m;
+    }
+
+    private static void writeSrg(PrintWriter out, Mappings m) {
+        for (Map.Entry<String, String> e : m.classes.entrySet()) {
+            out.println("CL: " + e.getKey() + " " + e.getValue());
+        }
+        for (Map.Entry<MemberIndex.MemberRef, String> e : m.members.entrySet()) {
+            MemberIndex.MemberRef ref = e.getKey();
+            String newOwner = m.classes.getOrDefault(ref.owner, ref.owner);
+            if (ref.kind == MemberIndex.Kind.FIELD) {
+                out.println("FD: " + ref.owner + "/" + ref.name + " " + newOwner + "/" + e.getValue());
+            } else {
+                out.println("MD: " + ref.owner + "/" + ref.name + " " + ref.desc + " "
+                            + newOwner + "/" + e.getValue() + " " + mapDescriptor(ref.desc, m.classes));
+            }
+        }
+    }
+
+    // ---------- Tiny ----------
+
+    private static Mappings readTinyV1(List<String> lines) {
+        Mappings m = new Mappings();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] p = line.split("\t");
+            if (p[0].equals("CLASS") && p.length >= 3) {
+                putClass(m, p[1], p[2]);
+            } else if ((p[0].equals("FIELD") || p[0].equals("METHOD")) && p.length >= 5) {
+                MemberIndex.Kind kind = p[0].equals("FIELD") ? MemberIndex.Kind.FIELD : MemberIndex.Kind.METHOD;
+                putMember(m, kind, p[1], p[3], p[2], p[4]);
+            }
+        }
+        return m;
+    }
+
+    private static Mappings readTinyV2(List<String> lines) {
+        Mappings m = new Mappings();
+        String owner = null;
+        for (String line : lines.subList(1, lines.size())) {
+            String[] p = line.split("\t", -1);
+            if (p[0].equals("c") && p.length >= 3) {
+                owner = p[1];
+                putClass(m, p[1], p[2]);
+            } else if (owner != null && p.length >= 5 && p[0].isEmpty() && (p[1].equals("m") || p[1].equals("f"))) {
+                // Membre de la classe courante ; les lignes plus indentées (paramètres, commentaires) sont ignorées
+                MemberIndex.Kind kind = p[1].equals("f") ? MemberIndex.Kind.FIELD : MemberIndex.Kind.METHOD;
+                putMember(m, kind, owner, p[3], p[2], p[4]);
+            }
+        }
+        return m;
+    }
+
+    private static void writeTiny(PrintWriter out, Mappings m) {
+        out.println("tiny\t2\t0\tofficial\tnamed");
+        for (Map.Entry<String, List<Map.Entry<MemberIndex.MemberRef, String>>> c : byOwner(m).entrySet()) {
+            out.println("c\t" + c.getKey() + "\t" + m.classes.getOrDefault(c.getKey(), c.getKey()));
+            for (Map.Entry<MemberIndex.MemberRef, String> e : c.getValue()) {
+                MemberIndex.MemberRef ref = e.getKey();
+                String kind = ref.kind == MemberIndex.Kind.FIELD ? "f" : "m";
+                out.println("\t" + kind + "\t" + ref.desc + "\t" + ref.name + "\t" + e.getValue());
+            }
+        }
+    }
+
+    // ---------- ProGuard (nom clair -> nom obfusqué) ----------
+
+    private static Mappings readProGuard(List<String> lines) {
+        // Première passe : classes, pour retrouver les descripteurs d'origine des membres
+        Map<String, String> namedToObf = new HashMap<>();
+        for (String line : lines) {
+            if (!line.startsWith(" ") && !line.startsWith("#") && line.contains(" -> ")) {
+                String[] p = stripColon(line).split(" -> ");
+                namedToObf.put(p[0].trim().replace('.', '/'), p[1].trim().replace('.', '/'));
+            }
+        }
+        Mappings m = new Mappings();
+        String owner = null;
+        for (String line : lines) {
+            if (line.startsWith("#") || !line.contains(" -> ")) continue;
+            if (!line.startsWith(" ")) {
+                String[] p = stripColon(line).split(" -> ");
+                owner = p[1].trim().replace('.', '/');
+                putClass(m, owner, p[0].trim().replace('.', '/'));
+                continue;
+            }
+            if (owner == null) continue;
+            String[] p = line.trim().split(" -> ");
+            String obfName = p[1].trim();
+            String decl = p[0].trim().replaceFirst("^\\d+:\\d+:", "");
+            int space = decl.indexOf(' ');
+            if (space < 0) continue;
+            String type = decl.substring(0, space);
+            String rest = decl.substring(space + 1);
+            int paren = rest.indexOf('(');
+            if (paren < 0) {
+                putMember(m, MemberIndex.Kind.FIELD, owner, obfName, toDescriptor(type, namedToObf), rest);
+            } else {
+                String name = rest.substring(0, paren);
+                // Méthode inlinée d'une autre classe (a.b.C.m) : pas un membre de cette classe
+                if (name.contains(".")) continue;
+                String args = rest.substring(paren + 1, rest.indexOf(')'));
+                StringBuilder desc = new StringBuilder("(");
+                if (!args.isEmpty()) {
+                    for (String arg : args.split(",")) desc.append(toDescriptor(arg.trim(), namedToObf));
+                }
+                desc.append(')').append(toDescriptor(type, namedToObf));
+                putMember(m, MemberIndex.Kind.METHOD, owner, obfName, desc.toString(), name);
+            }
+        }
+        return m;
+    }
+
+    private static void writeProGuard(PrintWriter out, Mappings m) {
+        for (Map.Entry<String, List<Map.Entry<MemberIndex.MemberRef, String>>> c : byOwner(m).entrySet()) {
+            String named = m.classes.getOrDefault(c.getKey(), c.getKey());
+            out.println(named.replace('/', '.') + " -> " + c.getKey().replace('/', '.') + ":");
+            for (Map.Entry<MemberIndex.MemberRef, String> e : c.getValue()) {
+                MemberIndex.MemberRef ref = e.getKey();
+                String desc = mapDescriptor(ref.desc, m.classes);
+                if (ref.kind == MemberIndex.Kind.FIELD) {
+                    if (desc.isEmpty()) continue;
+                    out.println("    " + toJavaType(desc, 0) + " " + e.getValue() + " -> " + ref.name);
+                } else {
+                    int close = desc.indexOf(')');
+                    StringBuilder args = new StringBuilder();
+                    for (int i = 1; i < close; i = next(desc, i)) {
+                        if (args.length() > 0) args.append(',');
+                        args.append(toJavaType(desc, i));
+                    }
+                    out.println("    " + toJavaType(desc, close + 1) + " " + e.getValue() + "(" + args + ") -> " + ref.name);
+                }
+            }
+        }
+    }
+
+    // ---------- Utilitaires ----------
+
+    private static void putClass(Mappings m, String from, String to) {
+        if (!to.isEmpty() && !from.equals(to)) m.classes.put(from, to);
+    }
+
+    private static void putMember(Mappings m, MemberIndex.Kind kind, String owner, String name, String desc, String newName) {
+        if (!newName.isEmpty() && !name.equals(newName)) m.members.put(new MemberIndex.MemberRef(kind, owner, name, desc), newName);
+    }
+
+    private static String stripColon(String line) {
+        String t = line.trim();
+        return t.endsWith(":") ? t.substring(0, t.length() - 1) : t;
+    }
+
+    // Classes à écrire (renommées ou propriétaires d'un membre renommé), membres regroupés par classe
+    private static Map<String, List<Map.Entry<MemberIndex.MemberRef, String>>> byOwner(Mappings m) {
+        Map<String, List<Map.Entry<MemberIndex.MemberRef, String>>> owners = new TreeMap<>();
+        for (String c : m.classes.keySet()) owners.put(c, new ArrayList<>());
+        for (Map.Entry<MemberIndex.MemberRef, String> e : m.members.entrySet()) {
+            owners.computeIfAbsent(e.getKey().owner, k -> new ArrayList<>()).add(e);
+        }
+        return owners;
+    }
+
+    // Descripteur avec les nouveaux noms de classes
+    private static String mapDescriptor(String desc, Map<String, String> classes) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < desc.length()) {
+            char c = desc.charAt(i);
+            if (c == 'L') {
+                int end = desc.indexOf(';', i);
+                String name = desc.substring(i + 1, end);
+                sb.append('L').append(classes.getOrDefault(name, name)).append(';');
+                i = end + 1;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    // Type Java (int, a.b.C[]) -> descripteur, classes claires ramenées à leur nom d'origine
+    private static String toDescriptor(String type, Map<String, String> namedToObf) {
+        StringBuilder dims = new StringBuilder();
+        while (type.endsWith("[]")) {
+            dims.append('[');
+            type = type.substring(0, type.length() - 2);
+        }
+        String base;
+        switch (type) {
+            case "void": base = "V"; break;
+            case "boolean": base = "Z"; break;
+            case "byte": base = "B"; break;
+            case "char": base = "C"; break;
+            case "short": base = "S"; break;
+            case "int": base = "I"; break;
+            case "long": base = "J"; break;
+            case "float": base = "F"; break;
+            case "double": base = "D"; break;
+            default:
+                String internal = type.replace('.', '/');
+                base = "L" + namedToObf.getOrDefault(internal, internal) + ";";
+        }
+        return dims + base;
+    }
+
+    // Type Java du descripteur commençant à i
+    private static String toJavaType(String desc, int i) {
+        int dims = 0;
+        while (desc.charAt(i) == '[') {
+            dims++;
+            i++;
+        }
+        String base;
+        switch (desc.charAt(i)) {
+            case 'V': base = "void"; break;
+            case 'Z': base = "boolean"; break;
+            case 'B': base = "byte"; break;
+            case 'C': base = "char"; break;
+            case 'S': base = "short"; break;
+            case 'I': base = "int"; break;
+            case 'J': base = "long"; break;
+            case 'F': base = "float"; break;
+            case 'D': base = "double"; break;
+            default: base = desc.substring(i + 1, desc.indexOf(';', i)).replace('/', '.');
+        }
+        StringBuilder sb = new StringBuilder(base);
+        for (int d = 0; d < dims; d++) sb.append("[]");
+        return sb.toString();
+    }
+
+    // Début du type suivant dans un descripteur
+    private static int next(String desc, int i) {
+        while (desc.charAt(i) == '[') i++;
+        return desc.charAt(i) == 'L' ? desc.indexOf(';', i) + 1 : i + 1;
+    }
+}
@@ -0,0 +1,180 @@
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Mappings du projet : application des renommages au bytecode (seules les classes
+ * remappées sont redécompilées), import / export de fichiers SRG, Tiny et ProGuard,
+ * et export d'un JAR remappé directement depuis le bytecode, sans recompilation.
+ */
+public class MappingManager {
+    private final JFrame parent;
+    private final ClassBytesMap classBytes;
+    private final DecompilerManager decompilerManager;
+    private final ProjectRewriter projectRewriter;
+    private final BytecodeRemapper remapper;
+    // Renomme des clés de classes dans tout le projet (arbre, onglets, index) ; appelé sur l'EDT
+    private final Consumer<Map<String, String>> renameClassKeys;
+
+    public MappingManager(JFrame parent, ClassBytesMap classBytes, DecompilerManager decompilerManager,
+                          ProjectRewriter projectRewriter, BytecodeRemapper remapper,
+                          Consumer<Map<String, String>> renameClassKeys) {
+        this.parent = parent;
+        this.classBytes = classBytes;
+        this.decompilerManager = decompilerManager;
+        this.projectRewriter = projectRewriter;
+        this.remapper = remapper;
+        this.renameClassKeys = renameClassKeys;
+    }
+
+    /**
+     * Menu des actions de mappings.
+     */
+    public JPopupMenu createMenu() {
+        JPopupMenu menu = new JPopupMenu();
+        JMenuItem applyItem = new JMenuItem("Appliquer les renommages au bytecode");
+        applyItem.addActionListener(e -> applyToBytecode());
+        JMenuItem importItem = new JMenuItem("Importer des mappings...");
+        importItem.addActionListener(e -> importMappings());
+        JMenuItem exportItem = new JMenuItem("Exporter les mappings...");
+        exportItem.addActionListener(e -> exportMappings());
+        JMenuItem jarItem = new JMenuItem("Exporter en JAR remappé...");
+        jarItem.addActionListener(e -> exportRemappedJar());
+        menu.add(applyItem);
+        menu.add(importItem);
+        menu.add(exportItem);
+        menu.addSeparator();
+        menu.add(jarItem);
+        return menu;
+    }
+
+    public void applyToBytecode() {
+        int choice = JOptionPane.showConfirmDialog(parent,
+            "Les renommages de classes et de méthodes vont être appliqués au bytecode.\n" +
+            "Les classes remappées seront redécompilées (leurs modifications manuelles seront remplacées).\n\nContinuer ?",
+            "Remappage du bytecode", JOptionPane.YES_NO_OPTION);
+        if (choice != JOptionPane.YES_OPTION) return;
+        applyAndRedecompile(count -> JOptionPane.showMessageDialog(parent,
+            "Bytecode remappé : " + count + " classes mises à jour."));
+    }
+
+    public void importMappings() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Importer des mappings");
+        chooser.setFileFilter(new FileNameExtensionFilter("Mappings (SRG, Tiny, ProGuard)", "srg", "tiny", "txt", "map"));
+        if (chooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        MappingFiles.Mappings mappings;
+        try {
+            mappings = MappingFiles.read(file);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(parent, "Erreur lors de la lecture des mappings : " + ex.getMessage());
+            return;
+        }
+        Map<String, String> renameMap = remapper.importMappings(mappings);
+        System.out.println("DEBUG: Mappings importés : " + mappings.classes.size() + " classes, "
+                           + mappings.members.size() + " membres, " + renameMap.size() + " clés renommées");
+        if (!renameMap.isEmpty()) renameClassKeys.accept(renameMap);
+        applyAndRedecompile(count -> JOptionPane.showMessageDialog(parent,
+            "Mappings importés depuis " + file.getName() + "\n\n" +
+            "Classes renommées : " + renameMap.size() + "\n" +
+            "Classes remappées : " + count));
+    }
+
+    public void exportMappings() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Exporter les mappings (.srg, .tiny ou ProGuard .txt)");
+        chooser.setSelectedFile(new File("mappings.tiny"));
+        if (chooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        MappingFiles.Mappings mappings = remapper.toMappings();
+        try {
+            MappingFiles.write(file, mappings, MappingFiles.formatOf(file));
+            JOptionPane.showMessageDialog(parent, "Mappings exportés : " + mappings.classes.size() + " classes, "
+                                          + mappings.members.size() + " membres.");
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(parent, "Erreur lors de l'export des mappings : " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Exporte le bytecode remappé tel quel : pas de passage par javac, le JAR reste exact
+     * même si le code décompilé ne recompile pas.
+     */
+    public void exportRemappedJar() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Exporter en JAR remappé");
+        chooser.setSelectedFile(new File("exported_remapped.jar"));
+        if (chooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+        File jarFile = chooser.getSelectedFile();
+        applyAndRedecompile(count -> {
+            try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile))) {
+                // Nom de l'entrée = nom remappé (une classe imbriquée suit sa classe englobante sans changer de clé)
+                Map<String, String> classes = remapper.classMapping();
+                List<String> keys = new ArrayList<>(classBytes.keySet());
+                Collections.sort(keys);
+                for (String key : keys) {
+                    byte[] bytes = classBytes.get(key);
+                    if (bytes == null || bytes.length == 0) continue;
+                    String entry = classBytes.originalEntryName(key);
+                    String mapped = entry == null ? null : classes.get(entry.substring(0, entry.length() - 6));
+                    jos.putNextEntry(new JarEntry(mapped != null ? mapped + ".class" : key));
+                    jos.write(bytes);
+                    jos.closeEntry();
+                }
+                JOptionPane.showMessageDialog(parent, "Export JAR remappé terminé : " + jarFile.getAbsolutePath());
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(parent, "Erreur lors de l'export JAR remappé : " + ex.getMessage());
+            }
+        });
+    }
+
+    // Remappe hors de l'EDT, redécompile les classes modifiées puis enregistre leur code en une fois.
+    // onDone reçoit le nombre de classes remappées (appelé sur l'EDT).
+    private void applyAndRedecompile(Consumer<Integer> onDone) {
+        JDialog progressDialog = new JDialog(parent, "Remappage du bytecode", true);
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Remappage...");
+        progressDialog.getContentPane().add(progressBar);
+        progressDialog.setSize(400, 80);
+        progressDialog.setLocationRelativeTo(parent);
+        new Thread(() -> {
+            Set<String> changed = remapper.apply();
+            if (changed.isEmpty()) {
+                SwingUtilities.invokeLater(() -> {
+                    progressDialog.dispose();
+                    onDone.accept(0);
+                });
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                progressBar.setIndeterminate(false);
+                progressBar.setMaximum(changed.size());
+                progressBar.setString(null);
+            });
+            Map<String, String> codes = new ConcurrentHashMap<>();
+            decompilerManager.decompileAll(changed, new DecompilerManager.BulkDecompileListener() {
+                public void onClassDecompiled(String className, String code, int completed, int total) {
+                    codes.put(className, code);
+                    SwingUtilities.invokeLater(() -> progressBar.setValue(completed));
+                }
+                public void onFinished(boolean cancelled) {
+                    projectRewriter.commit(codes);
+                    SwingUtilities.invokeLater(() -> {
+                        progressDialog.dispose();
+                        onDone.accept(changed.size());
+                    });
+                }
+            });
+        }).start();
+        progressDialog.setVisible(true);
+    }
+}
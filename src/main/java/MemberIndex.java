@@ -0,0 +1,277 @@
+import java.util.*;
+
+/**
+ * Index des références aux méthodes et aux champs, construit depuis le bytecode.
+ * Un membre est identifié par propriétaire + nom + descripteur ; chaque usage
+ * garde la classe et la méthode appelantes. Les classes sont désignées par leur
+ * nom interne (a/b/C), qui ne change pas quand la classe est renommée dans le projet.
+ */
+public class MemberIndex {
+
+    public enum Kind {
+        METHOD,
+        FIELD
+    }
+
+    /**
+     * Méthode ou champ : propriétaire + nom + descripteur.
+     */
+    public static class MemberRef {
+        public final Kind kind;
+        public final String owner;
+        public final String name;
+        public final String desc;
+
+        public MemberRef(Kind kind, String owner, String name, String desc) {
+            this.kind = kind;
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MemberRef)) return false;
+            MemberRef m = (MemberRef) o;
+            return kind == m.kind && owner.equals(m.owner) && name.equals(m.name) && desc.equals(m.desc);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, owner, name, desc);
+        }
+
+        @Override
+        public String toString() {
+            return kind == Kind.METHOD ? owner + "." + name + desc : owner + "." + name + ":" + desc;
+        }
+    }
+
+    /**
+     * Usage d'un membre : classe et méthode appelantes.
+     */
+    public static class CallSite {
+        public final MemberRef target;
+        public final String className;
+        public final String methodName;
+        public final String methodDesc;
+
+        public CallSite(MemberRef target, String className, String methodName, String methodDesc) {
+            this.target = target;
+            this.className = className;
+            this.methodName = methodName;
+            this.methodDesc = methodDesc;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CallSite)) return false;
+            CallSite c = (CallSite) o;
+            return target.equals(c.target) && className.equals(c.className)
+                && methodName.equals(c.methodName) && methodDesc.equals(c.methodDesc);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(target, className, methodName, methodDesc);
+        }
+
+        @Override
+        public String toString() {
+            return className + "." + methodName + methodDesc + " -> " + target;
+        }
+    }
+
+    private final Map<MemberRef, Set<CallSite>> usages = new HashMap<>();
+    private final Map<MemberRef, Set<String>> declarers = new HashMap<>();
+    // Nom simple -> membres de ce nom (déclarés ou référencés)
+    private final Map<String, Set<MemberRef>> byName = new HashMap<>();
+    // Par classe : ce qu'elle déclare et ses usages, pour pouvoir la retirer
+    private final Map<String, List<MemberRef>> declaredByClass = new HashMap<>();
+    private final Map<String, List<CallSite>> sitesByClass = new HashMap<>();
+    // Hiérarchie : pour suivre les redéfinitions et les accès via une sous-classe
+    private final Map<String, List<String>> supertypes = new HashMap<>();
+    private final Map<String, Set<String>> subtypes = new HashMap<>();
+
+    /**
+     * Enregistre (ou remplace) les membres déclarés et les usages d'une classe.
+     */
+    public synchronized void setClass(String className, String superName, String[] interfaces,
+                                      Collection<MemberRef> declared, Collection<CallSite> sites) {
+        removeClass(className);
+        List<String> supers = new ArrayList<>();
+        if (superName != null) supers.add(superName);
+        if (interfaces != null) supers.addAll(Arrays.asList(interfaces));
+        supertypes.put(className, supers);
+        for (String s : supers) subtypes.computeIfAbsent(s, k -> new HashSet<>()).add(className);
+        List<MemberRef> declaredList = new ArrayList<>(declared);
+        for (MemberRef m : declaredList) {
+            declarers.computeIfAbsent(m, k -> new HashSet<>()).add(className);
+            byName.computeIfAbsent(m.name, k -> new HashSet<>()).add(m);
+        }
+        declaredByClass.put(className, declaredList);
+        List<CallSite> siteList = new ArrayList<>(sites);
+        for (CallSite site : siteList) {
+            usages.computeIfAbsent(site.target, k -> new LinkedHashSet<>()).add(site);
+            byName.computeIfAbsent(site.target.name, k -> new HashSet<>()).add(site.target);
+        }
+        sitesByClass.put(className, siteList);
+    }
+
+    public synchronized void removeClass(String className) {
+        List<String> supers = supertypes.remove(className);
+        if (supers != null) {
+            for (String s : supers) {
+                Set<String> subs = subtypes.get(s);
+                if (subs != null) {
+                    subs.remove(className);
+                    if (subs.isEmpty()) subtypes.remove(s);
+                }
+            }
+        }
+        List<MemberRef> declared = declaredByClass.remove(className);
+        if (declared != null) {
+            for (MemberRef m : declared) {
+                Set<String> d = declarers.get(m);
+                if (d != null) {
+                    d.remove(className);
+                    if (d.isEmpty()) declarers.remove(m);
+                }
+                pruneName(m);
+            }
+        }
+        List<CallSite> sites = sitesByClass.remove(className);
+        if (sites != null) {
+            for (CallSite site : sites) {
+                Set<CallSite> set = usages.get(site.target);
+                if (set != null) {
+                    set.remove(site);
+                    if (set.isEmpty()) usages.remove(site.target);
+                }
+                pruneName(site.target);
+            }
+        }
+    }
+
+    // Oublie un membre qui n'est plus ni déclaré ni utilisé
+    private void pruneName(MemberRef m) {
+        if (declarers.containsKey(m) || usages.containsKey(m)) return;
+        Set<MemberRef> named = byName.get(m.name);
+        if (named != null) {
+            named.remove(m);
+            if (named.isEmpty()) byName.remove(m.name);
+        }
+    }
+
+    /**
+     * Usages exacts d'un membre (même propriétaire, nom et descripteur).
+     */
+    public synchronized List<CallSite> getUsages(MemberRef member) {
+        Set<CallSite> set = usages.get(member);
+        return set != null ? new ArrayList<>(set) : new ArrayList<>();
+    }
+
+    /**
+     * Classes qui déclarent ce membre exact.
+     */
+    public synchronized Set<String> getDeclarers(MemberRef member) {
+        Set<String> d = declarers.get(member);
+        return d != null ? new HashSet<>(d) : new HashSet<>();
+    }
+
+    /**
+     * Super-classe et interfaces directes d'une classe du projet (liste vide si inconnue).
+     */
+    public synchronized List<String> getSupertypes(String className) {
+        List<String> supers = supertypes.get(className);
+        return supers != null ? new ArrayList<>(supers) : new ArrayList<>();
+    }
+
+    /**
+     * Membres d'un genre donné portant ce nom (déclarés ou référencés).
+     */
+    public synchronized Set<MemberRef> getMembersNamed(Kind kind, String name) {
+        Set<MemberRef> result = new HashSet<>();
+        Set<MemberRef> named = byName.get(name);
+        if (named != null) {
+            for (MemberRef m : named) {
+                if (m.kind == kind) result.add(m);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Classes qui déclarent ou utilisent un membre de ce nom, quel que soit son propriétaire.
+     * Vide si le nom n'apparaît pas dans le bytecode.
+     */
+    public synchronized Set<String> getClassesUsingName(Kind kind, String name) {
+        Set<String> classes = new HashSet<>();
+        Set<MemberRef> named = byName.get(name);
+        if (named == null) return classes;
+        for (MemberRef m : named) {
+            if (m.kind != kind) continue;
+            Set<String> d = declarers.get(m);
+            if (d != null) classes.addAll(d);
+            Set<CallSite> sites = usages.get(m);
+            if (sites != null) {
+                for (CallSite site : sites) classes.add(site.className);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Classes touchées par le renommage d'un membre : déclarations et usages du même
+     * nom + descripteur dans la hiérarchie concernée (redéfinitions, appels via une
+     * sous-classe ou une interface). On descend depuis le propriétaire et depuis ses
+     * ancêtres qui déclarent ce membre, sans remonter au-delà des types hors projet.
+     */
+    public synchronized Set<String> getRenameImpact(MemberRef member) {
+        Set<String> roots = new HashSet<>();
+        roots.add(member.owner);
+        Set<String> seen = new HashSet<>();
+        Deque<String> up = new ArrayDeque<>();
+        up.add(member.owner);
+        while (!up.isEmpty()) {
+            String t = up.poll();
+            if (!seen.add(t)) continue;
+            if (declarers.containsKey(new MemberRef(member.kind, t, member.name, member.desc))) roots.add(t);
+            // Pas d'entrée = type hors projet (JDK, bibliothèque) : on s'arrête là
+            List<String> supers = supertypes.get(t);
+            if (supers != null) up.addAll(supers);
+        }
+        Set<String> family = new HashSet<>(roots);
+        Deque<String> down = new ArrayDeque<>(roots);
+        while (!down.isEmpty()) {
+            Set<String> subs = subtypes.get(down.poll());
+            if (subs == null) continue;
+            for (String sub : subs) {
+                if (family.add(sub)) down.add(sub);
+            }
+        }
+        Set<String> classes = new HashSet<>();
+        for (String owner : family) {
+            MemberRef m = new MemberRef(member.kind, owner, member.name, member.desc);
+            Set<String> d = declarers.get(m);
+            if (d != null) classes.addAll(d);
+            Set<CallSite> sites = usages.get(m);
+            if (sites != null) {
+                for (CallSite site : sites) classes.add(site.className);
+            }
+        }
+        return classes;
+    }
+
+    public synchronized void clear() {
+        usages.clear();
+        declarers.clear();
+        byName.clear();
+        declaredByClass.clear();
+        sitesByClass.clear();
+        supertypes.clear();
+        subtypes.clear();
+    }
+}
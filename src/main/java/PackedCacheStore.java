@@ -0,0 +1,378 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stockage du cache dans un seul fichier de données en ajout seul (cache-N.dat)
+ * accompagné d'un index d'offsets (cache-N.idx).
+ * Les lectures sont des tranches d'un mapping mémoire du fichier de données.
+ * Vider ou compacter le cache ouvre une nouvelle génération N+1 : l'ancienne est
+ * abandonnée d'un coup (un fichier encore mappé ne peut pas être tronqué sous Windows).
+ * L'index note aussi les accès (touch) : l'ordre d'utilisation survit à la réouverture.
+ */
+public class PackedCacheStore {
+    private static final String PREFIX = "cache-";
+    // Longueurs spéciales dans l'index
+    private static final int REMOVED = -1;
+    private static final int TOUCHED = -2;
+
+    private static class Entry {
+        final long offset;
+        final int length;
+        // Horloge logique du dernier accès (écriture ou lecture)
+        volatile long lastUse;
+
+        Entry(long offset, int length, long lastUse) {
+            this.offset = offset;
+            this.length = length;
+            this.lastUse = lastUse;
+        }
+    }
+
+    private final File dir;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int generation;
+    private FileChannel dataChannel;
+    private DataOutputStream indexOut;
+    private long dataSize;
+    private long liveBytes;
+    private MappedByteBuffer mapped;
+    private long useClock;
+    // Les accès sont notés sous le verrou de lecture : un seul à la fois dans l'index
+    private final Object touchLock = new Object();
+
+    public PackedCacheStore(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Ouvre la génération la plus récente et supprime les générations abandonnées.
+     */
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!dir.exists()) dir.mkdirs();
+            generation = 0;
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    int gen = generationOf(f);
+                    if (gen > generation) generation = gen;
+                }
+            }
+            deleteOtherGenerations();
+            loadIndex();
+            openChannels();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retourne une tranche en lecture seule du fichier de données, ou null si la clé est absente.
+     */
+    public ByteBuffer read(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            Entry e = entries.get(key);
+            if (e == null) return null;
+            if (mapped != null && e.offset + e.length <= mapped.limit()) return slice(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Entrée écrite après le dernier mapping : on remappe
+        lock.writeLock().lock();
+        try {
+            Entry e = entries.get(key);
+            if (e == null) return null;
+            remap();
+            if (mapped != null && e.offset + e.length <= mapped.limit()) return slice(e);
+            // Au-delà de 2 Go : lecture classique
+            ByteBuffer buf = ByteBuffer.allocate(e.length);
+            dataChannel.read(buf, e.offset);
+            buf.flip();
+            return buf.asReadOnlyBuffer();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ajoute une entrée à la fin du fichier de données puis dans l'index.
+     */
+    public void write(String key, byte[] payload) throws IOException {
+        lock.writeLock().lock();
+        try {
+            long offset = dataSize;
+            ByteBuffer buf = ByteBuffer.wrap(payload);
+            while (buf.hasRemaining()) {
+                dataChannel.write(buf, offset + buf.position());
+            }
+            dataSize += payload.length;
+            // Index écrit après les données : une coupure ne laisse jamais un offset invalide
+            indexOut.writeUTF(key);
+            indexOut.writeLong(offset);
+            indexOut.writeInt(payload.length);
+            indexOut.flush();
+            Entry old = entries.put(key, new Entry(offset, payload.length, ++useClock));
+            if (old != null) liveBytes -= old.length;
+            liveBytes += payload.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Oublie une entrée (l'espace sera récupéré à la prochaine compaction).
+     */
+    public void remove(String key) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.remove(key);
+            if (old == null) return;
+            liveBytes -= old.length;
+            indexOut.writeUTF(key);
+            indexOut.writeLong(0);
+            indexOut.writeInt(REMOVED);
+            indexOut.flush();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Note un accès à une entrée. Seules les entrées de la moitié la moins récente sont notées
+     * dans l'index (les entrées chaudes n'y ajoutent rien) ; l'enregistrement est écrit avec le
+     * prochain flush, perdre les derniers accès en cas de coupure est sans conséquence.
+     */
+    public void touch(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            Entry e = entries.get(key);
+            if (e == null || indexOut == null) return;
+            synchronized (touchLock) {
+                if (useClock - e.lastUse < entries.size() / 2) return;
+                e.lastUse = ++useClock;
+                indexOut.writeUTF(key);
+                indexOut.writeLong(0);
+                indexOut.writeInt(TOUCHED);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Clés de la moins récemment utilisée à la plus récente (écritures et accès notés).
+     */
+    public List<String> keysInUseOrder() {
+        List<Map.Entry<String, Entry>> list = new ArrayList<>(entries.entrySet());
+        list.sort(Comparator.comparingLong(me -> me.getValue().lastUse));
+        List<String> keys = new ArrayList<>(list.size());
+        for (Map.Entry<String, Entry> me : list) keys.add(me.getKey());
+        return keys;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Vide le cache en O(1) : passage à une génération vide.
+     */
+    public void clear() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closeChannels();
+            entries.clear();
+            generation++;
+            dataFile(generation).delete();
+            indexFile(generation).delete();
+            openChannels();
+            deleteOtherGenerations();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Réécrit uniquement les entrées vivantes dans une nouvelle génération.
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            remap();
+            int newGen = generation + 1;
+            Map<String, Entry> compacted = new HashMap<>();
+            try (FileChannel out = FileChannel.open(dataFile(newGen).toPath(), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream idx = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile(newGen))))) {
+                long pos = 0;
+                // Écrites de la moins récente à la plus récente : l'ordre d'utilisation se relit tel quel
+                for (String key : keysInUseOrder()) {
+                    Entry e = entries.get(key);
+                    ByteBuffer src;
+                    if (mapped != null && e.offset + e.length <= mapped.limit()) {
+                        src = slice(e);
+                    } else {
+                        src = ByteBuffer.allocate(e.length);
+                        dataChannel.read(src, e.offset);
+                        src.flip();
+                    }
+                    while (src.hasRemaining()) {
+                        pos += out.write(src, pos);
+                    }
+                    idx.writeUTF(key);
+                    idx.writeLong(pos - e.length);
+                    idx.writeInt(e.length);
+                    compacted.put(key, new Entry(pos - e.length, e.length, e.lastUse));
+                }
+                out.force(true);
+            }
+            closeChannels();
+            generation = newGen;
+            entries.clear();
+            entries.putAll(compacted);
+            openChannels();
+            deleteOtherGenerations();
+            System.out.println("DEBUG CACHE: compaction terminée, " + entries.size() + " entrées, " + dataSize + " octets");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vrai si plus de la moitié du fichier de données est de l'espace mort.
+     */
+    public boolean needsCompaction() {
+        long dead = dataSize - liveBytes;
+        return dead > 1024 * 1024 && dead > liveBytes;
+    }
+
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closeChannels();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private ByteBuffer slice(Entry e) {
+        ByteBuffer dup = mapped.duplicate();
+        dup.position((int) e.offset);
+        dup.limit((int) (e.offset + e.length));
+        return dup.slice().asReadOnlyBuffer();
+    }
+
+    private void remap() throws IOException {
+        long size = Math.min(dataSize, Integer.MAX_VALUE);
+        if (mapped != null && mapped.limit() == size) return;
+        mapped = size > 0 ? dataChannel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+    }
+
+    private void loadIndex() throws IOException {
+        entries.clear();
+        useClock = 0;
+        File idx = indexFile(generation);
+        long dataLength = dataFile(generation).length();
+        if (idx.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(idx)))) {
+                while (true) {
+                    String key;
+                    long offset;
+                    int length;
+                    try {
+                        key = in.readUTF();
+                        offset = in.readLong();
+                        length = in.readInt();
+                    } catch (EOFException eof) {
+                        break; // Fin de fichier (ou dernier enregistrement tronqué)
+                    }
+                    useClock++;
+                    if (length == TOUCHED) {
+                        Entry e = entries.get(key);
+                        if (e != null) e.lastUse = useClock;
+                    } else if (length < 0) {
+                        entries.remove(key);
+                    } else if (offset + length <= dataLength) {
+                        entries.put(key, new Entry(offset, length, useClock));
+                    }
+                }
+            }
+        }
+        liveBytes = 0;
+        for (Entry e : entries.values()) liveBytes += e.length;
+    }
+
+    private void openChannels() throws IOException {
+        dataChannel = FileChannel.open(dataFile(generation).toPath(), StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dataSize = dataChannel.size();
+        indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile(generation), true)));
+        mapped = null;
+        if (entries.isEmpty()) liveBytes = 0;
+        remap();
+    }
+
+    private void closeChannels() throws IOException {
+        // Le mapping reste valide après fermeture du canal : les tranches déjà rendues restent lisibles
+        mapped = null;
+        if (indexOut != null) indexOut.close();
+        if (dataChannel != null) dataChannel.close();
+        indexOut = null;
+        dataChannel = null;
+    }
+
+    private void deleteOtherGenerations() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            int gen = generationOf(f);
+            if (gen >= 0 && gen != generation) {
+                // Peut échouer sous Windows si encore mappé : réessayé à la prochaine ouverture
+                f.delete();
+            }
+        }
+    }
+
+    private File dataFile(int gen) {
+        return new File(dir, PREFIX + gen + ".dat");
+    }
+
+    private File indexFile(int gen) {
+        return new File(dir, PREFIX + gen + ".idx");
+    }
+
+    private static int generationOf(File f) {
+        String name = f.getName();
+        if (!name.startsWith(PREFIX) || !(name.endsWith(".dat") || name.endsWith(".idx"))) return -1;
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
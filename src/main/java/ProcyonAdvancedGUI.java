@@ -25,8 +25,9 @@ public class ProcyonAdvancedGUI extends JFrame {
     private RSyntaxTextArea codeArea;
     private JButton openButton, searchButton;
     private JTextField searchField;
+    private JButton searchPreviousButton;
     private JTree classTree;
-    private Map<String, byte[]> classBytes = new HashMap<>();
+    private ClassBytesMap classBytes = new ClassBytesMap();
     private Map<String, String> classToDisplayName = new HashMap<>();
     private String lastDecompiledCode = null;
     private String lastClassName = null;
@@ -45,6 +46,10 @@ public class ProcyonAdvancedGUI extends JFrame {
     private CodeEditorManager codeEditorManager;
     private NavigationManager navigationManager;
     private RenameManager renameManager;
+    private ProjectRewriter projectRewriter;
+    private RenameJournal renameJournal;
+    private BytecodeRemapper bytecodeRemapper;
+    private MappingManager mappingManager;
     private IdentifierAnalyzer identifierAnalyzer;
 
     // Références aux maps du ReferenceManager (pour compatibilité)
@@ -60,10 +65,19 @@ public class ProcyonAdvancedGUI extends JFrame {
     private DefaultListModel<String> globalSearchListModel;
     private Map<String, Integer> resultToLine = new HashMap<>();
     private Map<String, String> resultToClass = new HashMap<>();
+    private javax.swing.Timer globalSearchTypingTimer;
+    private JCheckBox globalSearchRegexBox;
+    private JCheckBox globalSearchWholeWordBox;
+    private JCheckBox globalSearchMatchCaseBox;
+    private JCheckBox globalSearchBytecodeBox;
+    private Map<String, String> resultToNeedle = new HashMap<>();
     private JButton exportJarButton;
     private JButton exportCompiledJarButton;
+    private JButton mappingsButton;
+    private JButton undoRenameButton;
+    private JButton redoRenameButton;
     // Map pour stocker le code modifié de toutes les classes (même non ouvertes)
-    private Map<String, String> modifiedCode = new HashMap<>();
+    private final SourceCodeMap modifiedCode = new SourceCodeMap();
     private boolean darkTheme = true;
     private JButton themeButton;
     private JButton saveProjectButton;
@@ -89,12 +103,13 @@ public class ProcyonAdvancedGUI extends JFrame {
 
         // ========== MANAGERS DE BASE (pas de composants Swing nécessaires) ==========
         cacheManager = new CacheManager(cacheDir);
-        decompilerManager = new DecompilerManager(cacheDir, classBytes, modifiedCode);
+        decompilerManager = new DecompilerManager(cacheManager, classBytes, modifiedCode);
         referenceManager = new ReferenceManager();
         referencesTo = referenceManager.getReferencesTo();
         referenceIndex = referenceManager.getReferenceIndex();
         exportManager = new ExportManager(this, classBytes, modifiedCode, openTabs, decompilerManager);
-        projectManager = new ProjectManager(this, classBytes, modifiedCode, classToDisplayName, openTabs, decompilerManager, null);
+        projectManager = new ProjectManager(this, classBytes, modifiedCode, classToDisplayName, openTabs, decompilerManager,
+                                            referenceManager, cacheManager, null);
 
         themeManager = new ThemeManager(this);
         themeManager.initializeDarkTheme();
@@ -109,6 +124,11 @@ public class ProcyonAdvancedGUI extends JFrame {
                 openTabs,
                 themeManager
         );
+        renameJournal = new RenameJournal(modifiedCode, openTabs, tabManager, this::moveClassKeys);
+        projectRewriter = new ProjectRewriter(modifiedCode, openTabs, tabManager, renameJournal);
+        bytecodeRemapper = new BytecodeRemapper(classBytes, referenceManager);
+        mappingManager = new MappingManager(this, classBytes, decompilerManager, projectRewriter, bytecodeRemapper,
+                                            this::moveClassKeys);
 
         // ========== BOUTONS & CHAMPS ==========
         openButton = new JButton("Ouvrir un .class ou .jar");
@@ -116,11 +136,16 @@ public class ProcyonAdvancedGUI extends JFrame {
         resetButton = new JButton("Réinitialiser");
         exportJarButton = new JButton("Exporter en JAR");
         exportCompiledJarButton = new JButton("Exporter en JAR compilé");
+        mappingsButton = new JButton("Mappings");
+        mappingsButton.setToolTipText("Remappage du bytecode, import / export de mappings (SRG, Tiny, ProGuard)");
+        undoRenameButton = new JButton("Annuler renommage");
+        redoRenameButton = new JButton("Rétablir renommage");
         themeButton = new JButton("Thème clair/sombre");
         optionsButton = new JButton("Options");
         saveProjectButton = new JButton("Sauvegarder projet");
         loadProjectButton = new JButton("Charger projet");
         searchButton = new JButton("Rechercher");
+        searchPreviousButton = new JButton("Précédent");
         globalSearchButton = new JButton("Recherche globale");
 
         // Nouveau bouton pour l'analyse IA avancée
@@ -135,6 +160,11 @@ public class ProcyonAdvancedGUI extends JFrame {
 
         searchField = new JTextField(30);
         globalSearchField = new JTextField(20);
+        globalSearchRegexBox = new JCheckBox("Regex");
+        globalSearchWholeWordBox = new JCheckBox("Mot entier");
+        globalSearchMatchCaseBox = new JCheckBox("Respecter la casse", true);
+        globalSearchBytecodeBox = new JCheckBox("Bytecode");
+        globalSearchBytecodeBox.setToolTipText("Constantes, appels et références dans le bytecode, sans décompiler (termes combinables avec &&)");
         globalSearchListModel = new DefaultListModel<>();
         globalSearchResults = new JList<>(globalSearchListModel);
         globalSearchResults.setVisibleRowCount(5);
@@ -142,10 +172,16 @@ public class ProcyonAdvancedGUI extends JFrame {
 
         // SearchManager (dépend du modèle de recherche globale)
         searchManager = new SearchManager(classBytes, modifiedCode, globalSearchListModel, decompilerManager);
+        tabManager.addTabClosedListener(searchManager::releaseEditor);
+        // Les résultats sont remplis au fil des lots par SearchManager
+        resultToLine = searchManager.getResultToLine();
+        resultToClass = searchManager.getResultToClass();
+        resultToNeedle = searchManager.getResultToNeedle();
 
         clearCacheButton = new JButton("Vider le cache");
         clearCacheButton.addActionListener(e -> {
             cacheManager.clearCache();
+            decompilerManager.clearHotCache();
             JOptionPane.showMessageDialog(this, "Cache vidé !");
         });
 
@@ -166,17 +202,52 @@ public class ProcyonAdvancedGUI extends JFrame {
         resetButton.addActionListener(e -> resetDecompiledCode());
         exportJarButton.addActionListener(e -> exportManager.exportToJar());
         exportCompiledJarButton.addActionListener(e -> exportManager.exportToCompiledJar());
+        mappingsButton.addActionListener(e -> mappingManager.createMenu().show(mappingsButton, 0, mappingsButton.getHeight()));
+        undoRenameButton.addActionListener(e -> undoRename(true));
+        redoRenameButton.addActionListener(e -> undoRename(false));
+        renameJournal.addListener(this::updateRenameJournalButtons);
+        updateRenameJournalButtons();
         themeButton.addActionListener(e -> themeManager.toggleTheme());
         optionsButton.addActionListener(e -> showOptionsDialog());
         saveProjectButton.addActionListener(e -> projectManager.saveProjectState());
         loadProjectButton.addActionListener(e -> projectManager.loadProjectState(
-                () -> treeManager.updateTreeWithPackages(new ArrayList<>(classBytes.keySet())),
+                () -> {
+                    bytecodeRemapper.clear();
+                    renameJournal.clear();
+                    treeManager.updateTreeWithPackages(new ArrayList<>(classBytes.keySet()));
+                },
                 () -> autoRenameAllClasses()
         ));
         searchButton.addActionListener(e -> searchManager.searchInCode(getCurrentCodeArea(), searchField.getText()));
+        searchPreviousButton.addActionListener(e -> searchManager.searchInCode(getCurrentCodeArea(), searchField.getText(), false));
+        // Entrée = suivant, Maj+Entrée = précédent ; la frappe cherche au fur et à mesure
+        searchField.addActionListener(e -> searchManager.searchInCode(getCurrentCodeArea(), searchField.getText(),
+                (e.getModifiers() & ActionEvent.SHIFT_MASK) == 0));
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { searchManager.updateInCodeSearch(getCurrentCodeArea(), searchField.getText()); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { searchManager.updateInCodeSearch(getCurrentCodeArea(), searchField.getText()); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {}
+        });
         globalSearchButton.addActionListener(e -> {
-            searchManager.performGlobalSearch(globalSearchField.getText(), openTabs);
-            updateGlobalSearchVisibility();
+            globalSearchTypingTimer.stop();
+            performGlobalSearch();
+        });
+        // Changer de mode relance la recherche en cours
+        for (JCheckBox box : new JCheckBox[]{globalSearchRegexBox, globalSearchWholeWordBox, globalSearchMatchCaseBox, globalSearchBytecodeBox}) {
+            box.addActionListener(e -> {
+                if (!globalSearchField.getText().isEmpty()) performGlobalSearch();
+            });
+        }
+        // Recherche pendant la frappe : la requête précédente est annulée tout de suite,
+        // la nouvelle part quand la frappe marque une pause
+        globalSearchTypingTimer = new javax.swing.Timer(200, e -> {
+            if (globalSearchField.getText().length() >= 2) performGlobalSearch();
+        });
+        globalSearchTypingTimer.setRepeats(false);
+        globalSearchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { onGlobalSearchTyped(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { onGlobalSearchTyped(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {}
         });
         globalSearchResults.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
@@ -184,11 +255,17 @@ public class ProcyonAdvancedGUI extends JFrame {
                 if (key != null && resultToClass.containsKey(key)) {
                     String className = resultToClass.get(key);
                     int line = resultToLine.getOrDefault(key, 0);
+                    String needle = resultToNeedle.get(key);
                     decompileClassBytes(className, classBytes.get(className));
                     RSyntaxTextArea area = openTabs.get(className);
                     if (area != null) {
                         try {
                             int pos = area.getLineStartOffset(line);
+                            // Résultat bytecode : pas de ligne connue, on se place sur le texte correspondant
+                            if (needle != null && !needle.isEmpty()) {
+                                int idx = area.getText().indexOf(needle);
+                                if (idx >= 0) pos = idx;
+                            }
                             area.setCaretPosition(pos);
                             area.requestFocus();
                         } catch (Exception ex) {}
@@ -210,6 +287,9 @@ public class ProcyonAdvancedGUI extends JFrame {
         actionPanel.add(resetButton);
         actionPanel.add(exportJarButton);
         actionPanel.add(exportCompiledJarButton);
+        actionPanel.add(mappingsButton);
+        actionPanel.add(undoRenameButton);
+        actionPanel.add(redoRenameButton);
         actionPanel.add(themeButton);
         actionPanel.add(optionsButton);
         actionPanel.add(saveProjectButton);
@@ -225,6 +305,10 @@ public class ProcyonAdvancedGUI extends JFrame {
         globalSearchPanel.add(new JLabel("Recherche globale :"));
         globalSearchPanel.add(globalSearchField);
         globalSearchPanel.add(globalSearchButton);
+        globalSearchPanel.add(globalSearchRegexBox);
+        globalSearchPanel.add(globalSearchWholeWordBox);
+        globalSearchPanel.add(globalSearchMatchCaseBox);
+        globalSearchPanel.add(globalSearchBytecodeBox);
 
         globalSearchResults.setVisible(false);
         globalSearchListModel.addListDataListener(new javax.swing.event.ListDataListener() {
@@ -239,6 +323,7 @@ public class ProcyonAdvancedGUI extends JFrame {
         JPanel localSearchPanel = new JPanel(new java.awt.FlowLayout(java.awt.FlowLayout.LEFT));
         localSearchPanel.add(new JLabel("Recherche :"));
         localSearchPanel.add(searchField);
+        localSearchPanel.add(searchPreviousButton);
         localSearchPanel.add(searchButton);
 
         JPanel topPanel = new JPanel();
@@ -278,12 +363,15 @@ public class ProcyonAdvancedGUI extends JFrame {
                 classBytes,
                 modifiedCode,
                 openTabs,
-                referencesTo,
+                referenceManager,
                 classRenamer,
                 decompilerManager,
                 treeManager,
                 tabManager,
-                identifierAnalyzer
+                identifierAnalyzer,
+                projectRewriter,
+                bytecodeRemapper,
+                renameJournal
         );
 
         navigationManager = new NavigationManager(
@@ -397,10 +485,7 @@ public class ProcyonAdvancedGUI extends JFrame {
                     : decompilerManager.decompileClassToString(className, classBytes.get(className));
 
             // Récupérer contexte usages
-            Set<String> usages = new HashSet<>();
-            for (Map.Entry<String, Set<String>> e : referencesTo.entrySet()) {
-                if (e.getValue().contains(className)) usages.add(e.getKey());
-            }
+            Set<String> usages = referenceManager.getUsagesOf(className);
             StringBuilder usagesCode = new StringBuilder();
             for (String usage : usages) {
                 usagesCode.append("// Classe où utilisée: ").append(usage).append("\n");
@@ -531,7 +616,7 @@ public class ProcyonAdvancedGUI extends JFrame {
                     classNode.displayName = newName;
                     treeManager.getTreeModel().nodeChanged(node);
                     String sep = "(^|[\\s\\(\\)\\[\\]\\{\\}<>,;.=+\\-*/%!?:&|^~])";
-                    Set<String> impacted = referencesTo.getOrDefault(classNode.fullPath, new HashSet<>());
+                    Set<String> impacted = new HashSet<>(referenceManager.getUsagesOf(classNode.fullPath));
                     impacted.add(classNode.fullPath);
                     for (String classKey : impacted) {
                         byte[] bytes = classBytes.get(classKey);
@@ -676,8 +761,8 @@ public class ProcyonAdvancedGUI extends JFrame {
                             String className = oldFull.substring(oldFull.lastIndexOf('/') + 1);
                             String newFull = (newPkg.length() > 0 ? newPkg + "/" : "") + className;
                             // Met à jour la clé dans classBytes, classToDisplayName, openTabs
-                            byte[] bytes = classBytes.remove(oldFull);
-                            classBytes.put(newFull, bytes);
+                            classBytes.rename(oldFull, newFull);
+                            referenceManager.renameClass(oldFull, newFull);
                             classToDisplayName.put(newFull, classToDisplayName.remove(oldFull));
                             RSyntaxTextArea area = openTabs.remove(oldFull);
                             if (area != null) openTabs.put(newFull, area);
@@ -712,6 +797,21 @@ public class ProcyonAdvancedGUI extends JFrame {
             if (file.getName().endsWith(".class")) {
                 openClass(file);
             } else if (file.getName().endsWith(".jar")) {
+                if (!classBytes.isEmpty()) {
+                    // Un projet est déjà ouvert : proposer de le mettre à jour plutôt que de tout recharger
+                    Object[] choices = {"Mettre à jour le projet", "Nouveau projet", "Annuler"};
+                    int choice = JOptionPane.showOptionDialog(this,
+                            "Un projet est déjà ouvert.\n\n" +
+                            "Mettre à jour : seules les classes ajoutées ou modifiées sont redécompilées,\n" +
+                            "les renommages et modifications des autres classes sont conservés.",
+                            "Ouvrir " + file.getName(), JOptionPane.YES_NO_CANCEL_OPTION,
+                            JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+                    if (choice == 0) {
+                        updateJar(file);
+                        return;
+                    }
+                    if (choice != 1) return;
+                }
                 openJar(file);
             } else {
                 JOptionPane.showMessageDialog(this, "Sélectionnez un .class ou .jar");
@@ -722,35 +822,53 @@ public class ProcyonAdvancedGUI extends JFrame {
     // Affiche une popup de progression lors de la toute première ouverture d'un onglet (décompilation lazy de masse)
     private void showLazyDecompileProgressIfNeeded(Set<String> classesToDecompile) {
         if (classesToDecompile.size() <= 1) return; // Pas besoin si une seule classe
+        List<String> pending = new ArrayList<>();
+        for (String className : classesToDecompile) {
+            if (!modifiedCode.containsKey(className) && !openTabs.containsKey(className)) {
+                pending.add(className);
+            }
+        }
+        if (pending.isEmpty()) return;
         JDialog progressDialog = new JDialog(this, "Décompilation initiale en cours", true);
-        JProgressBar progressBar = new JProgressBar(0, classesToDecompile.size());
+        JProgressBar progressBar = new JProgressBar(0, pending.size());
         progressBar.setStringPainted(true);
         progressDialog.getContentPane().add(progressBar);
         progressDialog.setSize(400, 80);
         progressDialog.setLocationRelativeTo(this);
-        new Thread(() -> {
-            int count = 0;
-            for (String className : classesToDecompile) {
-                if (!modifiedCode.containsKey(className) && !openTabs.containsKey(className)) {
-                    decompilerManager.decompileClassToString(className, classBytes.get(className));
-                }
-                count++;
-                final int progress = count;
-                javax.swing.SwingUtilities.invokeLater(() -> progressBar.setValue(progress));
+        DecompilerManager.BulkDecompilation job = decompilerManager.decompileAll(pending, new DecompilerManager.BulkDecompileListener() {
+            public void onClassDecompiled(String className, String code, int completed, int total) {
+                javax.swing.SwingUtilities.invokeLater(() -> progressBar.setValue(completed));
             }
-            javax.swing.SwingUtilities.invokeLater(progressDialog::dispose);
-        }).start();
+            public void onFinished(boolean cancelled) {
+                javax.swing.SwingUtilities.invokeLater(progressDialog::dispose);
+            }
+        });
+        addCancelOnClose(progressDialog, job);
         progressDialog.setVisible(true);
     }
 
+    // Fermer la popup de progression annule la décompilation de masse associée
+    private void addCancelOnClose(JDialog progressDialog, DecompilerManager.BulkDecompilation job) {
+        progressDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        progressDialog.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                job.cancel();
+            }
+        });
+    }
+
     private void openJar(File jarFile) {
         try {
             classBytes.clear();
             classToDisplayName.clear();
             referenceManager.clear();
+            bytecodeRemapper.clear();
+            renameJournal.clear();
             originalCode.clear();
             modifiedCode.clear();
             simpleNameIndex.clear();
+            decompilerManager.clearHotCache();
             List<String> classNames = decompilerManager.loadJar(jarFile);
             // Indexe tous les noms simples pour accélérer la navigation
             for (String className : classNames) {
@@ -758,9 +876,8 @@ public class ProcyonAdvancedGUI extends JFrame {
             }
             for (String className : classNames) {
                 classToDisplayName.put(className, className);
-                referenceManager.indexClassReferences(className, classBytes.get(className));
             }
-            referenceManager.buildReferenceIndexFast(classBytes);
+            indexReferences(classNames);
             treeManager.updateTreeWithPackages(classNames);
             // Ajoute ceci :
             if (!classNames.isEmpty()) {
@@ -773,40 +890,28 @@ public class ProcyonAdvancedGUI extends JFrame {
             progressDialog.add(progressBar);
             progressDialog.setSize(400, 80);
             progressDialog.setLocationRelativeTo(this);
-            new Thread(() -> {
-                int i = 0;
-                System.out.println("DEBUG: Début décompilation de " + classNames.size() + " classes");
-                try {
-                for (String className : classNames) {
-                    try {
-                        System.out.println("DEBUG: Décompilation " + (i+1) + "/" + classNames.size() + " : " + className);
-                        String code = decompilerManager.decompileClassToString(className, classBytes.get(className));
-                        modifiedCode.put(className, code);
-                        System.out.println("DEBUG: ✓ " + className + " décompilée et mise en cache");
-                    } catch (Exception ex) {
-                        System.out.println("DEBUG: ✗ Erreur pour " + className + " : " + ex.getMessage());
-                        modifiedCode.put(className, "// Erreur de décompilation: " + ex.getMessage());
-                    }
-                    final int progress = ++i;
-                    javax.swing.SwingUtilities.invokeLater(() -> progressBar.setValue(progress));
+            System.out.println("DEBUG: Début décompilation de " + classNames.size() + " classes");
+            DecompilerManager.BulkDecompilation job = decompilerManager.decompileAll(classNames, new DecompilerManager.BulkDecompileListener() {
+                public void onClassDecompiled(String className, String code, int completed, int total) {
+                    modifiedCode.put(className, code);
+                    javax.swing.SwingUtilities.invokeLater(() -> progressBar.setValue(completed));
                 }
-                System.out.println("DEBUG: Fin décompilation. Total traitées : " + i + "/" + classNames.size());
-                } catch (Exception e) {
-                    System.out.println("DEBUG: Erreur générale dans la décompilation : " + e.getMessage());
-                } finally {
+                public void onFinished(boolean cancelled) {
+                    System.out.println("DEBUG: Fin décompilation" + (cancelled ? " (annulée)" : "") + ". Total traitées : "
+                            + modifiedCode.size() + "/" + classNames.size());
                     // Ferme d'abord la popup de progression
                     javax.swing.SwingUtilities.invokeLater(() -> {
-                progressDialog.dispose();
-                        
+                        progressDialog.dispose();
+
                         // Puis lance le renommage automatique dans un thread séparé
                         new Thread(() -> {
                             try {
                                 System.out.println("DEBUG: Début renommage automatique");
                                 autoRenameAllClasses();
                                 System.out.println("DEBUG: Fin renommage automatique");
-                                
+
                                 // Ouvre la première classe automatiquement après le renommage
-                if (!classNames.isEmpty()) {
+                                if (!classNames.isEmpty()) {
                                     javax.swing.SwingUtilities.invokeLater(() -> {
                                         try {
                                             decompileClassBytes(classNames.get(0), classBytes.get(classNames.get(0)));
@@ -831,13 +936,192 @@ public class ProcyonAdvancedGUI extends JFrame {
                         }).start();
                     });
                 }
-            }).start();
+            });
+            addCancelOnClose(progressDialog, job);
             progressDialog.setVisible(true);
         } catch (Exception ex) {
             codeArea.setText("Erreur de lecture du jar : " + ex.getMessage());
         }
     }
 
+    // Index des références : repris de l'instantané si le JAR n'a pas changé depuis la dernière
+    // ouverture, sinon reconstruit depuis le bytecode puis enregistré dans le cache
+    private void indexReferences(List<String> classNames) {
+        String jarHash = decompilerManager.getJarHash();
+        // Rangé dans le magasin du cache : compte dans son budget et part avec "Vider le cache"
+        String snapshotKey = jarHash != null ? "refs-" + jarHash : null;
+        Set<String> restored = snapshotKey != null
+                ? referenceManager.loadSnapshot(cacheManager.getMapped(snapshotKey), jarHash, classNames) : null;
+        List<String> missing = new ArrayList<>(classNames);
+        if (restored != null) missing.removeAll(restored);
+        referenceManager.indexClasses(classBytes, missing);
+        if (restored == null && snapshotKey != null) {
+            try {
+                cacheManager.putRaw(snapshotKey, referenceManager.snapshotBytes(jarHash));
+            } catch (IOException e) {
+                System.out.println("DEBUG: Erreur écriture instantané des références : " + e.getMessage());
+            }
+        }
+    }
+
+    // Mode "mise à jour" : diff entre le projet ouvert et une nouvelle version du JAR
+    private void updateJar(File jarFile) {
+        ClassBytesMap.JarDiff diff;
+        try {
+            diff = decompilerManager.updateJar(jarFile);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Erreur de lecture du jar : " + ex.getMessage());
+            return;
+        }
+        for (String key : diff.removed) {
+            modifiedCode.remove(key);
+            originalCode.remove(key);
+            classToDisplayName.remove(key);
+            referenceManager.removeClass(key);
+            simpleNameIndex.remove(getSimpleClassName(key), key);
+            tabManager.closeTab(key);
+        }
+        List<String> toDecompile = new ArrayList<>(diff.changed);
+        toDecompile.addAll(diff.added);
+        for (String key : diff.added) {
+            classToDisplayName.put(key, key);
+            indexClassKey(key);
+        }
+        for (String key : toDecompile) {
+            originalCode.remove(key);
+            referenceManager.removeClass(key);
+        }
+        referenceManager.indexClasses(classBytes, toDecompile);
+        // Bytecode déjà remappé : les classes relues depuis le JAR le sont aussi
+        bytecodeRemapper.reapply(toDecompile);
+        // Renommages déjà appliqués au projet (nom interne d'origine -> actuel), packages compris ;
+        // inutile si le bytecode relu est déjà remappé
+        boolean remapped = bytecodeRemapper.isApplied();
+        Map<String, String> classMapping = bytecodeRemapper.classMapping();
+        Map<String, String> oldToNewSimpleName = new HashMap<>();
+        Map<String, String> oldToNewQualified = new HashMap<>();
+        for (Map.Entry<String, String> e : classMapping.entrySet()) {
+            String oldSimple = e.getKey().substring(Math.max(e.getKey().lastIndexOf('/'), e.getKey().lastIndexOf('$')) + 1);
+            String newSimple = e.getValue().substring(Math.max(e.getValue().lastIndexOf('/'), e.getValue().lastIndexOf('$')) + 1);
+            if (!oldSimple.equals(newSimple)) oldToNewSimpleName.put(oldSimple, newSimple);
+            oldToNewQualified.put(e.getKey().replace('/', '.').replace('$', '.'), e.getValue().replace('/', '.').replace('$', '.'));
+        }
+        ClassRenamer.Renames renames = ClassRenamer.compile(oldToNewSimpleName, oldToNewQualified);
+        Map<String, List<String>> keysByOriginalPackage = new HashMap<>();
+        for (String key : classBytes.keySet()) {
+            String entry = classBytes.originalEntryName(key);
+            if (entry != null && entry.indexOf('$') < 0) {
+                keysByOriginalPackage.computeIfAbsent(packageOf(entry), k -> new ArrayList<>()).add(key);
+            }
+        }
+        updateTreeIncrementally(new ArrayList<>(classBytes.keySet()));
+        if (toDecompile.isEmpty()) {
+            showJarUpdateSummary(jarFile, diff);
+            return;
+        }
+        javax.swing.JDialog progressDialog = new javax.swing.JDialog(this, "Mise à jour du projet", true);
+        javax.swing.JProgressBar progressBar = new javax.swing.JProgressBar(0, toDecompile.size());
+        progressBar.setStringPainted(true);
+        progressDialog.add(progressBar);
+        progressDialog.setSize(400, 80);
+        progressDialog.setLocationRelativeTo(this);
+        DecompilerManager.BulkDecompilation job = decompilerManager.decompileAll(toDecompile, new DecompilerManager.BulkDecompileListener() {
+            public void onClassDecompiled(String className, String code, int completed, int total) {
+                // Le nouveau code utilise les noms d'origine : on y réapplique les renommages
+                String finalCode = remapped ? code : reapplyClassRenames(className, code, renames, keysByOriginalPackage);
+                modifiedCode.put(className, finalCode);
+                javax.swing.SwingUtilities.invokeLater(() -> {
+                    progressBar.setValue(completed);
+                    RSyntaxTextArea area = openTabs.get(className);
+                    if (area != null) {
+                        tabManager.setTextWhenVisible(area, finalCode);
+                        tabManager.setTabWarning(className, diagnosticsTooltip(decompilerManager.getDiagnostics(className)));
+                    }
+                });
+            }
+            public void onFinished(boolean cancelled) {
+                javax.swing.SwingUtilities.invokeLater(() -> {
+                    progressDialog.dispose();
+                    showJarUpdateSummary(jarFile, diff);
+                });
+            }
+        });
+        addCancelOnClose(progressDialog, job);
+        progressDialog.setVisible(true);
+    }
+
+    /**
+     * Réapplique au code d'une classe relue depuis le JAR les renommages de classes du projet :
+     * noms simples, noms qualifiés et imports, puis package de la classe si sa clé a changé de
+     * package (avec les imports des classes qui partageaient son package d'origine).
+     */
+    private String reapplyClassRenames(String className, String code, ClassRenamer.Renames renames,
+                                       Map<String, List<String>> keysByOriginalPackage) {
+        String result = classRenamer.renameClassReferences(code, renames);
+        String entry = classBytes.originalEntryName(className);
+        if (entry == null) return result;
+        String oldPackage = packageOf(entry);
+        String newPackage = packageOf(className);
+        if (oldPackage.equals(newPackage) || newPackage.isEmpty()) return result;
+        result = updatePackageInCode(result, newPackage);
+        StringBuilder imports = new StringBuilder();
+        for (String key : keysByOriginalPackage.getOrDefault(oldPackage, Collections.emptyList())) {
+            if (key.equals(className) || packageOf(key).equals(newPackage)) continue;
+            String simple = getSimpleClassName(key);
+            String qualified = key.substring(0, key.length() - 6).replace('/', '.');
+            if (result.contains("import " + qualified + ";")
+                || !java.util.regex.Pattern.compile("\\b" + java.util.regex.Pattern.quote(simple) + "\\b").matcher(result).find()) continue;
+            imports.append("import ").append(qualified).append(";\n");
+        }
+        if (imports.length() == 0) return result;
+        int packageEnd = result.indexOf(';', result.indexOf("package ")) + 1;
+        return result.substring(0, packageEnd) + "\n" + imports + result.substring(packageEnd);
+    }
+
+    // Package d'une clé ou d'une entrée (a/b/C.class -> a/b)
+    private static String packageOf(String key) {
+        int slash = key.lastIndexOf('/');
+        return slash < 0 ? "" : key.substring(0, slash);
+    }
+
+    private void showJarUpdateSummary(File jarFile, ClassBytesMap.JarDiff diff) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Projet mis à jour avec ").append(jarFile.getName()).append("\n\n");
+        sb.append("Classes ajoutées : ").append(diff.added.size()).append("\n");
+        sb.append("Classes supprimées : ").append(diff.removed.size()).append("\n");
+        sb.append("Classes modifiées : ").append(diff.changed.size()).append("\n");
+        sb.append("Classes inchangées : ").append(diff.unchanged).append("\n");
+        if (!diff.skipped.isEmpty()) {
+            sb.append("Classes ignorées : ").append(diff.skipped.size())
+              .append(" (nom déjà pris par une classe renommée)\n");
+        }
+        Set<String> decompiled = new HashSet<>(diff.added);
+        decompiled.addAll(diff.changed);
+        List<String> withDiagnostics = new ArrayList<>();
+        for (String key : decompilerManager.getAllDiagnostics().keySet()) {
+            if (decompiled.contains(key)) withDiagnostics.add(key);
+        }
+        if (!withDiagnostics.isEmpty()) {
+            sb.append("Classes avec messages Procyon : ").append(withDiagnostics.size()).append("\n");
+        }
+        appendClassList(sb, "Ajoutées", diff.added);
+        appendClassList(sb, "Supprimées", diff.removed);
+        appendClassList(sb, "Modifiées", diff.changed);
+        appendClassList(sb, "Avec messages Procyon (détail en info-bulle de l'onglet)", withDiagnostics);
+        appendClassList(sb, "Ignorées (renommez la classe qui occupe ce nom puis relancez la mise à jour)", diff.skipped);
+        JTextArea text = new JTextArea(sb.toString(), 20, 60);
+        text.setEditable(false);
+        JOptionPane.showMessageDialog(this, new JScrollPane(text), "Mise à jour du JAR", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private void appendClassList(StringBuilder sb, String title, List<String> keys) {
+        if (keys.isEmpty()) return;
+        sb.append("\n").append(title).append(" :\n");
+        List<String> sorted = new ArrayList<>(keys);
+        Collections.sort(sorted);
+        for (String key : sorted) sb.append("  ").append(key).append("\n");
+    }
+
     // Méthode déléguée à ReferenceManager
     private void indexClassReferences(String className, byte[] bytes) {
         referenceManager.indexClassReferences(className, bytes);
@@ -959,17 +1243,12 @@ public class ProcyonAdvancedGUI extends JFrame {
 
     // Usages de 'classKey' (classes qui la référencent)
     private Set<String> getUsagesOf(String classKey) {
-        Set<String> usages = new HashSet<>();
-        for (Map.Entry<String, Set<String>> e : referencesTo.entrySet()) {
-            if (e.getValue().contains(classKey)) usages.add(e.getKey());
-        }
-        return usages;
+        return referenceManager.getUsagesOf(classKey);
     }
 
     // Références sortantes (classes référencées par 'classKey')
     private Set<String> getOutgoingRefs(String classKey) {
-        Set<String> out = referencesTo.get(classKey);
-        return (out != null) ? new HashSet<>(out) : new HashSet<>();
+        return referenceManager.getOutgoingRefs(classKey);
     }
 
     // Détection d'une suggestion trop faible/générique
@@ -1004,6 +1283,8 @@ public class ProcyonAdvancedGUI extends JFrame {
         classBytes.clear();
         classToDisplayName.clear();
             referenceManager.clear();
+            bytecodeRemapper.clear();
+            renameJournal.clear();
             simpleNameIndex.clear();
             decompilerManager.loadClass(file);
             // Indexer le nom simple de la classe chargée
@@ -1060,6 +1341,7 @@ public class ProcyonAdvancedGUI extends JFrame {
                 if (oldPos < code.length()) area.setCaretPosition(oldPos);
             lastDecompiledCode = code;
             lastClassName = className;
+                tabManager.setTabWarning(className, diagnosticsTooltip(decompilerManager.getDiagnostics(className)));
                 System.out.println("[decompileClassBytes] Code affiché pour : " + className);
             }
         } catch (Exception ex) {
@@ -1071,6 +1353,20 @@ public class ProcyonAdvancedGUI extends JFrame {
         }
     }
 
+    // Info-bulle des messages Procyon d'une classe (null s'il n'y en a pas)
+    private static String diagnosticsTooltip(List<ProcyonDiagnostics.Diagnostic> diagnostics) {
+        if (diagnostics.isEmpty()) return null;
+        StringBuilder sb = new StringBuilder("<html>Procyon : ").append(diagnostics.size()).append(" message(s)");
+        for (int i = 0; i < diagnostics.size() && i < 10; i++) {
+            ProcyonDiagnostics.Diagnostic d = diagnostics.get(i);
+            String message = d.getMessage().replace("&", "&amp;").replace("<", "&lt;");
+            if (message.length() > 200) message = message.substring(0, 200) + "…";
+            sb.append("<br>").append(d.getSeverity()).append(" : ").append(message);
+        }
+        if (diagnostics.size() > 10) sb.append("<br>…");
+        return sb.toString();
+    }
+
     private void saveEditedCode() {
         RSyntaxTextArea area = getCurrentCodeArea();
         if (area == null) return;
@@ -1460,46 +1756,9 @@ public class ProcyonAdvancedGUI extends JFrame {
                             renameMethod.addActionListener(ev -> {
                                 String newName = JOptionPane.showInputDialog(ProcyonAdvancedGUI.this, "Nouveau nom de méthode :", word);
                                 if (newName != null && !newName.trim().isEmpty() && !newName.equals(word)) {
-                                    // Renommage intelligent avec analyse contextuelle
-                                    for (String classKey : modifiedCode.keySet()) {
-                                        String code = modifiedCode.get(classKey);
-                                        if (code == null) continue;
-                                        
-                                        // Trouve tous les contextes de cette méthode
-                                        List<IdentifierContext> methodContexts = findAllIdentifiers(code, word);
-                                        String newCode = code;
-                                        
-                                        // Applique le renommage seulement aux contextes de méthodes
-                                        for (int i = methodContexts.size() - 1; i >= 0; i--) {
-                                            IdentifierContext context = methodContexts.get(i);
-                                            if (isMethodInContext(context)) {
-                                                newCode = renameIdentifierInContext(newCode, context, newName);
-                                            }
-                                        }
-                                        
-                                        modifiedCode.put(classKey, newCode);
-                                        if (openTabs.containsKey(classKey)) {
-                                            openTabs.get(classKey).setText(newCode);
-                                        }
-                                    }
-                                    
-                                    // Appliquer aussi sur les classes non encore modifiées
-                                    for (String classKey : classBytes.keySet()) {
-                                        if (!modifiedCode.containsKey(classKey)) {
-                                            String code = decompileClassToString(classKey, classBytes.get(classKey));
-                                            List<IdentifierContext> methodContexts2 = findAllIdentifiers(code, word);
-                                            String newCode = code;
-                                            
-                                            for (int i = methodContexts2.size() - 1; i >= 0; i--) {
-                                                IdentifierContext context = methodContexts2.get(i);
-                                                if (isMethodInContext(context)) {
-                                                    newCode = renameIdentifierInContext(newCode, context, newName);
-                                                }
-                                            }
-                                            
-                                            modifiedCode.put(classKey, newCode);
-                                        }
-                                    }
+                                    // Renommage intelligent avec analyse contextuelle, limité aux classes
+                                    // qui déclarent ou appellent la méthode d'après le bytecode
+                                    renameManager.renameMethodInContext(word, newName, modifiedCode, openTabs, decompilerManager, classBytes);
                                     JOptionPane.showMessageDialog(ProcyonAdvancedGUI.this, "Méthode renommée partout !");
                                 }
                             });
@@ -1514,9 +1773,11 @@ public class ProcyonAdvancedGUI extends JFrame {
                                     String currentClassName = null;
                                     String currentPackageName = null;
                                     VariableDeclarationContext targetDeclaration = null;
+                                    Set<String> scope = variableRenameScope(word);
                                     
                                     // Cherche dans la classe courante pour trouver la déclaration
                                     for (String classKey : modifiedCode.keySet()) {
+                                        if (scope != null && !scope.contains(classKey)) continue;
                                         String code = modifiedCode.get(classKey);
                                         if (code == null) continue;
                                         
@@ -1533,8 +1794,9 @@ public class ProcyonAdvancedGUI extends JFrame {
                                     
                                     // Si pas trouvé dans les classes modifiées, cherche dans toutes les classes
                                     if (targetDeclaration == null) {
-                                        for (String classKey : classBytes.keySet()) {
+                                        for (String classKey : scope != null ? scope : classBytes.keySet()) {
                                             if (modifiedCode.containsKey(classKey)) continue; // Déjà vérifié
+                                            if (!classBytes.containsKey(classKey)) continue;
                                             
                                             String code = decompileClassToString(classKey, classBytes.get(classKey));
                                             currentClassName = extractClassNameFromCode(code);
@@ -1550,60 +1812,76 @@ public class ProcyonAdvancedGUI extends JFrame {
                                     }
                                     
                                     // Trouve toutes les classes qui seront affectées
-                                    Set<String> affectedClasses = findClassesWithVariableUsage(word, targetDeclaration);
+                                    Set<String> affectedClasses = findClassesWithVariableUsage(word, targetDeclaration, scope);
                                     
                                     // Demande confirmation avant le renommage
                                     if (!confirmVariableRename(word, newName, targetDeclaration, affectedClasses)) {
                                         return; // Annule le renommage
                                     }
                                     
-                                    // Renommage intelligent avec vérification de déclaration
-                                    for (String classKey : modifiedCode.keySet()) {
-                                        String code = modifiedCode.get(classKey);
-                                        if (code == null) continue;
-                                        
-                                        String classClassName = extractClassNameFromCode(code);
-                                        String classPackageName = extractPackageNameFromCode(code);
-                                        
-                                        // Trouve tous les contextes de cette variable
-                                        List<IdentifierContext> varContexts = findAllIdentifiers(code, word);
-                                        String newCode = code;
+                                    // Champ : renommé aussi dans le bytecode (classe déclarante si la déclaration est connue)
+                                    String fieldOwner = null;
+                                    if (targetDeclaration != null && targetDeclaration.className != null) {
+                                        String pkg = targetDeclaration.packageName;
+                                        fieldOwner = (pkg == null || pkg.isEmpty() ? "" : pkg.replace('.', '/') + "/") + targetDeclaration.className;
+                                    }
+                                    renameJournal.begin("Renommage de la variable " + word + " en " + newName);
+                                    try {
+                                        renameManager.recordFieldRename(fieldOwner, word, newName);
                                         
-                                        // Applique le renommage seulement aux contextes de variables qui correspondent à la déclaration
-                                        for (int i = varContexts.size() - 1; i >= 0; i--) {
-                                            IdentifierContext context = varContexts.get(i);
-                                            if (isVariableInContext(context) && 
-                                                isVariableFromSameDeclaration(context, targetDeclaration, classClassName, classPackageName)) {
-                                                newCode = renameIdentifierInContext(newCode, context, newName);
-                                            }
-                                        }
+                                        // Renommage intelligent avec vérification de déclaration
+                                        for (String classKey : modifiedCode.keySet()) {
+                                            if (scope != null && !scope.contains(classKey)) continue;
+                                            String code = modifiedCode.get(classKey);
+                                            if (code == null) continue;
                                         
-                                        modifiedCode.put(classKey, newCode);
-                                        if (openTabs.containsKey(classKey)) {
-                                            openTabs.get(classKey).setText(newCode);
-                                        }
-                                    }
-                                    
-                                    // Appliquer aussi sur les classes non encore modifiées
-                                    for (String classKey : classBytes.keySet()) {
-                                        if (!modifiedCode.containsKey(classKey)) {
-                                            String code = decompileClassToString(classKey, classBytes.get(classKey));
                                             String classClassName = extractClassNameFromCode(code);
                                             String classPackageName = extractPackageNameFromCode(code);
-                                            
-                                            List<IdentifierContext> varContexts2 = findAllIdentifiers(code, word);
+                                        
+                                            // Trouve tous les contextes de cette variable
+                                            List<IdentifierContext> varContexts = findAllIdentifiers(code, word);
                                             String newCode = code;
-                                            
-                                            for (int i = varContexts2.size() - 1; i >= 0; i--) {
-                                                IdentifierContext context = varContexts2.get(i);
+                                        
+                                            // Applique le renommage seulement aux contextes de variables qui correspondent à la déclaration
+                                            for (int i = varContexts.size() - 1; i >= 0; i--) {
+                                                IdentifierContext context = varContexts.get(i);
                                                 if (isVariableInContext(context) && 
                                                     isVariableFromSameDeclaration(context, targetDeclaration, classClassName, classPackageName)) {
                                                     newCode = renameIdentifierInContext(newCode, context, newName);
                                                 }
                                             }
-                                            
+                                        
+                                            renameJournal.recordText(classKey, code, newCode);
                                             modifiedCode.put(classKey, newCode);
+                                            if (openTabs.containsKey(classKey)) {
+                                                openTabs.get(classKey).setText(newCode);
+                                            }
+                                        }
+                                    
+                                        // Appliquer aussi sur les classes non encore modifiées
+                                        for (String classKey : scope != null ? scope : classBytes.keySet()) {
+                                            if (!modifiedCode.containsKey(classKey) && classBytes.containsKey(classKey)) {
+                                                String code = decompileClassToString(classKey, classBytes.get(classKey));
+                                                String classClassName = extractClassNameFromCode(code);
+                                                String classPackageName = extractPackageNameFromCode(code);
+                                            
+                                                List<IdentifierContext> varContexts2 = findAllIdentifiers(code, word);
+                                                String newCode = code;
+                                            
+                                                for (int i = varContexts2.size() - 1; i >= 0; i--) {
+                                                    IdentifierContext context = varContexts2.get(i);
+                                                    if (isVariableInContext(context) && 
+                                                        isVariableFromSameDeclaration(context, targetDeclaration, classClassName, classPackageName)) {
+                                                        newCode = renameIdentifierInContext(newCode, context, newName);
+                                                    }
+                                                }
+                                            
+                                                renameJournal.recordText(classKey, code, newCode);
+                                                modifiedCode.put(classKey, newCode);
+                                            }
                                         }
+                                    } finally {
+                                        renameJournal.end();
                                     }
                                     
                                     if (targetDeclaration != null) {
@@ -1865,25 +2143,9 @@ public class ProcyonAdvancedGUI extends JFrame {
         });
     }
 
-    // Ajoute la coloration des occurrences du mot sélectionné dans un RSyntaxTextArea
+    // Ajoute la coloration des occurrences du texte sélectionné dans un RSyntaxTextArea
     private void addHighlightOccurrences(RSyntaxTextArea area) {
-        area.addCaretListener(e -> {
-            String selected = area.getSelectedText();
-            if (selected == null || selected.length() == 0) {
-                area.getHighlighter().removeAllHighlights();
-                return;
-            }
-            String text = area.getText();
-            javax.swing.text.Highlighter.HighlightPainter painter = new javax.swing.text.DefaultHighlighter.DefaultHighlightPainter(java.awt.Color.YELLOW);
-            int idx = 0;
-            area.getHighlighter().removeAllHighlights();
-            while ((idx = text.indexOf(selected, idx)) >= 0) {
-                try {
-                    area.getHighlighter().addHighlight(idx, idx + selected.length(), painter);
-                } catch (Exception ex) {}
-                idx += selected.length();
-            }
-        });
+        codeEditorManager.addSelectionHighlight(area);
     }
 
     // Ajoute une croix de fermeture sur chaque onglet
@@ -1927,12 +2189,38 @@ public class ProcyonAdvancedGUI extends JFrame {
 
     // Méthode déléguée à SearchManager
     private void performGlobalSearch() {
-        searchManager.performGlobalSearch(globalSearchField.getText(), openTabs);
-        resultToLine.putAll(searchManager.getResultToLine());
-        resultToClass.putAll(searchManager.getResultToClass());
+        String text = globalSearchField.getText();
+        SearchQuery query = null;
+        List<SearchQuery> bytecodeTerms = null;
+        if (!text.isEmpty()) {
+            try {
+                if (globalSearchBytecodeBox.isSelected()) {
+                    bytecodeTerms = BytecodeSearch.compileTerms(text, globalSearchRegexBox.isSelected(),
+                            globalSearchWholeWordBox.isSelected(), !globalSearchMatchCaseBox.isSelected());
+                } else {
+                    query = SearchQuery.compile(text, globalSearchRegexBox.isSelected(),
+                            globalSearchWholeWordBox.isSelected(), !globalSearchMatchCaseBox.isSelected());
+                }
+            } catch (java.util.regex.PatternSyntaxException ex) {
+                // Regex en cours de frappe : on signale l'erreur sans ouvrir de popup
+                searchManager.cancelGlobalSearch();
+                globalSearchField.putClientProperty("JComponent.outline", "error");
+                globalSearchField.setToolTipText("Regex invalide : " + ex.getDescription());
+                return;
+            }
+        }
+        globalSearchField.putClientProperty("JComponent.outline", null);
+        globalSearchField.setToolTipText(null);
+        if (bytecodeTerms != null) searchManager.performBytecodeSearch(bytecodeTerms);
+        else searchManager.performGlobalSearch(query, openTabs);
         updateGlobalSearchVisibility();
     }
 
+    private void onGlobalSearchTyped() {
+        searchManager.cancelGlobalSearch();
+        globalSearchTypingTimer.restart();
+    }
+
     // Vérifie les conflits de noms dans le code courant
     private boolean hasNameConflict(String code, String name, String type) {
         String sep = "(^|[\\s\\(\\)\\[\\]\\{\\}<>,;.=+\\-*/%!?:&|^~])";
@@ -1991,7 +2279,31 @@ public class ProcyonAdvancedGUI extends JFrame {
     }
 
     private void showOptionsDialog() {
-        JOptionPane.showMessageDialog(this, "Options à venir.", "Options", JOptionPane.INFORMATION_MESSAGE);
+        // Compteurs du cache + réglage du budget
+        String input = JOptionPane.showInputDialog(this,
+                "Cache de décompilation\n" + cacheManager.getStatsSummary() + "\n\nBudget du cache (Mo) :",
+                cacheManager.getMaxBytes() / (1024 * 1024));
+        if (input == null) return;
+        long mb;
+        try {
+            mb = Long.parseLong(input.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Budget invalide : " + input);
+            return;
+        }
+        if (mb <= 0) {
+            JOptionPane.showMessageDialog(this, "Budget invalide : il doit être d'au moins 1 Mo.");
+            return;
+        }
+        if (mb > CacheManager.MAX_BUDGET_MB) {
+            mb = CacheManager.MAX_BUDGET_MB;
+            JOptionPane.showMessageDialog(this, "Budget limité à " + mb + " Mo.");
+        }
+        try {
+            cacheManager.setMaxBytes(mb * 1024 * 1024);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Erreur du cache : " + ex.getMessage());
+        }
     }
 
     private void refreshTree() {
@@ -2020,6 +2332,7 @@ public class ProcyonAdvancedGUI extends JFrame {
         
         // Lancement du renommage dans un thread séparé
         new Thread(() -> {
+            renameJournal.begin("Renommage automatique");
             try {
         Map<String, String> renameMap = new HashMap<>();
         Map<String, String> oldToNewSimpleName = new HashMap<>();
@@ -2117,6 +2430,7 @@ public class ProcyonAdvancedGUI extends JFrame {
                     newCode = "package fr.paladium.palamod.network.packet;\n\n" + code;
                     System.out.println("DEBUG: Package ajouté pour " + className + " -> fr.paladium.palamod.network.packet");
                 }
+                renameJournal.recordText(classKey, code, newCode);
                 modifiedCode.put(classKey, newCode);
                 newKey = "fr/paladium/palamod/network/packet/" + className + ".class";
             } else if (extendsALuckyEvent(code)) {
@@ -2141,6 +2455,7 @@ public class ProcyonAdvancedGUI extends JFrame {
                     System.out.println("DEBUG: Package ajouté pour " + className + " -> fr.paladium.palamod.client.luckyevent");
                 }
                 
+                renameJournal.recordText(classKey, code, newCode);
                 modifiedCode.put(classKey, newCode);
                 
                 if (alreadyWellNamed) {
@@ -2191,10 +2506,12 @@ public class ProcyonAdvancedGUI extends JFrame {
                     
                     System.out.println("DEBUG: Application du renommage: " + oldKey + " -> " + newKey);
                     
-            classBytes.put(newKey, classBytes.remove(oldKey));
+            classBytes.rename(oldKey, newKey);
+            referenceManager.renameClass(oldKey, newKey);
             if (modifiedCode.containsKey(oldKey)) modifiedCode.put(newKey, modifiedCode.remove(oldKey));
             if (openTabs.containsKey(oldKey)) openTabs.put(newKey, openTabs.remove(oldKey));
             if (classToDisplayName.containsKey(oldKey)) classToDisplayName.put(newKey, classToDisplayName.remove(oldKey));
+            renameJournal.recordMove(Collections.singletonMap(oldKey, newKey));
             // Mettre à jour l'index des noms simples
             String oldSimple = getSimpleClassName(oldKey);
             String newSimple = getSimpleClassName(newKey);
@@ -2210,54 +2527,13 @@ public class ProcyonAdvancedGUI extends JFrame {
                 });
                 
         // 3. Met à jour les références dans le code de toutes les classes
+                ClassRenamer.Renames renames = ClassRenamer.compile(oldToNewSimpleName);
                 System.out.println("DEBUG: Mise à jour des références dans " + modifiedCode.size() + " classes");
-                int refUpdateCount = 0;
                 int totalRefUpdates = modifiedCode.size();
-                
-        for (String k : modifiedCode.keySet()) {
-                    refUpdateCount++;
-                    final int currentRefUpdate = refUpdateCount;
-                    
-                    // Mise à jour de la progression pour les références
-                    if (refUpdateCount % 10 == 0 || refUpdateCount == totalRefUpdates) { // Mise à jour tous les 10 ou à la fin
-                        javax.swing.SwingUtilities.invokeLater(() -> {
-                            statusLabel.setText("Mise à jour des références (" + currentRefUpdate + "/" + totalRefUpdates + ")...");
-                        });
-                    }
-                    
-            String code = modifiedCode.get(k);
-                    boolean codeChanged = false;
-                    
-            for (Map.Entry<String, String> entry : oldToNewSimpleName.entrySet()) {
-                String oldSimple = entry.getKey();
-                String newSimple = entry.getValue();
-                        if (!oldSimple.equals(newSimple)) {
-                            // Utiliser ClassRenamer pour renommer uniquement les références de classe
-                            String newCode = classRenamer.renameClassReferencesOnly(code, oldSimple, newSimple);
-                            if (!newCode.equals(code)) {
-                                code = newCode;
-                                codeChanged = true;
-                            }
-                        }
-                    }
-                    
-                    if (codeChanged) {
-            modifiedCode.put(k, code);
-                        if (openTabs.containsKey(k)) {
-                            openTabs.get(k).setText(code);
-                        }
-                    }
-                    
-                    // Petite pause pour éviter de bloquer l'interface
-                    if (refUpdateCount % 50 == 0) {
-                        try {
-                            Thread.sleep(1);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            break;
-                        }
-                    }
-                }
+                // Tous les renommages en une passe par classe, classes réécrites en parallèle
+                projectRewriter.rewrite(modifiedCode.keySet(), modifiedCode::get,
+                    (k, code) -> classRenamer.renameClassReferences(code, renames),
+                    done -> statusLabel.setText("Mise à jour des références (" + done + "/" + totalRefUpdates + ")..."));
                 
                 // Mise à jour du statut pour la phase finale
                 javax.swing.SwingUtilities.invokeLater(() -> {
@@ -2281,13 +2557,7 @@ public class ProcyonAdvancedGUI extends JFrame {
                     }
                 });
                 
-                // Attendre que l'arborescence soit mise à jour
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-                
+                // Pas d'attente : le résumé ci-dessous passe par l'EDT après la mise à jour de l'arborescence
                 System.out.println("DEBUG: Fin autoRenameAllClasses() - " + renameMap.size() + " classes renommées");
                 
                 // Fermeture de la popup et affichage du résumé
@@ -2318,6 +2588,8 @@ public class ProcyonAdvancedGUI extends JFrame {
                         "Erreur lors du renommage automatique :\n" + e.getMessage(),
                         "Erreur", JOptionPane.ERROR_MESSAGE);
                 });
+            } finally {
+                renameJournal.end();
             }
         }).start();
         
@@ -2876,11 +3148,27 @@ public class ProcyonAdvancedGUI extends JFrame {
         return result == JOptionPane.YES_OPTION;
     }
     
-    // Trouve toutes les classes qui contiennent des usages de la variable
-    private Set<String> findClassesWithVariableUsage(String variableName, VariableDeclarationContext declaration) {
+    // Classes à parcourir pour renommer une variable : celles qui déclarent ou utilisent un champ
+    // de ce nom d'après le bytecode, plus la classe affichée (variables locales).
+    // null si le nom est inconnu du bytecode : il faut alors tout parcourir.
+    private Set<String> variableRenameScope(String name) {
+        Set<String> scope = referenceManager.getClassesUsingMember(MemberIndex.Kind.FIELD, name);
+        if (scope.isEmpty()) return null;
+        RSyntaxTextArea area = getCurrentCodeArea();
+        for (Map.Entry<String, RSyntaxTextArea> e : openTabs.entrySet()) {
+            if (e.getValue() == area) scope.add(e.getKey());
+        }
+        System.out.println("DEBUG: Renommage de " + name + " limité à " + scope.size() + " classes");
+        return scope;
+    }
+
+    // Trouve toutes les classes qui contiennent des usages de la variable (scope null = tout le projet)
+    private Set<String> findClassesWithVariableUsage(String variableName, VariableDeclarationContext declaration,
+                                                     Set<String> scope) {
         Set<String> affectedClasses = new HashSet<>();
         
         for (String classKey : modifiedCode.keySet()) {
+            if (scope != null && !scope.contains(classKey)) continue;
             String code = modifiedCode.get(classKey);
             if (code == null) continue;
             
@@ -2898,8 +3186,8 @@ public class ProcyonAdvancedGUI extends JFrame {
         }
         
         // Vérifie aussi dans les classes non modifiées
-        for (String classKey : classBytes.keySet()) {
-            if (modifiedCode.containsKey(classKey)) continue;
+        for (String classKey : scope != null ? scope : classBytes.keySet()) {
+            if (modifiedCode.containsKey(classKey) || !classBytes.containsKey(classKey)) continue;
             
             String code = decompileClassToString(classKey, classBytes.get(classKey));
             String className = extractClassNameFromCode(code);
@@ -3388,6 +3676,7 @@ public class ProcyonAdvancedGUI extends JFrame {
         
         // Lancement de l'analyse IA dans un thread séparé
         new Thread(() -> {
+            renameJournal.begin("Analyse IA avancée");
             try {
                 Map<String, String> renameMap = new HashMap<>();
                 Map<String, String> oldToNewSimpleName = new HashMap<>();
@@ -3453,6 +3742,7 @@ public class ProcyonAdvancedGUI extends JFrame {
                             // Mise à jour du code si nécessaire
                             if (analysis.suggestedPackage != null) {
                                 String newCode = updatePackageInCode(code, analysis.suggestedPackage);
+                                renameJournal.recordText(classKey, code, newCode);
                                 modifiedCode.put(classKey, newCode);
                             }
                             
@@ -3501,10 +3791,12 @@ public class ProcyonAdvancedGUI extends JFrame {
                                               newClass.substring(newClass.lastIndexOf('/') + 1));
                         });
                         
-                        classBytes.put(newKey, classBytes.remove(oldKey));
+                        classBytes.rename(oldKey, newKey);
+                        referenceManager.renameClass(oldKey, newKey);
                         if (modifiedCode.containsKey(oldKey)) modifiedCode.put(newKey, modifiedCode.remove(oldKey));
                         if (openTabs.containsKey(oldKey)) openTabs.put(newKey, openTabs.remove(oldKey));
                         if (classToDisplayName.containsKey(oldKey)) classToDisplayName.put(newKey, classToDisplayName.remove(oldKey));
+                        renameJournal.recordMove(Collections.singletonMap(oldKey, newKey));
                         
                         // Petite pause
                         if (renameCount % 5 == 0) {
@@ -3591,6 +3883,8 @@ public class ProcyonAdvancedGUI extends JFrame {
                         "Erreur lors de l'analyse IA :\n" + e.getMessage(),
                         "Erreur", JOptionPane.ERROR_MESSAGE);
                 });
+            } finally {
+                renameJournal.end();
             }
         }).start();
         
@@ -3846,66 +4140,22 @@ public class ProcyonAdvancedGUI extends JFrame {
         // Créer une liste des classes à traiter pour avoir un compteur précis
         List<String> classesToUpdate = new ArrayList<>(modifiedCode.keySet());
         int totalClasses = classesToUpdate.size();
-        int processedClasses = 0;
         
         System.out.println("DEBUG: Mise à jour des références pour " + totalClasses + " classes");
+        ClassRenamer.Renames renames = ClassRenamer.compile(oldToNewSimpleName);
         
         // Calculer la progression de base (85% à 95%)
         int baseProgress = 85;
         int progressRange = 10; // 85% à 95%
         
-        for (String k : classesToUpdate) {
-            processedClasses++;
-            
-            // Calculer la progression actuelle (85% à 95%)
-            int currentProgressPercent = baseProgress + (int)((processedClasses * progressRange) / totalClasses);
-            
-            // Mise à jour de la progression tous les 10 classes ou à la fin
-            if (processedClasses % 10 == 0 || processedClasses == totalClasses) {
-                final int currentProgress = processedClasses;
-                final int total = totalClasses;
-                final int progressPercent = currentProgressPercent;
-                javax.swing.SwingUtilities.invokeLater(() -> {
-                    progressBar.setValue(progressPercent);
-                    statusLabel.setText("Phase 3/4: Mise à jour des références (" + currentProgress + "/" + total + ")...");
-                    System.out.println("DEBUG: Mise à jour des références: " + currentProgress + "/" + total + " (" + progressPercent + "%)");
-                });
-            }
-            
-            String code = modifiedCode.get(k);
-            boolean codeChanged = false;
-            
-            for (Map.Entry<String, String> entry : oldToNewSimpleName.entrySet()) {
-                String oldSimple = entry.getKey();
-                String newSimple = entry.getValue();
-                
-                if (!oldSimple.equals(newSimple)) {
-                    // Utiliser ClassRenamer pour renommer uniquement les références de classe
-                    String newCode = classRenamer.renameClassReferencesOnly(code, oldSimple, newSimple);
-                    if (!newCode.equals(code)) {
-                        code = newCode;
-                        codeChanged = true;
-                    }
-                }
-            }
-            
-            if (codeChanged) {
-                modifiedCode.put(k, code);
-                if (openTabs.containsKey(k)) {
-                    openTabs.get(k).setText(code);
-                }
-            }
-            
-            // Petite pause pour éviter de bloquer l'interface
-            if (processedClasses % 50 == 0) {
-                try {
-                    Thread.sleep(1);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        }
+        // Tous les renommages en une passe par classe (un seul découpage du code en jetons),
+        // classes réécrites en parallèle puis enregistrées en une fois
+        projectRewriter.rewrite(classesToUpdate, modifiedCode::get,
+            (k, code) -> classRenamer.renameClassReferences(code, renames),
+            done -> {
+                progressBar.setValue(baseProgress + (done * progressRange) / totalClasses);
+                statusLabel.setText("Phase 3/4: Mise à jour des références (" + done + "/" + totalClasses + ")...");
+            });
         
         // Mise à jour finale à 95%
         javax.swing.SwingUtilities.invokeLater(() -> {
@@ -3913,7 +4163,7 @@ public class ProcyonAdvancedGUI extends JFrame {
             statusLabel.setText("Phase 3/4: Mise à jour des références terminée");
         });
         
-        System.out.println("DEBUG: Mise à jour des références terminée pour " + processedClasses + " classes");
+        System.out.println("DEBUG: Mise à jour des références terminée pour " + totalClasses + " classes");
     }
     
     // Méthode avancée pour suggérer des noms de classes basés sur le contenu
@@ -4126,58 +4376,15 @@ public class ProcyonAdvancedGUI extends JFrame {
         // Créer une liste des classes à traiter pour avoir un compteur précis
         List<String> classesToUpdate = new ArrayList<>(modifiedCode.keySet());
         int totalClasses = classesToUpdate.size();
-        int processedClasses = 0;
         
         System.out.println("DEBUG: Mise à jour des références pour " + totalClasses + " classes");
+        ClassRenamer.Renames renames = ClassRenamer.compile(oldToNewSimpleName);
         
-        for (String k : classesToUpdate) {
-            processedClasses++;
-            
-            // Mise à jour de la progression tous les 10 classes ou à la fin
-            if (processedClasses % 10 == 0 || processedClasses == totalClasses) {
-                final int currentProgress = processedClasses;
-                final int total = totalClasses;
-                javax.swing.SwingUtilities.invokeLater(() -> {
-                    System.out.println("DEBUG: Mise à jour des références: " + currentProgress + "/" + total);
-                });
-            }
-            
-            String code = modifiedCode.get(k);
-            boolean codeChanged = false;
-            
-            for (Map.Entry<String, String> entry : oldToNewSimpleName.entrySet()) {
-                String oldSimple = entry.getKey();
-                String newSimple = entry.getValue();
-                
-                if (!oldSimple.equals(newSimple)) {
-                    // Utiliser ClassRenamer pour renommer uniquement les références de classe
-                    String newCode = classRenamer.renameClassReferencesOnly(code, oldSimple, newSimple);
-                    if (!newCode.equals(code)) {
-                        code = newCode;
-                        codeChanged = true;
-                    }
-                }
-            }
-            
-            if (codeChanged) {
-                modifiedCode.put(k, code);
-                if (openTabs.containsKey(k)) {
-                    openTabs.get(k).setText(code);
-                }
-            }
-            
-            // Petite pause pour éviter de bloquer l'interface
-            if (processedClasses % 50 == 0) {
-                try {
-                    Thread.sleep(1);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        }
+        // Tous les renommages en une passe par classe, classes réécrites en parallèle
+        projectRewriter.rewrite(classesToUpdate, modifiedCode::get,
+            (k, code) -> classRenamer.renameClassReferences(code, renames), null);
         
-        System.out.println("DEBUG: Mise à jour des références terminée pour " + processedClasses + " classes");
+        System.out.println("DEBUG: Mise à jour des références terminée pour " + totalClasses + " classes");
     }
 
     // Ajoute cette méthode utilitaire dans la classe :
@@ -4245,10 +4452,7 @@ public class ProcyonAdvancedGUI extends JFrame {
                             String simpleClassName = getSimpleClassName(classKey);
 
                             // Contexte d’usages (limité)
-                            Set<String> usages = new HashSet<>();
-                            for (Map.Entry<String, Set<String>> e : referencesTo.entrySet()) {
-                                if (e.getValue().contains(classKey)) usages.add(e.getKey());
-                            }
+                            Set<String> usages = referenceManager.getUsagesOf(classKey);
                             StringBuilder usagesCode = new StringBuilder();
                             for (String usage : usages) {
                                 usagesCode.append("// use: ").append(usage).append("\n");
@@ -4360,10 +4564,7 @@ public class ProcyonAdvancedGUI extends JFrame {
                             String simpleClassName = getSimpleClassName(classKey);
 
                             // Contexte d’usages (limité)
-                            Set<String> usages = new HashSet<>();
-                            for (Map.Entry<String, Set<String>> e : referencesTo.entrySet()) {
-                                if (e.getValue().contains(classKey)) usages.add(e.getKey());
-                            }
+                            Set<String> usages = referenceManager.getUsagesOf(classKey);
                             StringBuilder usagesCode = new StringBuilder();
                             for (String usage : usages) {
                                 usagesCode.append("// use: ").append(usage).append("\n");
@@ -4474,26 +4675,58 @@ public class ProcyonAdvancedGUI extends JFrame {
 
     // Applique les renommages (maps) puis met à jour références et arbre
     private void applyRenameMap(Map<String, String> renameMap, Map<String, String> oldToNewSimpleName) {
-        // Appliquer les renommages de clés et structures
+        renameJournal.begin("Renommages IA (" + renameMap.size() + " classes)");
+        try {
+            moveClassKeys(renameMap);
+
+            // Mise à jour des références dans le code décompilé
+            if (oldToNewSimpleName != null && !oldToNewSimpleName.isEmpty()) {
+                updateReferencesAfterAIRename(oldToNewSimpleName);
+            }
+        } finally {
+            renameJournal.end();
+        }
+
+        JOptionPane.showMessageDialog(this, "Renommages appliqués et arborescence mise à jour.");
+    }
+
+    // Renomme des clés de classes dans les structures du projet (sans toucher au code)
+    private void moveClassKeys(Map<String, String> renameMap) {
+        renameJournal.recordMove(renameMap);
         for (Map.Entry<String, String> e : renameMap.entrySet()) {
             String oldKey = e.getKey();
             String newKey = e.getValue();
-            classBytes.put(newKey, classBytes.remove(oldKey));
+            classBytes.rename(oldKey, newKey);
+            referenceManager.renameClass(oldKey, newKey);
             if (modifiedCode.containsKey(oldKey)) modifiedCode.put(newKey, modifiedCode.remove(oldKey));
-            if (openTabs.containsKey(oldKey)) openTabs.put(newKey, openTabs.remove(oldKey));
+            if (openTabs.containsKey(oldKey)) {
+                tabManager.updateTabTitle(oldKey, newKey);
+                openTabs.put(newKey, openTabs.remove(oldKey));
+            }
             if (classToDisplayName.containsKey(oldKey)) classToDisplayName.put(newKey, classToDisplayName.remove(oldKey));
         }
-        // Re-indexation noms simples
+        // Re-indexation noms simples puis arborescence
         reindexAllSimpleNames();
+        updateTreeIncrementally(new ArrayList<>(classBytes.keySet()));
+    }
 
-        // Mise à jour des références dans le code décompilé
-        if (oldToNewSimpleName != null && !oldToNewSimpleName.isEmpty()) {
-            updateReferencesAfterAIRename(oldToNewSimpleName);
+    // Annule (ou rétablit) le dernier renommage global : seules les différences journalisées sont rejouées
+    private void undoRename(boolean undo) {
+        String label = undo ? renameJournal.undo() : renameJournal.redo();
+        if (label == null && (undo ? renameJournal.canUndo() : renameJournal.canRedo())) {
+            JOptionPane.showMessageDialog(this,
+                "Impossible : des lignes touchées par ce renommage ont été modifiées depuis.\n"
+                + "Les lignes ajoutées ou retirées ailleurs ne gênent pas ; la classe en cause est indiquée dans la console.",
+                "Journal des renommages", JOptionPane.WARNING_MESSAGE);
         }
+    }
 
-        // Rafraîchir l’arborescence
-        updateTreeIncrementally(new ArrayList<>(classBytes.keySet()));
-
-        JOptionPane.showMessageDialog(this, "Renommages appliqués et arborescence mise à jour.");
+    private void updateRenameJournalButtons() {
+        String undoLabel = renameJournal.undoLabel();
+        String redoLabel = renameJournal.redoLabel();
+        undoRenameButton.setEnabled(undoLabel != null);
+        redoRenameButton.setEnabled(redoLabel != null);
+        undoRenameButton.setToolTipText(undoLabel != null ? "Annuler : " + undoLabel : null);
+        redoRenameButton.setToolTipText(redoLabel != null ? "Rétablir : " + redoLabel : null);
     }
 } 
\ No newline at end of file
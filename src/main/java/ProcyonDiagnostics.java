@@ -0,0 +1,175 @@
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Capture les messages de Procyon tâche par tâche.
+ * System.err est remplacé une seule fois par un flux qui aiguille les écritures :
+ * un thread en cours de décompilation écrit dans sa propre capture, les autres
+ * threads écrivent dans le System.err d'origine. Les journaux java.util.logging
+ * de Procyon (com.strobel) sont capturés de la même façon.
+ * Plusieurs décompilations peuvent donc tourner en parallèle sans se gêner.
+ */
+public final class ProcyonDiagnostics {
+
+    public enum Severity {
+        INFO,
+        WARNING,
+        ERROR
+    }
+
+    /**
+     * Un message émis par Procyon pendant la décompilation d'une classe.
+     */
+    public static class Diagnostic {
+        private final String className;
+        private final Severity severity;
+        private final String message;
+
+        public Diagnostic(String className, Severity severity, String message) {
+            this.className = className;
+            this.severity = severity;
+            this.message = message;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public Severity getSeverity() {
+            return severity;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return severity + " [" + className + "] " + message;
+        }
+    }
+
+    /**
+     * Capture en cours sur un thread. À fermer dans un finally.
+     */
+    public static class Capture implements AutoCloseable {
+        private final String className;
+        private final Capture previous;
+        private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        private final List<Diagnostic> diagnostics = new ArrayList<>();
+        private boolean closed = false;
+
+        private Capture(String className, Capture previous) {
+            this.className = className;
+            this.previous = previous;
+        }
+
+        /**
+         * Ajoute un diagnostic à la main (exception levée par Procyon par exemple).
+         */
+        public void add(Severity severity, String message) {
+            diagnostics.add(new Diagnostic(className, severity, message));
+        }
+
+        /**
+         * Diagnostics collectés : journaux puis lignes écrites sur System.err.
+         */
+        public List<Diagnostic> getDiagnostics() {
+            close();
+            return Collections.unmodifiableList(diagnostics);
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (CURRENT.get() == this) {
+                if (previous != null) CURRENT.set(previous);
+                else CURRENT.remove();
+            }
+            for (String line : err.toString(StandardCharsets.UTF_8).split("\\R")) {
+                if (!line.isBlank()) diagnostics.add(new Diagnostic(className, Severity.WARNING, line.strip()));
+            }
+            err.reset();
+        }
+    }
+
+    private static final ThreadLocal<Capture> CURRENT = new ThreadLocal<>();
+    // Référence forte : un Logger sans référence peut être collecté avec son handler
+    private static final Logger PROCYON_LOGGER = Logger.getLogger("com.strobel");
+    private static volatile boolean installed = false;
+
+    private ProcyonDiagnostics() {}
+
+    /**
+     * Démarre la capture des messages de Procyon pour le thread courant.
+     */
+    public static Capture begin(String className) {
+        install();
+        Capture capture = new Capture(className, CURRENT.get());
+        CURRENT.set(capture);
+        return capture;
+    }
+
+    private static synchronized void install() {
+        if (installed) return;
+        PrintStream original = System.err;
+        OutputStream router = new OutputStream() {
+            @Override
+            public void write(int b) {
+                Capture c = CURRENT.get();
+                if (c != null) c.err.write(b);
+                else original.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                Capture c = CURRENT.get();
+                if (c != null) c.err.write(b, off, len);
+                else original.write(b, off, len);
+            }
+
+            @Override
+            public void flush() {
+                if (CURRENT.get() == null) original.flush();
+            }
+        };
+        System.setErr(new PrintStream(router, true, StandardCharsets.UTF_8));
+        // Les journaux capturés ne doivent pas repartir vers la console partagée
+        PROCYON_LOGGER.setUseParentHandlers(false);
+        PROCYON_LOGGER.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                Capture c = CURRENT.get();
+                if (c == null) {
+                    // Hors capture : comportement habituel (console)
+                    for (Handler h : Logger.getLogger("").getHandlers()) h.publish(record);
+                    return;
+                }
+                Level level = record.getLevel();
+                Severity severity = level.intValue() >= Level.SEVERE.intValue() ? Severity.ERROR
+                                  : level.intValue() >= Level.WARNING.intValue() ? Severity.WARNING
+                                  : Severity.INFO;
+                String message = String.valueOf(record.getMessage());
+                if (record.getThrown() != null) message += " : " + record.getThrown();
+                c.add(severity, message);
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        });
+        installed = true;
+    }
+}
@@ -14,17 +14,22 @@ public class ProjectManager {
     private final Map<String, String> classToDisplayName;
     private final Map<String, RSyntaxTextArea> openTabs;
     private final DecompilerManager decompilerManager;
+    private final ReferenceManager referenceManager;
+    private final CacheManager cacheManager;
     private final Runnable onProjectLoaded;
     
     public ProjectManager(JFrame parent, Map<String, byte[]> classBytes, Map<String, String> modifiedCode,
                         Map<String, String> classToDisplayName, Map<String, RSyntaxTextArea> openTabs,
-                        DecompilerManager decompilerManager, Runnable onProjectLoaded) {
+                        DecompilerManager decompilerManager, ReferenceManager referenceManager,
+                        CacheManager cacheManager, Runnable onProjectLoaded) {
         this.parent = parent;
         this.classBytes = classBytes;
         this.modifiedCode = modifiedCode;
         this.classToDisplayName = classToDisplayName;
         this.openTabs = openTabs;
         this.decompilerManager = decompilerManager;
+        this.referenceManager = referenceManager;
+        this.cacheManager = cacheManager;
         this.onProjectLoaded = onProjectLoaded;
     }
     
@@ -52,7 +57,7 @@ public class ProjectManager {
                     for (String className : classBytes.keySet()) {
                         String code;
                         if (openTabs.containsKey(className)) {
-                            code = openTabs.get(className).getText();
+                            code = TabManager.textOf(openTabs.get(className));
                         } else if (modifiedCode.containsKey(className)) {
                             code = modifiedCode.get(className);
                         } else {
@@ -74,9 +79,20 @@ public class ProjectManager {
                     for (String k : modifiedCode.keySet()) {
                         props.setProperty("modifiedCode." + k, "1");
                     }
+                    String jarHash = decompilerManager.getJarHash();
+                    if (jarHash != null) props.setProperty("jarHash", jarHash);
                     zos.putNextEntry(new ZipEntry("project_mappings.properties"));
                     props.store(zos, "Mappings du projet");
                     zos.closeEntry();
+                    // Index des références rangé dans le cache (clés renommées du projet), pour ne pas
+                    // relire le bytecode au chargement
+                    if (jarHash != null) {
+                        try {
+                            cacheManager.putRaw(snapshotKeyFor(zipFile, jarHash), referenceManager.snapshotBytes(jarHash));
+                        } catch (IOException e) {
+                            System.out.println("DEBUG: Erreur écriture instantané des références : " + e.getMessage());
+                        }
+                    }
                     SwingUtilities.invokeLater(() -> {
                         progressDialog.dispose();
                         JOptionPane.showMessageDialog(parent, "Projet sauvegardé dans : " + zipFile.getAbsolutePath());
@@ -92,6 +108,14 @@ public class ProjectManager {
         }
     }
     
+    /**
+     * Clé de cache de l'instantané des références d'un projet : propre au fichier du projet,
+     * dont les clés de classes peuvent différer de celles du JAR (instantané "refs-" + empreinte).
+     */
+    private static String snapshotKeyFor(File zipFile, String jarHash) {
+        return "refs-" + jarHash + "-" + Integer.toHexString(zipFile.getAbsolutePath().hashCode());
+    }
+    
     /**
      * Charge l'état du projet depuis un ZIP.
      */
@@ -135,6 +159,15 @@ public class ProjectManager {
                 for (String classKey : loadedCode.keySet()) {
                     classBytes.put(classKey, new byte[0]); // Bytecode vide, mais permet d'afficher la classe dans l'arbo
                 }
+                // Sans bytecode, l'index des références ne peut venir que de l'instantané sauvegardé
+                referenceManager.clear();
+                String jarHash = props.getProperty("jarHash");
+                decompilerManager.setJarHash(jarHash);
+                // Instantané du projet, sinon celui du JAR s'il n'a rien renommé ; absent si le cache a été vidé
+                if (jarHash != null
+                    && referenceManager.loadSnapshot(cacheManager.getMapped(snapshotKeyFor(zipFile, jarHash)), jarHash, loadedCode.keySet()) == null) {
+                    referenceManager.loadSnapshot(cacheManager.getMapped("refs-" + jarHash), jarHash, loadedCode.keySet());
+                }
                 if (updateTreeCallback != null) {
                     updateTreeCallback.run();
                 }
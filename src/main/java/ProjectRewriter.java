@@ -0,0 +1,168 @@
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import javax.swing.SwingUtilities;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Réécriture de tout le projet après un renommage : le code de chaque classe est transformé
+ * en parallèle (la transformation ne dépend que du code de la classe), puis les résultats
+ * sont enregistrés en une fois dans modifiedCode et poussés vers les onglets ouverts.
+ * Les onglets cachés ne reçoivent leur texte qu'à l'affichage (TabManager.setTextWhenVisible).
+ * Chaque lot enregistré passe par le journal des renommages (annulable s'il y a un lot ouvert).
+ */
+public class ProjectRewriter {
+    private static final int CHUNKS_PER_CORE = 8;
+    // Intervalle minimal entre deux mises à jour de la progression
+    private static final long PROGRESS_INTERVAL_NANOS = 50_000_000L;
+
+    /**
+     * Transformation du code d'une classe ; doit pouvoir tourner sur plusieurs threads à la fois.
+     */
+    public interface Rewrite {
+        String apply(String classKey, String code);
+    }
+
+    private static volatile ExecutorService pool;
+
+    private final Map<String, String> modifiedCode;
+    private final Map<String, RSyntaxTextArea> openTabs;
+    private final TabManager tabManager;
+    private final RenameJournal journal;
+
+    public ProjectRewriter(Map<String, String> modifiedCode, Map<String, RSyntaxTextArea> openTabs, TabManager tabManager,
+                           RenameJournal journal) {
+        this.modifiedCode = modifiedCode;
+        this.openTabs = openTabs;
+        this.tabManager = tabManager;
+        this.journal = journal;
+    }
+
+    /**
+     * Réécrit les classes données et enregistre celles qui ont changé. Bloquant : à appeler
+     * hors de l'EDT. source fournit le code de départ d'une classe (null = classe ignorée) ;
+     * progress (appelé sur l'EDT) reçoit le nombre de classes traitées.
+     * Retourne le nouveau code des classes modifiées.
+     */
+    public Map<String, String> rewrite(Collection<String> keys, Function<String, String> source,
+                                       Rewrite rewrite, IntConsumer progress) {
+        List<String> list = new ArrayList<>(keys);
+        Map<String, String> changed = new ConcurrentHashMap<>();
+        // Code de départ des classes modifiées, pour le journal
+        Map<String, String> before = new ConcurrentHashMap<>();
+        if (list.isEmpty()) return changed;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int chunkSize = Math.max(1, (list.size() + cores * CHUNKS_PER_CORE - 1) / (cores * CHUNKS_PER_CORE));
+        Progress done = new Progress(progress);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < list.size(); start += chunkSize) {
+            List<String> chunk = list.subList(start, Math.min(list.size(), start + chunkSize));
+            tasks.add(() -> {
+                for (String classKey : chunk) {
+                    try {
+                        String code = source.apply(classKey);
+                        if (code != null) {
+                            String newCode = rewrite.apply(classKey, code);
+                            // Comparé au code de départ : source peut ne pas lire modifiedCode (onglet, décompilation à la volée)
+                            if (newCode != null && !newCode.equals(code)) {
+                                changed.put(classKey, newCode);
+                                before.put(classKey, code);
+                            }
+                        }
+                    } catch (Exception e) {
+                        System.out.println("DEBUG: Réécriture impossible pour " + classKey + " : " + e.getMessage());
+                    }
+                    done.increment();
+                }
+                return null;
+            });
+        }
+        long t0 = System.nanoTime();
+        try {
+            for (Future<Void> f : pool().invokeAll(tasks)) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return changed;
+        } catch (ExecutionException e) {
+            System.out.println("DEBUG: Erreur pendant la réécriture : " + e.getCause());
+        }
+        done.flush();
+        commit(changed, before);
+        System.out.println("DEBUG: Réécriture de " + list.size() + " classes (" + changed.size() + " modifiées) en "
+                           + (System.nanoTime() - t0) / 1_000_000 + " ms");
+        return changed;
+    }
+
+    /**
+     * Enregistre un lot de codes en une fois et met à jour les onglets concernés sur l'EDT.
+     */
+    public void commit(Map<String, String> changed) {
+        Map<String, String> before = new HashMap<>();
+        for (String classKey : changed.keySet()) {
+            String code = modifiedCode.get(classKey);
+            if (code != null) before.put(classKey, code);
+        }
+        commit(changed, before);
+    }
+
+    private void commit(Map<String, String> changed, Map<String, String> before) {
+        if (changed.isEmpty()) return;
+        for (Map.Entry<String, String> e : changed.entrySet()) {
+            journal.recordText(e.getKey(), before.get(e.getKey()), e.getValue());
+        }
+        modifiedCode.putAll(changed);
+        Map<String, String> snapshot = new HashMap<>(changed);
+        SwingUtilities.invokeLater(() -> {
+            for (Map.Entry<String, String> e : snapshot.entrySet()) {
+                RSyntaxTextArea area = openTabs.get(e.getKey());
+                if (area != null) tabManager.setTextWhenVisible(area, e.getValue());
+            }
+        });
+    }
+
+    private static ExecutorService pool() {
+        if (pool == null) {
+            synchronized (ProjectRewriter.class) {
+                if (pool == null) {
+                    int threads = Runtime.getRuntime().availableProcessors();
+                    pool = Executors.newFixedThreadPool(threads, r -> {
+                        Thread t = new Thread(r, "project-rewrite");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                }
+            }
+        }
+        return pool;
+    }
+
+    // Compteur partagé par les workers ; la progression part vers l'EDT au plus toutes les 50 ms
+    private static class Progress {
+        private final IntConsumer progress;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong lastPublish = new AtomicLong();
+
+        Progress(IntConsumer progress) {
+            this.progress = progress;
+        }
+
+        void increment() {
+            int n = count.incrementAndGet();
+            if (progress == null) return;
+            long now = System.nanoTime();
+            long last = lastPublish.get();
+            if (now - last >= PROGRESS_INTERVAL_NANOS && lastPublish.compareAndSet(last, now)) {
+                SwingUtilities.invokeLater(() -> progress.accept(n));
+            }
+        }
+
+        void flush() {
+            if (progress == null) return;
+            int n = count.get();
+            SwingUtilities.invokeLater(() -> progress.accept(n));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+import java.util.*;
+
+/**
+ * Graphe des références entre classes, dans les deux sens.
+ * Chaque classe est internée en un identifiant entier d'après son nom dans le bytecode
+ * (stable même si la classe est renommée dans le projet) ; les arêtes sont stockées dans
+ * des tableaux d'int, ce qui reste compact pour des dizaines de milliers de classes.
+ * Les recherches d'appelants et d'appelés sont en temps constant (plus le parcours du résultat).
+ */
+public class ReferenceGraph {
+    private static final int[] NO_EDGES = new int[0];
+
+    // Nom interne (a/b/C) -> identifiant
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    // Clé courante du projet (a/b/C.class ou nom renommé) -> identifiant
+    private final Map<String, Integer> idsByKey = new HashMap<>();
+    private String[] names = new String[1024];
+    // null = classe hors projet (JDK, bibliothèque...)
+    private String[] keys = new String[1024];
+    // Arêtes sortantes : tableau exact, remplacé à chaque réindexation de la classe
+    private int[][] outgoing = new int[1024][];
+    // Arêtes entrantes : tableau avec capacité, rempli sur inCount cases
+    private int[][] incoming = new int[1024][];
+    private int[] inCount = new int[1024];
+    private int count = 0;
+
+    private int intern(String name) {
+        Integer id = idsByName.get(name);
+        if (id != null) return id;
+        if (count == names.length) grow();
+        int newId = count++;
+        names[newId] = name;
+        outgoing[newId] = NO_EDGES;
+        incoming[newId] = NO_EDGES;
+        idsByName.put(name, newId);
+        return newId;
+    }
+
+    private void grow() {
+        int n = names.length * 2;
+        names = Arrays.copyOf(names, n);
+        keys = Arrays.copyOf(keys, n);
+        outgoing = Arrays.copyOf(outgoing, n);
+        incoming = Arrays.copyOf(incoming, n);
+        inCount = Arrays.copyOf(inCount, n);
+    }
+
+    /**
+     * Enregistre (ou remplace) les références sortantes d'une classe du projet.
+     */
+    public synchronized void setReferences(String classKey, String internalName, Collection<String> referencedNames) {
+        int id = intern(internalName);
+        Integer previous = idsByKey.get(classKey);
+        if (previous != null && previous != id) unbind(previous);
+        if (keys[id] != null && !keys[id].equals(classKey)) idsByKey.remove(keys[id]);
+        keys[id] = classKey;
+        idsByKey.put(classKey, id);
+        removeOutgoing(id);
+        int[] out = new int[referencedNames.size()];
+        int n = 0;
+        for (String ref : referencedNames) {
+            int target = intern(ref);
+            if (target != id) out[n++] = target;
+        }
+        out = Arrays.stream(out, 0, n).sorted().distinct().toArray();
+        outgoing[id] = out;
+        for (int target : out) addIncoming(target, id);
+    }
+
+    /**
+     * Retire une classe du projet : ses références sortantes disparaissent, mais les autres
+     * classes peuvent toujours la référencer dans leur bytecode.
+     */
+    public synchronized void removeClass(String classKey) {
+        Integer id = idsByKey.get(classKey);
+        if (id != null) unbind(id);
+    }
+
+    private void unbind(int id) {
+        removeOutgoing(id);
+        if (keys[id] != null) idsByKey.remove(keys[id]);
+        keys[id] = null;
+    }
+
+    /**
+     * Suit un renommage de clé : l'identifiant et les arêtes ne changent pas.
+     */
+    public synchronized void renameClass(String oldKey, String newKey) {
+        Integer id = idsByKey.remove(oldKey);
+        if (id == null) return;
+        keys[id] = newKey;
+        idsByKey.put(newKey, id);
+    }
+
+    /**
+     * Classes du projet qui référencent cette classe.
+     */
+    public synchronized Set<String> getUsagesOf(String classKey) {
+        Integer id = idsByKey.get(classKey);
+        if (id == null) return new LinkedHashSet<>();
+        return toKeys(incoming[id], inCount[id]);
+    }
+
+    /**
+     * Classes du projet référencées par cette classe.
+     */
+    public synchronized Set<String> getReferencedBy(String classKey) {
+        Integer id = idsByKey.get(classKey);
+        if (id == null) return new LinkedHashSet<>();
+        return toKeys(outgoing[id], outgoing[id].length);
+    }
+
+    /**
+     * Classes internes (a/b/C$D, a/b/C$D$E...) d'une classe du projet, par clé courante.
+     */
+    public synchronized Set<String> getNestedKeys(String classKey) {
+        Set<String> nested = new LinkedHashSet<>();
+        Integer id = idsByKey.get(classKey);
+        if (id == null) return nested;
+        String prefix = names[id] + "$";
+        for (int i = 0; i < count; i++) {
+            if (keys[i] != null && names[i].startsWith(prefix)) nested.add(keys[i]);
+        }
+        return nested;
+    }
+
+    /**
+     * Nom interne (a/b/C) d'une classe du projet, ou null.
+     */
+    public synchronized String getInternalName(String classKey) {
+        Integer id = idsByKey.get(classKey);
+        return id != null ? names[id] : null;
+    }
+
+    /**
+     * Clé courante d'une classe du projet d'après son nom interne, ou null (classe externe).
+     */
+    public synchronized String getKey(String internalName) {
+        Integer id = idsByName.get(internalName);
+        return id != null ? keys[id] : null;
+    }
+
+    public synchronized boolean contains(String classKey) {
+        return idsByKey.containsKey(classKey);
+    }
+
+    /**
+     * Nombre de classes du projet indexées.
+     */
+    public synchronized int size() {
+        return idsByKey.size();
+    }
+
+    public synchronized void clear() {
+        idsByName.clear();
+        idsByKey.clear();
+        Arrays.fill(names, 0, count, null);
+        Arrays.fill(keys, 0, count, null);
+        Arrays.fill(outgoing, 0, count, null);
+        Arrays.fill(incoming, 0, count, null);
+        Arrays.fill(inCount, 0, count, 0);
+        count = 0;
+    }
+
+    private Set<String> toKeys(int[] ids, int n) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i < n; i++) {
+            String key = keys[ids[i]];
+            if (key != null) result.add(key);
+        }
+        return result;
+    }
+
+    private void removeOutgoing(int id) {
+        for (int target : outgoing[id]) removeIncoming(target, id);
+        outgoing[id] = NO_EDGES;
+    }
+
+    private void addIncoming(int target, int source) {
+        int[] in = incoming[target];
+        int n = inCount[target];
+        if (n == in.length) {
+            in = Arrays.copyOf(in, Math.max(4, n * 2));
+            incoming[target] = in;
+        }
+        in[n] = source;
+        inCount[target] = n + 1;
+    }
+
+    private void removeIncoming(int target, int source) {
+        int[] in = incoming[target];
+        int n = inCount[target];
+        for (int i = 0; i < n; i++) {
+            if (in[i] == source) {
+                // L'ordre des appelants n'a pas d'importance : on bouche le trou avec le dernier
+                in[i] = in[n - 1];
+                inCount[target] = n - 1;
+                return;
+            }
+        }
+    }
+}
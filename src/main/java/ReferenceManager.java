@@ -1,156 +1,556 @@
+import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.tree.*;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Gère l'indexation et la recherche des références entre classes.
+ * Chaque classe est lue en une seule passe ASM (sans frames ni infos de debug) qui
+ * alimente les deux index à la fois ; l'analyse des classes peut se faire en parallèle.
  */
 public class ReferenceManager {
     private final Map<String, Set<String>> referencesTo = new HashMap<>();
     private final Map<String, Set<String>> referenceIndex = new HashMap<>();
-    
+    // Graphe appelants/appelés entre classes du projet
+    private final ReferenceGraph graph = new ReferenceGraph();
+    // Références aux méthodes et champs (propriétaire + nom + descripteur)
+    private final MemberIndex memberIndex = new MemberIndex();
+    // Références brutes de chaque classe (par nom interne), conservées pour l'instantané
+    private final Map<String, ClassRefs> classRefs = new HashMap<>();
+
     /**
-     * Indexe les références d'une classe.
+     * Références d'une classe, collectées sans toucher aux index.
      */
-    public void indexClassReferences(String className, byte[] bytes) {
-        try {
-            ClassReader cr = new ClassReader(bytes);
-            org.objectweb.asm.tree.ClassNode cn = new org.objectweb.asm.tree.ClassNode();
-            cr.accept(cn, 0);
-            Set<String> referenced = new HashSet<>();
-            
-            // Superclass
-            if (cn.superName != null) referenced.add(cn.superName.replace('/', '.') + ".class");
-            
-            // Interfaces
-            if (cn.interfaces != null) {
-                for (Object iface : cn.interfaces) {
-                    referenced.add(iface.toString().replace('/', '.') + ".class");
+    static class ClassRefs {
+        // Clés de referencesTo
+        final Set<String> referenced = new HashSet<>();
+        // Noms pour Find Usages (avant réduction au nom simple)
+        final Set<String> usages = new HashSet<>();
+        // Nom interne de la classe et noms internes des classes qu'elle référence (graphe)
+        String name;
+        final Set<String> targets = new HashSet<>();
+        // Hiérarchie, membres déclarés et usages de membres (index des membres)
+        String superName;
+        String[] interfaces;
+        final List<MemberIndex.MemberRef> declared = new ArrayList<>();
+        final Set<MemberIndex.CallSite> sites = new LinkedHashSet<>();
+    }
+
+    /**
+     * Visiteur en flux : seuls l'en-tête, les descripteurs et les instructions
+     * qui nomment une classe sont examinés, aucun arbre n'est construit.
+     * targets doit contenir toute classe que le code décompilé peut nommer (types des
+     * membres appelés, annotations, lambdas, variables locales) : getClassRenameImpact
+     * ne réécrit que ces classes.
+     */
+    private static class RefCollector extends ClassVisitor {
+        private final ClassRefs refs;
+        private final MethodVisitor methodVisitor;
+        private final FieldVisitor fieldVisitor;
+        // Type des annotations, de leurs valeurs enum / Class et des annotations imbriquées
+        private final AnnotationVisitor annotationVisitor;
+        // Méthode en cours de visite (appelante des instructions)
+        private String methodName;
+        private String methodDesc;
+
+        RefCollector(ClassRefs refs) {
+            super(Opcodes.ASM9);
+            this.refs = refs;
+            this.annotationVisitor = new AnnotationVisitor(Opcodes.ASM9) {
+                @Override
+                public void visit(String name, Object value) {
+                    if (value instanceof Type) addTarget((Type) value);
                 }
-            }
-            
-            // Fields
-            if (cn.fields != null) {
-                for (Object f : cn.fields) {
-                    FieldNode fn = (FieldNode) f;
-                    if (fn.desc != null && fn.desc.contains("/")) {
-                        referenced.add(fn.desc.replace('/', '.') + ".class");
-                    }
+
+                @Override
+                public void visitEnum(String name, String descriptor, String value) {
+                    addTarget(Type.getType(descriptor));
                 }
-            }
-            
-            // Methods
-            if (cn.methods != null) {
-                for (Object m : cn.methods) {
-                    MethodNode mn = (MethodNode) m;
-                    if (mn.desc != null && mn.desc.contains("/")) {
-                        referenced.add(mn.desc.replace('/', '.') + ".class");
-                    }
-                    if (mn.instructions != null) {
-                        for (AbstractInsnNode insn : mn.instructions) {
-                            if (insn instanceof TypeInsnNode) {
-                                String ref = ((TypeInsnNode) insn).desc.replace('/', '.') + ".class";
-                                referenced.add(ref);
-                            } else if (insn instanceof MethodInsnNode) {
-                                String ref = ((MethodInsnNode) insn).owner.replace('/', '.') + ".class";
-                                referenced.add(ref);
-                            } else if (insn instanceof FieldInsnNode) {
-                                String ref = ((FieldInsnNode) insn).owner.replace('/', '.') + ".class";
-                                referenced.add(ref);
-                            }
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+                    addTarget(Type.getType(descriptor));
+                    return this;
+                }
+
+                @Override
+                public AnnotationVisitor visitArray(String name) {
+                    return this;
+                }
+            };
+            this.fieldVisitor = new FieldVisitor(Opcodes.ASM9) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    addTarget(Type.getType(descriptor));
+                    return annotationVisitor;
+                }
+            };
+            this.methodVisitor = new MethodVisitor(Opcodes.ASM9) {
+                @Override
+                public void visitTypeInsn(int opcode, String type) {
+                    addInsnRef(type);
+                    addTarget(type);
+                }
+
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                    addInsnRef(owner);
+                    addTarget(owner);
+                    addTarget(Type.getType(descriptor));
+                    addSite(MemberIndex.Kind.FIELD, owner, name, descriptor);
+                }
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                    addInsnRef(owner);
+                    addTarget(owner);
+                    addMethodTypeTargets(descriptor);
+                    addSite(MemberIndex.Kind.METHOD, owner, name, descriptor);
+                }
+
+                // Lambdas et références de méthode (Foo::run) : classe et descripteur des handles
+                @Override
+                public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrap, Object... args) {
+                    addMethodTypeTargets(descriptor);
+                    for (Object arg : args) {
+                        if (arg instanceof Handle) {
+                            Handle handle = (Handle) arg;
+                            addTarget(handle.getOwner());
+                            if (handle.getDesc().startsWith("(")) addMethodTypeTargets(handle.getDesc());
+                            else addTarget(Type.getType(handle.getDesc()));
+                        } else if (arg instanceof Type) {
+                            Type type = (Type) arg;
+                            if (type.getSort() == Type.METHOD) addMethodTypeTargets(type.getDescriptor());
+                            else addTarget(type);
                         }
                     }
                 }
+
+                @Override
+                public void visitLdcInsn(Object value) {
+                    if (value instanceof Type) addTarget((Type) value);
+                }
+
+                @Override
+                public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+                    addTarget(Type.getType(descriptor));
+                }
+
+                @Override
+                public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+                    if (type != null) addTarget(type);
+                }
+
+                // Type déclaré des variables locales (Foo x = new SousFoo())
+                @Override
+                public void visitLocalVariable(String name, String descriptor, String signature,
+                                               Label start, Label end, int index) {
+                    addTarget(Type.getType(descriptor));
+                    addSignatureTargets(signature);
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    addTarget(Type.getType(descriptor));
+                    return annotationVisitor;
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+                    addTarget(Type.getType(descriptor));
+                    return annotationVisitor;
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotationDefault() {
+                    return annotationVisitor;
+                }
+            };
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            refs.name = name;
+            refs.superName = superName;
+            refs.interfaces = interfaces;
+            addSignatureTargets(signature);
+            // Superclass
+            if (superName != null) {
+                addTypeRef(superName);
+                addTarget(superName);
             }
-            
-            for (String ref : referenced) {
-                if (!referencesTo.containsKey(ref)) {
-                    referencesTo.put(ref, new HashSet<>());
+            // Interfaces
+            if (interfaces != null) {
+                for (String iface : interfaces) {
+                    addTypeRef(iface);
+                    addTarget(iface);
                 }
-                referencesTo.get(ref).add(className);
             }
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            if (descriptor.contains("/")) addTypeRef(descriptor);
+            addTarget(Type.getType(descriptor));
+            addSignatureTargets(signature);
+            refs.declared.add(new MemberIndex.MemberRef(MemberIndex.Kind.FIELD, refs.name, name, descriptor));
+            return fieldVisitor;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            addTarget(Type.getType(descriptor));
+            return annotationVisitor;
+        }
+
+        // Classes internes nommées par la classe (Outer.Inner dans le code décompilé)
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            addTarget(name);
+            if (outerName != null) addTarget(outerName);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            if (descriptor.contains("/")) addTypeRef(descriptor);
+            addMethodTypeTargets(descriptor);
+            addSignatureTargets(signature);
+            if (exceptions != null) {
+                for (String ex : exceptions) addTarget(ex);
+            }
+            refs.declared.add(new MemberIndex.MemberRef(MemberIndex.Kind.METHOD, refs.name, name, descriptor));
+            methodName = name;
+            methodDesc = descriptor;
+            return methodVisitor;
+        }
+
+        private void addTypeRef(String name) {
+            String dotted = name.replace('/', '.');
+            refs.referenced.add(dotted + ".class");
+            refs.usages.add(dotted);
+        }
+
+        // Nom interne ou descripteur de tableau ([La/b/C;) : seules les classes comptent
+        private void addTarget(String internalName) {
+            if (internalName.startsWith("[")) addTarget(Type.getType(internalName));
+            else refs.targets.add(internalName);
+        }
+
+        private void addTarget(Type type) {
+            if (type.getSort() == Type.ARRAY) type = type.getElementType();
+            if (type.getSort() == Type.OBJECT) refs.targets.add(type.getInternalName());
+        }
+
+        private void addMethodTypeTargets(String descriptor) {
+            for (Type arg : Type.getArgumentTypes(descriptor)) addTarget(arg);
+            addTarget(Type.getReturnType(descriptor));
+        }
+
+        // Types des signatures génériques (List<a/b/C>), absents des descripteurs
+        private void addSignatureTargets(String signature) {
+            if (signature == null) return;
+            try {
+                new SignatureReader(signature).accept(new SignatureVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitClassType(String name) {
+                        refs.targets.add(name);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Signature invalide (obfuscation) : ignorée
+            }
+        }
+
+        private void addSite(MemberIndex.Kind kind, String owner, String name, String descriptor) {
+            MemberIndex.MemberRef target = new MemberIndex.MemberRef(kind, owner, name, descriptor);
+            refs.sites.add(new MemberIndex.CallSite(target, refs.name, methodName, methodDesc));
+        }
+
+        private void addInsnRef(String name) {
+            String ref = name.replace('/', '.') + ".class";
+            refs.referenced.add(ref);
+            refs.usages.add(ref);
+        }
+    }
+
+    private static ClassRefs collect(byte[] bytes) {
+        ClassRefs refs = new ClassRefs();
+        if (bytes == null) return refs;
+        try {
+            new ClassReader(bytes).accept(new RefCollector(refs), ClassReader.SKIP_FRAMES);
         } catch (Exception e) {
             // Ignore les erreurs d'analyse ASM
         }
+        return refs;
+    }
+
+    // Analyse en parallèle (lecture seule), la fusion dans les index se fait ensuite sur un seul thread
+    private static Map<String, ClassRefs> collectAll(Map<String, byte[]> classBytes, Collection<String> classKeys) {
+        return new ArrayList<>(classKeys).parallelStream()
+            .collect(Collectors.toMap(k -> k, k -> collect(originalBytes(classBytes, k)), (a, b) -> a));
+    }
+
+    // L'index reste sur les noms d'origine, même après un remappage du bytecode
+    private static byte[] originalBytes(Map<String, byte[]> classBytes, String classKey) {
+        if (classBytes instanceof ClassBytesMap) return ((ClassBytesMap) classBytes).getOriginal(classKey);
+        return classBytes.get(classKey);
+    }
+
+    /**
+     * Indexe une classe dans les deux index en une seule lecture du bytecode.
+     */
+    public void indexClass(String classKey, byte[] bytes) {
+        merge(classKey, collect(bytes), true, true);
     }
-    
+
+    /**
+     * Indexe un ensemble de classes dans les deux index.
+     */
+    public void indexClasses(Map<String, byte[]> classBytes, Collection<String> classKeys) {
+        for (Map.Entry<String, ClassRefs> e : collectAll(classBytes, classKeys).entrySet()) {
+            merge(e.getKey(), e.getValue(), true, true);
+        }
+    }
+
+    /**
+     * Indexe les références d'une classe.
+     */
+    public void indexClassReferences(String className, byte[] bytes) {
+        merge(className, collect(bytes), true, false);
+    }
+
     /**
      * Construit l'index des références pour Find Usages.
      */
     public void buildReferenceIndexFast(Map<String, byte[]> classBytes) {
         referenceIndex.clear();
-        for (String classKey : classBytes.keySet()) {
-            try {
-                ClassReader cr = new ClassReader(classBytes.get(classKey));
-                org.objectweb.asm.tree.ClassNode cn = new org.objectweb.asm.tree.ClassNode();
-                cr.accept(cn, 0);
-                Set<String> referenced = new HashSet<>();
-                
-                // Superclass
-                if (cn.superName != null) referenced.add(cn.superName.replace('/', '.'));
-                
-                // Interfaces
-                if (cn.interfaces != null) {
-                    for (Object iface : cn.interfaces) {
-                        referenced.add(iface.toString().replace('/', '.'));
-                    }
-                }
-                
-                // Fields
-                if (cn.fields != null) {
-                    for (Object f : cn.fields) {
-                        FieldNode fn = (FieldNode) f;
-                        if (fn.desc != null && fn.desc.contains("/")) {
-                            referenced.add(fn.desc.replace('/', '.'));
-                        }
-                    }
-                }
-                
-                // Methods
-                if (cn.methods != null) {
-                    for (Object m : cn.methods) {
-                        MethodNode mn = (MethodNode) m;
-                        if (mn.desc != null && mn.desc.contains("/")) {
-                            referenced.add(mn.desc.replace('/', '.'));
-                        }
-                        if (mn.instructions != null) {
-                            for (AbstractInsnNode insn : mn.instructions) {
-                                if (insn instanceof TypeInsnNode) {
-                                    String ref = ((TypeInsnNode) insn).desc.replace('/', '.') + ".class";
-                                    referenced.add(ref);
-                                } else if (insn instanceof MethodInsnNode) {
-                                    String ref = ((MethodInsnNode) insn).owner.replace('/', '.') + ".class";
-                                    referenced.add(ref);
-                                } else if (insn instanceof FieldInsnNode) {
-                                    String ref = ((FieldInsnNode) insn).owner.replace('/', '.') + ".class";
-                                    referenced.add(ref);
-                                }
-                            }
-                        }
-                    }
-                }
-                
-                for (String ref : referenced) {
-                    String simple = ref.contains(".") ? ref.substring(ref.lastIndexOf('.') + 1) : ref;
-                    referenceIndex.computeIfAbsent(simple, k -> new HashSet<>()).add(classKey);
-                }
-            } catch (Exception e) {
-                // Ignore les erreurs d'analyse ASM
+        for (Map.Entry<String, ClassRefs> e : collectAll(classBytes, classBytes.keySet()).entrySet()) {
+            merge(e.getKey(), e.getValue(), false, true);
+        }
+    }
+
+    /**
+     * Ajoute une classe à l'index Find Usages (nom simple référencé -> classes).
+     */
+    public void indexClassUsages(String classKey, byte[] bytes) {
+        merge(classKey, collect(bytes), false, true);
+    }
+
+    private void merge(String classKey, ClassRefs refs, boolean references, boolean usages) {
+        if (references) {
+            for (String ref : refs.referenced) {
+                referencesTo.computeIfAbsent(ref, k -> new HashSet<>()).add(classKey);
             }
+            if (refs.name != null) {
+                classRefs.put(refs.name, refs);
+                graph.setReferences(classKey, refs.name, refs.targets);
+                memberIndex.setClass(refs.name, refs.superName, refs.interfaces, refs.declared, refs.sites);
+            }
+        }
+        if (usages) {
+            for (String ref : refs.usages) {
+                String simple = ref.contains(".") ? ref.substring(ref.lastIndexOf('.') + 1) : ref;
+                referenceIndex.computeIfAbsent(simple, k -> new HashSet<>()).add(classKey);
+            }
+        }
+    }
+
+    /**
+     * Retire une classe des deux index, avant de la réindexer ou quand elle disparaît.
+     */
+    public void removeClass(String classKey) {
+        String internalName = graph.getInternalName(classKey);
+        if (internalName != null) {
+            memberIndex.removeClass(internalName);
+            classRefs.remove(internalName);
+        }
+        graph.removeClass(classKey);
+        for (Iterator<Set<String>> it = referencesTo.values().iterator(); it.hasNext(); ) {
+            Set<String> users = it.next();
+            users.remove(classKey);
+            if (users.isEmpty()) it.remove();
+        }
+        for (Iterator<Set<String>> it = referenceIndex.values().iterator(); it.hasNext(); ) {
+            Set<String> users = it.next();
+            users.remove(classKey);
+            if (users.isEmpty()) it.remove();
+        }
+    }
+
+    /**
+     * Classes du projet qui utilisent cette classe (clés courantes).
+     */
+    public Set<String> getUsagesOf(String classKey) {
+        return graph.getUsagesOf(classKey);
+    }
+
+    /**
+     * Classes du projet utilisées par cette classe (clés courantes).
+     */
+    public Set<String> getOutgoingRefs(String classKey) {
+        return graph.getReferencedBy(classKey);
+    }
+
+    /**
+     * Classes dont le code peut nommer cette classe : elle-même, ses classes internes
+     * (Outer.Inner), les classes qui référencent l'une d'elles dans leur bytecode et les
+     * classes qui englobent ces dernières (le code décompilé d'Outer contient Outer$Inner).
+     * Ensemble vide si la classe n'est pas indexée.
+     */
+    public Set<String> getClassRenameImpact(String classKey) {
+        Set<String> impact = new LinkedHashSet<>();
+        if (!graph.contains(classKey)) return impact;
+        impact.add(classKey);
+        impact.addAll(graph.getNestedKeys(classKey));
+        for (String key : new ArrayList<>(impact)) impact.addAll(graph.getUsagesOf(key));
+        for (String key : new ArrayList<>(impact)) {
+            String name = graph.getInternalName(key);
+            for (int i = name != null ? name.lastIndexOf('$') : -1; i > 0; i = name.lastIndexOf('$', i - 1)) {
+                String outerKey = graph.getKey(name.substring(0, i));
+                if (outerKey != null) impact.add(outerKey);
+            }
+        }
+        return impact;
+    }
+
+    /**
+     * Suit le renommage d'une clé de classe, sans réindexer.
+     */
+    public void renameClass(String oldKey, String newKey) {
+        graph.renameClass(oldKey, newKey);
+    }
+
+    /**
+     * Usages exacts d'un membre, avec la clé courante de la classe appelante.
+     */
+    public Map<String, List<MemberIndex.CallSite>> getMemberUsages(MemberIndex.MemberRef member) {
+        Map<String, List<MemberIndex.CallSite>> byClass = new LinkedHashMap<>();
+        for (MemberIndex.CallSite site : memberIndex.getUsages(member)) {
+            String key = graph.getKey(site.className);
+            if (key != null) byClass.computeIfAbsent(key, k -> new ArrayList<>()).add(site);
+        }
+        return byClass;
+    }
+
+    /**
+     * Classes du projet touchées par le renommage d'un membre (déclarations, redéfinitions, usages).
+     */
+    public Set<String> getMemberRenameImpact(MemberIndex.MemberRef member) {
+        return toKeys(memberIndex.getRenameImpact(member));
+    }
+
+    /**
+     * Classes du projet qui déclarent ou utilisent une méthode / un champ de ce nom.
+     * Vide si le nom n'existe pas dans le bytecode (membre déjà renommé dans le code par exemple).
+     */
+    public Set<String> getClassesUsingMember(MemberIndex.Kind kind, String name) {
+        return toKeys(memberIndex.getClassesUsingName(kind, name));
+    }
+
+    /**
+     * Membres de ce nom déclarés par une classe du projet (noms d'origine du bytecode).
+     */
+    public Set<MemberIndex.MemberRef> getDeclaredMembers(MemberIndex.Kind kind, String name) {
+        Set<MemberIndex.MemberRef> declared = new LinkedHashSet<>();
+        for (MemberIndex.MemberRef m : memberIndex.getMembersNamed(kind, name)) {
+            if (!memberIndex.getDeclarers(m).isEmpty()) declared.add(m);
+        }
+        return declared;
+    }
+
+    /**
+     * Super-classe et interfaces directes d'une classe du projet, par nom interne d'origine.
+     */
+    public List<String> getSupertypes(String internalName) {
+        return memberIndex.getSupertypes(internalName);
+    }
+
+    private Set<String> toKeys(Set<String> internalNames) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String name : internalNames) {
+            String key = graph.getKey(name);
+            if (key != null) keys.add(key);
         }
+        return keys;
     }
-    
+
+    /**
+     * Instantané binaire de l'index, sous les clés courantes des classes, à ranger dans le
+     * cache de décompilation (CacheManager.putRaw).
+     */
+    public byte[] snapshotBytes(String jarHash) throws IOException {
+        Map<String, ClassRefs> byKey = snapshotByKey();
+        byte[] bytes = ReferenceSnapshot.toBytes(jarHash, byKey);
+        System.out.println("DEBUG: Instantané des références construit (" + byKey.size() + " classes, " + bytes.length + " octets)");
+        return bytes;
+    }
+
+    private Map<String, ClassRefs> snapshotByKey() {
+        Map<String, ClassRefs> byKey = new LinkedHashMap<>();
+        for (ClassRefs refs : classRefs.values()) {
+            String key = graph.getKey(refs.name);
+            if (key != null) byKey.put(key, refs);
+        }
+        return byKey;
+    }
+
+    /**
+     * Recharge l'index depuis un instantané construit pour le même JAR, sans lire le bytecode
+     * (tranche mappée du cache, CacheManager.getMapped).
+     * Retourne les clés restaurées (les classes absentes restent à indexer), ou null si
+     * l'instantané est absent, d'un autre JAR ou ne correspond pas aux classes du projet.
+     */
+    public Set<String> loadSnapshot(ByteBuffer snapshot, String jarHash, Collection<String> classKeys) {
+        if (snapshot == null) return null;
+        return restoreSnapshot(ReferenceSnapshot.read(snapshot, jarHash, "cache"), classKeys, "cache");
+    }
+
+    private Set<String> restoreSnapshot(Map<String, ClassRefs> loaded, Collection<String> classKeys, String source) {
+        if (loaded == null) return null;
+        if (!new HashSet<>(classKeys).containsAll(loaded.keySet())) {
+            System.out.println("DEBUG: Instantané des références ignoré (classes différentes) : " + source);
+            return null;
+        }
+        for (Map.Entry<String, ClassRefs> e : loaded.entrySet()) {
+            merge(e.getKey(), e.getValue(), true, true);
+        }
+        System.out.println("DEBUG: Instantané des références chargé : " + source + " (" + loaded.size() + " classes)");
+        return loaded.keySet();
+    }
+
+    public MemberIndex getMemberIndex() {
+        return memberIndex;
+    }
+
+    public ReferenceGraph getGraph() {
+        return graph;
+    }
+
     public Map<String, Set<String>> getReferencesTo() {
         return referencesTo;
     }
-    
+
     public Map<String, Set<String>> getReferenceIndex() {
         return referenceIndex;
     }
-    
+
     public void clear() {
         referencesTo.clear();
         referenceIndex.clear();
+        graph.clear();
+        memberIndex.clear();
+        classRefs.clear();
     }
 }
-
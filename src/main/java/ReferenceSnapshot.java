@@ -0,0 +1,172 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Instantané binaire de l'index des références, pour rouvrir un projet sans relire le bytecode.
+ * Format : en-tête (magic, version, empreinte du JAR), table des chaînes internées, puis pour
+ * chaque classe des tableaux d'indices dans cette table (références, cibles, membres, usages).
+ * Rangé non compressé dans le cache : la lecture se fait sur la tranche mappée du magasin et
+ * s'arrête dès l'en-tête si l'empreinte ne correspond pas.
+ */
+public final class ReferenceSnapshot {
+    private static final int MAGIC = 0x50524658; // "PRFX"
+    // 2 : targets couvre aussi descripteurs appelés, annotations, lambdas et variables locales
+    private static final int VERSION = 2;
+
+    private ReferenceSnapshot() {}
+
+    /**
+     * Instantané (clé de classe -> références) en octets, pour le ranger dans le cache de décompilation.
+     */
+    static byte[] toBytes(String jarHash, Map<String, ReferenceManager.ClassRefs> classes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(bytes, jarHash, classes);
+        return bytes.toByteArray();
+    }
+
+    private static void write(OutputStream stream, String jarHash, Map<String, ReferenceManager.ClassRefs> classes) throws IOException {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (Map.Entry<String, ReferenceManager.ClassRefs> e : classes.entrySet()) {
+            ReferenceManager.ClassRefs refs = e.getValue();
+            intern(ids, e.getKey());
+            intern(ids, refs.name);
+            intern(ids, refs.superName);
+            if (refs.interfaces != null) for (String s : refs.interfaces) intern(ids, s);
+            for (String s : refs.referenced) intern(ids, s);
+            for (String s : refs.usages) intern(ids, s);
+            for (String s : refs.targets) intern(ids, s);
+            for (MemberIndex.MemberRef m : refs.declared) {
+                intern(ids, m.name);
+                intern(ids, m.desc);
+            }
+            for (MemberIndex.CallSite site : refs.sites) {
+                intern(ids, site.target.owner);
+                intern(ids, site.target.name);
+                intern(ids, site.target.desc);
+                intern(ids, site.methodName);
+                intern(ids, site.methodDesc);
+            }
+        }
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, jarHash);
+        out.writeInt(ids.size());
+        for (String s : ids.keySet()) writeString(out, s);
+        out.writeInt(classes.size());
+        for (Map.Entry<String, ReferenceManager.ClassRefs> e : classes.entrySet()) {
+            ReferenceManager.ClassRefs refs = e.getValue();
+            out.writeInt(ids.get(e.getKey()));
+            out.writeInt(id(ids, refs.name));
+            out.writeInt(id(ids, refs.superName));
+            writeIds(out, ids, refs.interfaces != null ? Arrays.asList(refs.interfaces) : Collections.emptyList());
+            writeIds(out, ids, refs.referenced);
+            writeIds(out, ids, refs.usages);
+            writeIds(out, ids, refs.targets);
+            out.writeInt(refs.declared.size());
+            for (MemberIndex.MemberRef m : refs.declared) {
+                out.writeByte(m.kind.ordinal());
+                out.writeInt(id(ids, m.name));
+                out.writeInt(id(ids, m.desc));
+            }
+            out.writeInt(refs.sites.size());
+            for (MemberIndex.CallSite site : refs.sites) {
+                out.writeByte(site.target.kind.ordinal());
+                out.writeInt(id(ids, site.target.owner));
+                out.writeInt(id(ids, site.target.name));
+                out.writeInt(id(ids, site.target.desc));
+                out.writeInt(id(ids, site.methodName));
+                out.writeInt(id(ids, site.methodDesc));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Relit un instantané depuis un tampon (tranche mappée de l'entrée du cache).
+     * Retourne null s'il est illisible ou construit pour un autre JAR.
+     */
+    static Map<String, ReferenceManager.ClassRefs> read(ByteBuffer buf, String jarHash, String source) {
+        try {
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                System.out.println("DEBUG: Instantané des références ignoré (format inconnu) : " + source);
+                return null;
+            }
+            if (!readString(buf).equals(jarHash)) {
+                System.out.println("DEBUG: Instantané des références ignoré (JAR différent) : " + source);
+                return null;
+            }
+            String[] strings = new String[buf.getInt()];
+            for (int i = 0; i < strings.length; i++) strings[i] = readString(buf);
+            MemberIndex.Kind[] kinds = MemberIndex.Kind.values();
+            int count = buf.getInt();
+            Map<String, ReferenceManager.ClassRefs> classes = new LinkedHashMap<>(count * 2);
+            for (int c = 0; c < count; c++) {
+                String key = strings[buf.getInt()];
+                ReferenceManager.ClassRefs refs = new ReferenceManager.ClassRefs();
+                refs.name = str(strings, buf.getInt());
+                refs.superName = str(strings, buf.getInt());
+                String[] interfaces = new String[buf.getInt()];
+                for (int i = 0; i < interfaces.length; i++) interfaces[i] = strings[buf.getInt()];
+                refs.interfaces = interfaces;
+                readIds(buf, strings, refs.referenced);
+                readIds(buf, strings, refs.usages);
+                readIds(buf, strings, refs.targets);
+                int declared = buf.getInt();
+                for (int i = 0; i < declared; i++) {
+                    MemberIndex.Kind kind = kinds[buf.get()];
+                    refs.declared.add(new MemberIndex.MemberRef(kind, refs.name, strings[buf.getInt()], strings[buf.getInt()]));
+                }
+                int sites = buf.getInt();
+                for (int i = 0; i < sites; i++) {
+                    MemberIndex.Kind kind = kinds[buf.get()];
+                    MemberIndex.MemberRef target = new MemberIndex.MemberRef(kind, strings[buf.getInt()],
+                                                                             strings[buf.getInt()], strings[buf.getInt()]);
+                    refs.sites.add(new MemberIndex.CallSite(target, refs.name, str(strings, buf.getInt()), str(strings, buf.getInt())));
+                }
+                classes.put(key, refs);
+            }
+            return classes;
+        } catch (RuntimeException e) {
+            // Instantané tronqué ou corrompu : on réindexera depuis le bytecode
+            System.out.println("DEBUG: Instantané des références illisible : " + source + " (" + e + ")");
+            return null;
+        }
+    }
+
+    private static void intern(Map<String, Integer> ids, String s) {
+        if (s != null) ids.putIfAbsent(s, ids.size());
+    }
+
+    private static int id(Map<String, Integer> ids, String s) {
+        return s != null ? ids.get(s) : -1;
+    }
+
+    private static String str(String[] strings, int id) {
+        return id >= 0 ? strings[id] : null;
+    }
+
+    private static void writeIds(DataOutputStream out, Map<String, Integer> ids, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String s : values) out.writeInt(ids.get(s));
+    }
+
+    private static void readIds(ByteBuffer buf, String[] strings, Collection<String> into) {
+        int n = buf.getInt();
+        for (int i = 0; i < n; i++) into.add(strings[buf.getInt()]);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,452 @@
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import javax.swing.SwingUtilities;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Journal des renommages : chaque renommage global forme un lot (begin / end) qui garde,
+ * par classe, les lignes modifiées du code (et non le code entier), les déplacements de
+ * clés et les changements de mappings. Annuler ou rétablir un lot ne rejoue que ces
+ * différences, sans redécompiler ni réécrire le reste du projet.
+ * Un lot appartient au thread qui l'a ouvert : deux renommages lancés en même temps
+ * forment deux lots. Les écritures faites hors d'un lot ne sont pas journalisées.
+ */
+public class RenameJournal {
+    private static final int MAX_BATCHES = 50;
+
+    // Étape d'un lot, rejouable dans les deux sens
+    private interface Step {
+        void undo();
+
+        void redo();
+    }
+
+    private static class Batch {
+        final String label;
+        final List<Step> steps = new ArrayList<>();
+        // Étape de texte par clé (au moment de l'écriture), pour fusionner les passes successives
+        final Map<String, TextStep> texts = new HashMap<>();
+        // begin imbriqués sur le même thread
+        int depth;
+
+        Batch(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Map<String, String> modifiedCode;
+    private final Map<String, RSyntaxTextArea> openTabs;
+    private final TabManager tabManager;
+    // Déplace des clés de classes dans tout le projet (arbre, onglets, index)
+    private final Consumer<Map<String, String>> moveKeys;
+    private final Deque<Batch> undoStack = new ArrayDeque<>();
+    private final Deque<Batch> redoStack = new ArrayDeque<>();
+    private final List<Runnable> listeners = new ArrayList<>();
+    // Lot ouvert par le thread courant ; seul ce thread y écrit
+    private final ThreadLocal<Batch> current = new ThreadLocal<>();
+    private int openBatches;
+
+    public RenameJournal(Map<String, String> modifiedCode, Map<String, RSyntaxTextArea> openTabs,
+                         TabManager tabManager, Consumer<Map<String, String>> moveKeys) {
+        this.modifiedCode = modifiedCode;
+        this.openTabs = openTabs;
+        this.tabManager = tabManager;
+        this.moveKeys = moveKeys;
+    }
+
+    /**
+     * Prévenu (sur l'EDT) quand les lots disponibles changent.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Ouvre un lot pour le thread courant ; un begin imbriqué sur le même thread est fusionné
+     * dans le lot englobant.
+     */
+    public synchronized void begin(String label) {
+        Batch batch = current.get();
+        if (batch == null) {
+            batch = new Batch(label);
+            current.set(batch);
+            openBatches++;
+        }
+        batch.depth++;
+    }
+
+    /**
+     * Ferme le lot ouvert par begin sur ce thread ; un lot non vide devient annulable.
+     */
+    public void end() {
+        synchronized (this) {
+            Batch batch = current.get();
+            if (batch == null || --batch.depth > 0) return;
+            current.remove();
+            openBatches--;
+            if (!batch.steps.isEmpty()) {
+                undoStack.push(batch);
+                while (undoStack.size() > MAX_BATCHES) undoStack.removeLast();
+                redoStack.clear();
+                System.out.println("DEBUG: Journal : lot \"" + batch.label + "\" (" + batch.steps.size() + " étapes)");
+            }
+        }
+        fireChanged();
+    }
+
+    /**
+     * Code d'une classe remplacé pendant le lot ouvert par ce thread (before = code de départ,
+     * pas forcément enregistré).
+     */
+    public void recordText(String classKey, String before, String after) {
+        Batch current = this.current.get();
+        if (current == null || before == null || after == null || before.equals(after)) return;
+        TextStep previous = current.texts.get(classKey);
+        if (previous != null && previous.diff.matchesAfter(before)) {
+            // Même classe réécrite deux fois dans le lot : une seule différence depuis le départ
+            previous.diff = TextDiff.of(previous.diff.revert(before), after);
+            return;
+        }
+        TextStep step = new TextStep(classKey, TextDiff.of(before, after));
+        current.steps.add(step);
+        current.texts.put(classKey, step);
+    }
+
+    /**
+     * Clés de classes déplacées pendant le lot ouvert par ce thread (ancienne clé -> nouvelle clé).
+     */
+    public void recordMove(Map<String, String> renameMap) {
+        Batch current = this.current.get();
+        if (current == null || renameMap.isEmpty()) return;
+        Step last = current.steps.isEmpty() ? null : current.steps.get(current.steps.size() - 1);
+        if (last instanceof MoveStep && ((MoveStep) last).accepts(renameMap)) {
+            // Déplacements successifs regroupés : un seul passage sur l'arbre à l'annulation
+            ((MoveStep) last).renameMap.putAll(renameMap);
+        } else {
+            current.steps.add(new MoveStep(new LinkedHashMap<>(renameMap)));
+        }
+        // Les textes enregistrés avant le déplacement ne se fusionnent plus avec les suivants
+        current.texts.clear();
+    }
+
+    /**
+     * Autre changement du lot ouvert par ce thread (mappings...), avec son inverse.
+     */
+    public void recordAction(Runnable undo, Runnable redo) {
+        Batch current = this.current.get();
+        if (current == null) return;
+        current.steps.add(new Step() {
+            public void undo() {
+                undo.run();
+            }
+
+            public void redo() {
+                redo.run();
+            }
+        });
+    }
+
+    // Pas d'annulation pendant qu'un renommage est en cours, quel que soit son thread
+    public synchronized boolean canUndo() {
+        return openBatches == 0 && !undoStack.isEmpty();
+    }
+
+    public synchronized boolean canRedo() {
+        return openBatches == 0 && !redoStack.isEmpty();
+    }
+
+    public synchronized String undoLabel() {
+        return undoStack.isEmpty() ? null : undoStack.peek().label;
+    }
+
+    public synchronized String redoLabel() {
+        return redoStack.isEmpty() ? null : redoStack.peek().label;
+    }
+
+    /**
+     * Annule le dernier lot. À appeler sur l'EDT. Retourne le lot annulé, ou null si rien
+     * à annuler ou si une classe a été modifiée depuis (le lot reste alors annulable).
+     */
+    public String undo() {
+        Batch batch;
+        synchronized (this) {
+            if (!canUndo()) return null;
+            batch = undoStack.peek();
+            if (!applies(batch, true)) return null;
+            undoStack.pop();
+        }
+        long t0 = System.nanoTime();
+        for (int i = batch.steps.size() - 1; i >= 0; i--) batch.steps.get(i).undo();
+        synchronized (this) {
+            redoStack.push(batch);
+        }
+        System.out.println("DEBUG: Journal : \"" + batch.label + "\" annulé (" + batch.steps.size() + " étapes) en "
+                           + (System.nanoTime() - t0) / 1_000_000 + " ms");
+        fireChanged();
+        return batch.label;
+    }
+
+    /**
+     * Rétablit le dernier lot annulé. Même contrat que undo.
+     */
+    public String redo() {
+        Batch batch;
+        synchronized (this) {
+            if (!canRedo()) return null;
+            batch = redoStack.peek();
+            if (!applies(batch, false)) return null;
+            redoStack.pop();
+        }
+        long t0 = System.nanoTime();
+        for (Step step : batch.steps) step.redo();
+        synchronized (this) {
+            undoStack.push(batch);
+        }
+        System.out.println("DEBUG: Journal : \"" + batch.label + "\" rétabli (" + batch.steps.size() + " étapes) en "
+                           + (System.nanoTime() - t0) / 1_000_000 + " ms");
+        fireChanged();
+        return batch.label;
+    }
+
+    /**
+     * Oublie tout l'historique (nouveau projet).
+     */
+    public void clear() {
+        synchronized (this) {
+            undoStack.clear();
+            redoStack.clear();
+        }
+        fireChanged();
+    }
+
+    // Vérifie que chaque classe du lot a encore le code attendu (en suivant les déplacements
+    // de clés faits ensuite dans le lot) avant de toucher quoi que ce soit
+    private boolean applies(Batch batch, boolean undo) {
+        Map<String, String> location = new HashMap<>();
+        List<Step> steps = new ArrayList<>(batch.steps);
+        if (undo) Collections.reverse(steps);
+        for (Step step : steps) {
+            if (step instanceof MoveStep) {
+                for (Map.Entry<String, String> e : ((MoveStep) step).renameMap.entrySet()) {
+                    String before = undo ? e.getKey() : e.getValue();
+                    String after = undo ? e.getValue() : e.getKey();
+                    location.put(before, location.getOrDefault(after, after));
+                }
+            } else if (step instanceof TextStep) {
+                TextStep text = (TextStep) step;
+                String key = location.getOrDefault(text.classKey, text.classKey);
+                String code = currentCode(key);
+                if (code == null || !(undo ? text.diff.matchesAfter(code) : text.diff.matchesBefore(code))) {
+                    System.out.println("DEBUG: ✗ Journal : " + key + " a changé depuis \"" + batch.label + "\"");
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private String currentCode(String classKey) {
+        String code = modifiedCode.get(classKey);
+        if (code != null) return code;
+        RSyntaxTextArea area = openTabs.get(classKey);
+        return area != null ? TabManager.textOf(area) : null;
+    }
+
+    private void setCode(String classKey, String code) {
+        modifiedCode.put(classKey, code);
+        RSyntaxTextArea area = openTabs.get(classKey);
+        if (area == null) return;
+        if (SwingUtilities.isEventDispatchThread()) tabManager.setTextWhenVisible(area, code);
+        else SwingUtilities.invokeLater(() -> tabManager.setTextWhenVisible(area, code));
+    }
+
+    private void fireChanged() {
+        SwingUtilities.invokeLater(() -> {
+            for (Runnable l : listeners) l.run();
+        });
+    }
+
+    private class TextStep implements Step {
+        final String classKey;
+        TextDiff diff;
+
+        TextStep(String classKey, TextDiff diff) {
+            this.classKey = classKey;
+            this.diff = diff;
+        }
+
+        public void undo() {
+            setCode(classKey, diff.revert(currentCode(classKey)));
+        }
+
+        public void redo() {
+            setCode(classKey, diff.apply(currentCode(classKey)));
+        }
+    }
+
+    private class MoveStep implements Step {
+        final Map<String, String> renameMap;
+
+        MoveStep(Map<String, String> renameMap) {
+            this.renameMap = renameMap;
+        }
+
+        // Regroupable si aucune clé ne fait partie d'un déplacement déjà noté (pas de chaîne)
+        boolean accepts(Map<String, String> more) {
+            for (Map.Entry<String, String> e : more.entrySet()) {
+                if (renameMap.containsKey(e.getKey()) || renameMap.containsValue(e.getKey())
+                    || renameMap.containsKey(e.getValue()) || renameMap.containsValue(e.getValue())) return false;
+            }
+            return true;
+        }
+
+        public void undo() {
+            Map<String, String> inverse = new LinkedHashMap<>();
+            for (Map.Entry<String, String> e : renameMap.entrySet()) inverse.put(e.getValue(), e.getKey());
+            moveKeys.accept(inverse);
+        }
+
+        public void redo() {
+            moveKeys.accept(renameMap);
+        }
+    }
+
+    /**
+     * Différence entre deux versions d'un code, par lignes : seules les lignes modifiées sont
+     * gardées (un renommage touche peu de lignes). Si le nombre de lignes change, la zone
+     * entre le début et la fin communs est gardée d'un bloc.
+     * Chaque bloc garde sa ligne et les lignes qu'il attend : si des lignes ont été ajoutées
+     * ou retirées plus haut depuis, il est retrouvé autour de sa position prévue. Seul un
+     * bloc dont les lignes elles-mêmes ont changé empêche d'appliquer la différence.
+     */
+    static final class TextDiff {
+        // Par bloc : première ligne dans l'ancien texte, lignes retirées et lignes insérées
+        private final int[] lines;
+        private final String[][] removed;
+        private final String[][] inserted;
+
+        private TextDiff(int[] lines, String[][] removed, String[][] inserted) {
+            this.lines = lines;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        static TextDiff of(String before, String after) {
+            String[] a = before.split("\n", -1);
+            String[] b = after.split("\n", -1);
+            int prefix = 0;
+            while (prefix < a.length && prefix < b.length && a[prefix].equals(b[prefix])) prefix++;
+            int suffix = 0;
+            while (suffix < a.length - prefix && suffix < b.length - prefix
+                   && a[a.length - 1 - suffix].equals(b[b.length - 1 - suffix])) suffix++;
+            List<Integer> lines = new ArrayList<>();
+            List<String[]> removed = new ArrayList<>();
+            List<String[]> inserted = new ArrayList<>();
+            if (a.length == b.length) {
+                for (int i = prefix; i < a.length - suffix; i++) {
+                    if (a[i].equals(b[i])) continue;
+                    lines.add(i);
+                    removed.add(new String[]{a[i]});
+                    inserted.add(new String[]{b[i]});
+                }
+            } else {
+                int start = prefix;
+                int oldEnd = a.length - suffix;
+                int newEnd = b.length - suffix;
+                // Bloc vide d'un côté (lignes seulement ajoutées ou retirées) : une ligne de
+                // contexte, sinon il n'y aurait rien à retrouver
+                if (start == oldEnd || start == newEnd) {
+                    if (start > 0) {
+                        start--;
+                    } else {
+                        oldEnd++;
+                        newEnd++;
+                    }
+                }
+                lines.add(start);
+                removed.add(Arrays.copyOfRange(a, start, oldEnd));
+                inserted.add(Arrays.copyOfRange(b, start, newEnd));
+            }
+            return new TextDiff(lines.stream().mapToInt(Integer::intValue).toArray(),
+                                removed.toArray(new String[0][]), inserted.toArray(new String[0][]));
+        }
+
+        /**
+         * Texte avec la différence appliquée, ou null si un bloc ne s'y retrouve plus.
+         */
+        String apply(String text) {
+            return replace(text, false);
+        }
+
+        /**
+         * Texte avec la différence annulée, ou null si un bloc ne s'y retrouve plus.
+         */
+        String revert(String text) {
+            return replace(text, true);
+        }
+
+        boolean matchesBefore(String text) {
+            return locate(text.split("\n", -1), false) != null;
+        }
+
+        boolean matchesAfter(String text) {
+            return locate(text.split("\n", -1), true) != null;
+        }
+
+        // Ligne de chaque bloc dans text (côté inséré si after), dans l'ordre, ou null
+        private int[] locate(String[] text, boolean after) {
+            int[] found = new int[lines.length];
+            int shift = 0;
+            int drift = 0;
+            int from = 0;
+            for (int i = 0; i < lines.length; i++) {
+                String[] expected = after ? inserted[i] : removed[i];
+                int guess = lines[i] + (after ? shift : 0) + drift;
+                int at = find(text, expected, guess, from);
+                if (at < 0) return null;
+                found[i] = at;
+                // Les blocs suivants ont sans doute bougé d'autant
+                drift = at - (lines[i] + (after ? shift : 0));
+                from = at + expected.length;
+                shift += inserted[i].length - removed[i].length;
+            }
+            return found;
+        }
+
+        // Position de expected la plus proche de guess, à partir de la ligne from
+        private static int find(String[] text, String[] expected, int guess, int from) {
+            int last = text.length - expected.length;
+            for (int d = 0; guess - d >= from || guess + d <= last; d++) {
+                if (guess + d >= from && guess + d <= last && matchesAt(text, expected, guess + d)) return guess + d;
+                if (d > 0 && guess - d >= from && guess - d <= last && matchesAt(text, expected, guess - d)) return guess - d;
+            }
+            return -1;
+        }
+
+        private static boolean matchesAt(String[] text, String[] expected, int at) {
+            for (int k = 0; k < expected.length; k++) {
+                if (!text[at + k].equals(expected[k])) return false;
+            }
+            return true;
+        }
+
+        private String replace(String text, boolean reverse) {
+            String[] current = text.split("\n", -1);
+            int[] found = locate(current, reverse);
+            if (found == null) return null;
+            StringBuilder sb = new StringBuilder(text.length() + 64);
+            int cursor = 0;
+            for (int i = 0; i < lines.length; i++) {
+                String[] from = reverse ? inserted[i] : removed[i];
+                String[] to = reverse ? removed[i] : inserted[i];
+                for (; cursor < found[i]; cursor++) sb.append(current[cursor]).append('\n');
+                for (String line : to) sb.append(line).append('\n');
+                cursor = found[i] + from.length;
+            }
+            for (; cursor < current.length; cursor++) sb.append(current[cursor]).append('\n');
+            // split(-1) donne n lignes pour n - 1 retours à la ligne
+            sb.setLength(sb.length() - 1);
+            return sb.toString();
+        }
+    }
+}
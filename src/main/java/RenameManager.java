@@ -5,31 +5,38 @@ import java.util.*;
 import java.util.List;
 
 public class RenameManager {
-    private final Map<String, byte[]> classBytes;
+    private final ClassBytesMap classBytes;
     private final Map<String, String> modifiedCode;
     private final Map<String, RSyntaxTextArea> openTabs;
-    private final Map<String, Set<String>> referencesTo;
+    private final ReferenceManager referenceManager;
     private final ClassRenamer classRenamer;
     private final DecompilerManager decompilerManager;
     private final TreeManager treeManager;
     private final TabManager tabManager;
     private final IdentifierAnalyzer identifierAnalyzer;
     private final JFrame parent;
+    private final ProjectRewriter projectRewriter;
+    private final BytecodeRemapper bytecodeRemapper;
+    private final RenameJournal journal;
     
-    public RenameManager(JFrame parent, Map<String, byte[]> classBytes, Map<String, String> modifiedCode,
-                         Map<String, RSyntaxTextArea> openTabs, Map<String, Set<String>> referencesTo,
+    public RenameManager(JFrame parent, ClassBytesMap classBytes, Map<String, String> modifiedCode,
+                         Map<String, RSyntaxTextArea> openTabs, ReferenceManager referenceManager,
                          ClassRenamer classRenamer, DecompilerManager decompilerManager,
-                         TreeManager treeManager, TabManager tabManager, IdentifierAnalyzer identifierAnalyzer) {
+                         TreeManager treeManager, TabManager tabManager, IdentifierAnalyzer identifierAnalyzer,
+                         ProjectRewriter projectRewriter, BytecodeRemapper bytecodeRemapper, RenameJournal journal) {
         this.parent = parent;
         this.classBytes = classBytes;
         this.modifiedCode = modifiedCode;
         this.openTabs = openTabs;
-        this.referencesTo = referencesTo;
+        this.referenceManager = referenceManager;
         this.classRenamer = classRenamer;
         this.decompilerManager = decompilerManager;
         this.treeManager = treeManager;
         this.tabManager = tabManager;
         this.identifierAnalyzer = identifierAnalyzer;
+        this.projectRewriter = projectRewriter;
+        this.bytecodeRemapper = bytecodeRemapper;
+        this.journal = journal;
     }
     
     public boolean confirmGlobalRename(Set<String> impacted, String oldName, String newName) {
@@ -45,7 +52,7 @@ public class RenameManager {
     
     public void renameClassEverywhere(String classKey, String oldName, String newName, 
                                       String lastClassName, String lastDecompiledCode) {
-        Set<String> impacted = referencesTo.getOrDefault(classKey, new HashSet<>());
+        Set<String> impacted = new HashSet<>(referenceManager.getUsagesOf(classKey));
         impacted.add(classKey);
         if (!confirmGlobalRename(impacted, oldName, newName)) return;
         
@@ -54,7 +61,7 @@ public class RenameManager {
             if (bytes == null) continue;
             String code;
             if (openTabs.containsKey(impactedKey)) {
-                code = openTabs.get(impactedKey).getText();
+                code = TabManager.textOf(openTabs.get(impactedKey));
             } else if (impactedKey.equals(lastClassName) && lastDecompiledCode != null) {
                 code = lastDecompiledCode;
             } else {
@@ -76,46 +83,24 @@ public class RenameManager {
     
     public void renameClassEverywhereAndUpdateKeys(String fullPath, String oldName, String newName,
                                                    String lastClassName, String lastDecompiledCode) {
-        Set<String> impactedFiles = new HashSet<>(modifiedCode.keySet());
-        impactedFiles.add(fullPath);
+        Map<String, String> editedTabs = editedTabTexts();
         String newFullPath = fullPath.replace("/" + oldName + ".class", "/" + newName + ".class")
                                      .replace(oldName + ".class", newName + ".class");
         JDialog progressDialog = new JDialog(parent, "Renommage en cours", true);
-        JProgressBar progressBar = new JProgressBar(0, impactedFiles.size());
+        JProgressBar progressBar = new JProgressBar();
         progressBar.setStringPainted(true);
         progressDialog.getContentPane().add(progressBar);
         progressDialog.setSize(400, 80);
         progressDialog.setLocationRelativeTo(parent);
         new Thread(() -> {
-            int count = 0;
-            for (String classKey : impactedFiles) {
-                String code;
-                if (modifiedCode.containsKey(classKey)) {
-                    code = modifiedCode.get(classKey);
-                } else if (openTabs.containsKey(classKey)) {
-                    code = openTabs.get(classKey).getText();
-                } else {
-                    code = decompilerManager.decompileClassToString(classKey, classBytes.get(classKey));
-                }
-                String newCode = classRenamer.renameClassInCode(code, oldName, newName);
-                modifiedCode.put(classKey, newCode);
-                if (openTabs.containsKey(classKey)) {
-                    openTabs.get(classKey).setText(newCode);
-                }
-                if (classKey.equals(fullPath)) {
-                    tabManager.updateTabTitle(fullPath, newFullPath);
-                }
-                count++;
-                final int progress = count;
-                javax.swing.SwingUtilities.invokeLater(() -> progressBar.setValue(progress));
-            }
-            javax.swing.tree.DefaultMutableTreeNode root = 
-                (javax.swing.tree.DefaultMutableTreeNode) treeManager.getTreeModel().getRoot();
-            treeManager.updateClassNodeFullPath(root, fullPath, newFullPath, newName);
-            if (!fullPath.equals(newFullPath)) {
-                if (classBytes.containsKey(fullPath)) classBytes.put(newFullPath, classBytes.remove(fullPath));
-                if (openTabs.containsKey(fullPath)) openTabs.put(newFullPath, openTabs.remove(fullPath));
-                if (modifiedCode.containsKey(fullPath)) modifiedCode.put(newFullPath, modifiedCode.remove(fullPath));
+            Set<String> impactedFiles = classScope(fullPath, oldName, editedTabs);
+            impactedFiles.add(fullPath);
+            javax.swing.SwingUtilities.invokeLater(() -> progressBar.setMaximum(impactedFiles.size()));
+            journal.begin("Renommage de " + oldName + " en " + newName);
+            try {
+                renameClassAndKey(impactedFiles, fullPath, newFullPath, oldName, newName, progressBar);
+            } finally {
+                journal.end();
             }
             javax.swing.SwingUtilities.invokeLater(() -> {
                 progressDialog.dispose();
@@ -129,34 +114,59 @@ public class RenameManager {
         }).start();
         progressDialog.setVisible(true);
     }
+
+    private void renameClassAndKey(Set<String> impactedFiles, String fullPath, String newFullPath,
+                                   String oldName, String newName, JProgressBar progressBar) {
+        // Classes réécrites en parallèle, puis enregistrées en une fois
+        projectRewriter.rewrite(impactedFiles, classKey -> {
+            String code = modifiedCode.get(classKey);
+            if (code != null) return code;
+            RSyntaxTextArea area = openTabs.get(classKey);
+            if (area != null) return TabManager.textOf(area);
+            return decompilerManager.decompileClassToString(classKey, classBytes.get(classKey));
+        }, (classKey, code) -> classRenamer.renameClassInCode(code, oldName, newName), progressBar::setValue);
+        javax.swing.SwingUtilities.invokeLater(() -> tabManager.updateTabTitle(fullPath, newFullPath));
+        javax.swing.tree.DefaultMutableTreeNode root = 
+            (javax.swing.tree.DefaultMutableTreeNode) treeManager.getTreeModel().getRoot();
+        treeManager.updateClassNodeFullPath(root, fullPath, newFullPath, newName);
+        if (!fullPath.equals(newFullPath)) {
+            if (classBytes.containsKey(fullPath)) classBytes.rename(fullPath, newFullPath);
+            referenceManager.renameClass(fullPath, newFullPath);
+            if (openTabs.containsKey(fullPath)) openTabs.put(newFullPath, openTabs.remove(fullPath));
+            if (modifiedCode.containsKey(fullPath)) modifiedCode.put(newFullPath, modifiedCode.remove(fullPath));
+            journal.recordMove(Collections.singletonMap(fullPath, newFullPath));
+        }
+    }
     
     public void renameMethodEverywhere(String oldName, String newName) {
-        Set<String> impactedFiles = new HashSet<>(modifiedCode.keySet());
+        Set<String> impactedFiles = memberScope(MemberIndex.Kind.METHOD, oldName, modifiedCode.keySet());
         JDialog progressDialog = new JDialog(parent, "Renommage méthode global", true);
         JProgressBar progressBar = new JProgressBar(0, impactedFiles.size());
         progressBar.setStringPainted(true);
         progressDialog.getContentPane().add(progressBar);
         progressDialog.setSize(400, 80);
         progressDialog.setLocationRelativeTo(parent);
+        // Expressions compilées une fois pour tout le projet (Matcher par classe, sans état partagé)
+        String quoted = java.util.regex.Pattern.quote(oldName);
+        java.util.regex.Pattern declaration = java.util.regex.Pattern.compile(
+            "((?:public|private|protected|static|final|synchronized|native|abstract|strictfp)?\\s*[\\w<>\\[\\]]+\\s+)" + quoted + "(\\s*\\()");
+        java.util.regex.Pattern call = java.util.regex.Pattern.compile("(?<![\\w$])" + quoted + "\\s*\\(");
+        java.util.regex.Pattern override = java.util.regex.Pattern.compile(
+            "(@Override\\s+public\\s+[\\w<>\\[\\]]+\\s+)" + quoted + "(\\s*\\()");
+        java.util.regex.Pattern javadoc = java.util.regex.Pattern.compile("(@see|@link|@throws|@exception)\\s+" + quoted + "\\b");
+        String replacement = java.util.regex.Matcher.quoteReplacement(newName);
         new Thread(() -> {
-            int count = 0;
-            for (String classKey : impactedFiles) {
-                String code = modifiedCode.get(classKey);
-                if (code == null) continue;
-                code = code.replaceAll("((?:public|private|protected|static|final|synchronized|native|abstract|strictfp)?\\s*[\\w<>\\[\\]]+\\s+)" + 
-                                      java.util.regex.Pattern.quote(oldName) + "(\\s*\\()", "$1" + newName + "$2");
-                code = code.replaceAll("(?<![\\w$])" + java.util.regex.Pattern.quote(oldName) + "\\s*\\(", newName + "(");
-                code = code.replaceAll("(@Override\\s+public\\s+[\\w<>\\[\\]]+\\s+)" + 
-                                      java.util.regex.Pattern.quote(oldName) + "(\\s*\\()", "$1" + newName + "$2");
-                code = code.replaceAll("(@see|@link|@throws|@exception)\\s+" + 
-                                      java.util.regex.Pattern.quote(oldName) + "\\b", "$1 " + newName);
-                modifiedCode.put(classKey, code);
-                if (openTabs.containsKey(classKey)) {
-                    openTabs.get(classKey).setText(code);
-                }
-                count++;
-                final int progress = count;
-                javax.swing.SwingUtilities.invokeLater(() -> progressBar.setValue(progress));
+            journal.begin("Renommage de la méthode " + oldName + " en " + newName);
+            try {
+                recordMethodRename(oldName, newName);
+                projectRewriter.rewrite(impactedFiles, modifiedCode::get, (classKey, code) -> {
+                    code = declaration.matcher(code).replaceAll("$1" + replacement + "$2");
+                    code = call.matcher(code).replaceAll(replacement + "(");
+                    code = override.matcher(code).replaceAll("$1" + replacement + "$2");
+                    return javadoc.matcher(code).replaceAll("$1 " + replacement);
+                }, progressBar::setValue);
+            } finally {
+                journal.end();
             }
             javax.swing.SwingUtilities.invokeLater(() -> {
                 progressDialog.dispose();
@@ -169,7 +179,21 @@ public class RenameManager {
     public void renameMethodInContext(String oldName, String newName, Map<String, String> modifiedCode, 
                                       Map<String, RSyntaxTextArea> openTabs, DecompilerManager decompilerManager,
                                       Map<String, byte[]> classBytes) {
+        Set<String> scope = memberScope(MemberIndex.Kind.METHOD, oldName, null);
+        journal.begin("Renommage de la méthode " + oldName + " en " + newName);
+        try {
+            applyMethodRenameInContext(oldName, newName, scope, modifiedCode, openTabs, decompilerManager, classBytes);
+        } finally {
+            journal.end();
+        }
+    }
+
+    private void applyMethodRenameInContext(String oldName, String newName, Set<String> scope, Map<String, String> modifiedCode,
+                                            Map<String, RSyntaxTextArea> openTabs, DecompilerManager decompilerManager,
+                                            Map<String, byte[]> classBytes) {
+        recordMethodRename(oldName, newName);
         for (String classKey : modifiedCode.keySet()) {
+            if (scope != null && !scope.contains(classKey)) continue;
             String code = modifiedCode.get(classKey);
             if (code == null) continue;
             List<IdentifierAnalyzer.IdentifierContext> methodContexts = identifierAnalyzer.findAllIdentifiers(code, oldName);
@@ -180,13 +204,14 @@ public class RenameManager {
                     newCode = identifierAnalyzer.renameIdentifierInContext(newCode, context, newName);
                 }
             }
+            journal.recordText(classKey, code, newCode);
             modifiedCode.put(classKey, newCode);
             if (openTabs.containsKey(classKey)) {
                 openTabs.get(classKey).setText(newCode);
             }
         }
-        for (String classKey : classBytes.keySet()) {
-            if (!modifiedCode.containsKey(classKey)) {
+        for (String classKey : scope != null ? scope : classBytes.keySet()) {
+            if (!modifiedCode.containsKey(classKey) && classBytes.containsKey(classKey)) {
                 String code = decompilerManager.decompileClassToString(classKey, classBytes.get(classKey));
                 List<IdentifierAnalyzer.IdentifierContext> methodContexts = identifierAnalyzer.findAllIdentifiers(code, oldName);
                 String newCode = code;
@@ -196,6 +221,7 @@ public class RenameManager {
                         newCode = identifierAnalyzer.renameIdentifierInContext(newCode, context, newName);
                     }
                 }
+                journal.recordText(classKey, code, newCode);
                 modifiedCode.put(classKey, newCode);
                 if (openTabs.containsKey(classKey)) {
                     openTabs.get(classKey).setText(newCode);
@@ -204,6 +230,82 @@ public class RenameManager {
         }
     }
     
+    // Renommage côté bytecode, journalisé avec son inverse
+    private void recordMethodRename(String oldName, String newName) {
+        bytecodeRemapper.recordMethodRename(oldName, newName);
+        journal.recordAction(() -> bytecodeRemapper.recordMethodRename(newName, oldName),
+                             () -> bytecodeRemapper.recordMethodRename(oldName, newName));
+    }
+
+    /**
+     * Renommage d'un champ côté bytecode (owner : nom interne actuel du déclarant, null si
+     * inconnu), journalisé avec son inverse. À appeler dans un lot du journal.
+     */
+    public void recordFieldRename(String owner, String oldName, String newName) {
+        bytecodeRemapper.recordFieldRename(owner, oldName, newName);
+        journal.recordAction(() -> bytecodeRemapper.recordFieldRename(owner, newName, oldName),
+                             () -> bytecodeRemapper.recordFieldRename(owner, oldName, newName));
+    }
+
+    /**
+     * Classes à parcourir pour renommer un membre : celles qui le déclarent ou l'utilisent
+     * d'après le bytecode. Si le nom est inconnu du bytecode (déjà renommé dans le code),
+     * on retombe sur le parcours complet (fallback, null = tout le projet).
+     */
+    private Set<String> memberScope(MemberIndex.Kind kind, String name, Set<String> fallback) {
+        Set<String> scope = referenceManager.getClassesUsingMember(kind, name);
+        if (scope.isEmpty()) return fallback != null ? new HashSet<>(fallback) : null;
+        System.out.println("DEBUG: Renommage de " + name + " limité à " + scope.size() + " classes");
+        if (fallback != null) scope.retainAll(fallback);
+        return scope;
+    }
+
+    /**
+     * Classes à réécrire pour renommer une classe : elle-même, ses classes internes et leurs
+     * utilisateurs d'après le bytecode. Classe absente de l'index : tout le projet (fallback).
+     * Le texte n'est consulté que là où le bytecode ne dit rien : onglets modifiés à la main
+     * (editedTabs) et classes sans bytecode, où l'on cherche le nom simple.
+     * Peut tourner hors de l'EDT.
+     */
+    private Set<String> classScope(String classKey, String simpleName, Map<String, String> editedTabs) {
+        Set<String> scope = referenceManager.getClassRenameImpact(classKey);
+        if (scope.isEmpty()) return new HashSet<>(modifiedCode.keySet());
+        int fromBytecode = scope.size();
+        for (Map.Entry<String, String> e : editedTabs.entrySet()) {
+            if (!scope.contains(e.getKey()) && containsWord(e.getValue(), simpleName)) scope.add(e.getKey());
+        }
+        for (Map.Entry<String, String> e : modifiedCode.entrySet()) {
+            String key = e.getKey();
+            if (scope.contains(key) || classBytes.containsKey(key)) continue;
+            if (containsWord(e.getValue(), simpleName)) scope.add(key);
+        }
+        System.out.println("DEBUG: Renommage de " + classKey + " limité à " + scope.size() + " classes ("
+                           + (scope.size() - fromBytecode) + " trouvées hors bytecode)");
+        return scope;
+    }
+
+    /**
+     * Texte des onglets modifiés à la main (différent du code enregistré). À appeler sur l'EDT.
+     */
+    private Map<String, String> editedTabTexts() {
+        Map<String, String> edited = new HashMap<>();
+        for (Map.Entry<String, RSyntaxTextArea> e : openTabs.entrySet()) {
+            String text = TabManager.textOf(e.getValue());
+            if (!text.equals(modifiedCode.get(e.getKey()))) edited.put(e.getKey(), text);
+        }
+        return edited;
+    }
+
+    private static boolean containsWord(String code, String word) {
+        if (code == null) return false;
+        for (int i = code.indexOf(word); i >= 0; i = code.indexOf(word, i + 1)) {
+            int end = i + word.length();
+            if ((i == 0 || !Character.isJavaIdentifierPart(code.charAt(i - 1)))
+                && (end == code.length() || !Character.isJavaIdentifierPart(code.charAt(end)))) return true;
+        }
+        return false;
+    }
+
     private boolean hasNameConflict(String code, String name, String type) {
         java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("(?:public|private|protected)?\\s*" + type + "\\s+" + 
                                                                           java.util.regex.Pattern.quote(name) + "\\b");
@@ -0,0 +1,387 @@
+import java.util.*;
+
+/**
+ * Index inversé du code source du projet pour la recherche globale.
+ * Deux familles de listes : trigrammes (3 caractères consécutifs, en minuscules) pour les
+ * recherches de sous-chaînes, et identifiants entiers pour les recherches de mots.
+ * Une requête ne vérifie ensuite que les classes candidates au lieu de tout le projet.
+ *
+ * Chaque version d'une classe reçoit un nouvel identifiant de document ; l'ancien est
+ * simplement marqué mort et les listes sont compactées quand les morts deviennent nombreux.
+ * Les listes sont des identifiants croissants encodés en deltas varint.
+ */
+public class SearchIndex implements SourceCodeMap.Listener {
+
+    // Liste d'identifiants de documents croissants, encodés en deltas varint
+    private static class Postings {
+        byte[] data = new byte[8];
+        int length;
+        int count;
+        int last = -1;
+
+        void add(int id) {
+            if (id == last) return;
+            if (length + 5 > data.length) data = Arrays.copyOf(data, data.length * 2);
+            int delta = id - last;
+            while ((delta & ~0x7f) != 0) {
+                data[length++] = (byte) ((delta & 0x7f) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            last = id;
+            count++;
+        }
+
+        int[] decode() {
+            int[] ids = new int[count];
+            int pos = 0;
+            int id = -1;
+            for (int i = 0; i < count; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    delta |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += delta;
+                ids[i] = id;
+            }
+            return ids;
+        }
+    }
+
+    // Table trigramme -> liste, à adressage ouvert (pas de Long en boîte : des millions d'accès par indexation)
+    private static class TrigramTable {
+        long[] grams = new long[1 << 14];
+        Postings[] lists = new Postings[1 << 14];
+        int size;
+
+        Postings get(long gram) {
+            int mask = grams.length - 1;
+            for (int i = slot(gram, mask); lists[i] != null; i = (i + 1) & mask) {
+                if (grams[i] == gram) return lists[i];
+            }
+            return null;
+        }
+
+        Postings getOrCreate(long gram) {
+            // Grandit avant d'insérer : rehash ne recopie pas les listes vides, dont celle
+            // qu'on s'apprête à rendre à l'appelant
+            if ((size + 1) * 2 > grams.length) rehash(grams.length * 2);
+            int mask = grams.length - 1;
+            int i = slot(gram, mask);
+            for (; lists[i] != null; i = (i + 1) & mask) {
+                if (grams[i] == gram) return lists[i];
+            }
+            Postings p = new Postings();
+            grams[i] = gram;
+            lists[i] = p;
+            size++;
+            return p;
+        }
+
+        private static int slot(long gram, int mask) {
+            long h = gram * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 40) & mask;
+        }
+
+        // Recopie les listes non vides (après compactage, ou pour grandir)
+        void rehash(int capacity) {
+            long[] oldGrams = grams;
+            Postings[] oldLists = lists;
+            grams = new long[capacity];
+            lists = new Postings[capacity];
+            size = 0;
+            int mask = capacity - 1;
+            for (int j = 0; j < oldLists.length; j++) {
+                if (oldLists[j] == null || oldLists[j].count == 0) continue;
+                int i = slot(oldGrams[j], mask);
+                while (lists[i] != null) i = (i + 1) & mask;
+                grams[i] = oldGrams[j];
+                lists[i] = oldLists[j];
+                size++;
+            }
+        }
+
+        void clear() {
+            grams = new long[1 << 14];
+            lists = new Postings[1 << 14];
+            size = 0;
+        }
+    }
+
+    private final Map<String, Integer> docByKey = new HashMap<>();
+    private String[] keys = new String[1024];
+    private String[] texts = new String[1024];
+    private final BitSet alive = new BitSet();
+    private int docCount = 0;
+    private int deadCount = 0;
+    private final TrigramTable trigrams = new TrigramTable();
+    private final Map<String, Postings> tokens = new HashMap<>();
+    // Tampon de dédoublonnage des trigrammes d'un texte (utilisé sous le verrou de l'index)
+    private long[] seenGrams = new long[1 << 12];
+    private int[] seenStamp = new int[1 << 12];
+    private int stamp = 0;
+
+    @Override
+    public void onSourceChanged(String className, String code) {
+        if (code == null) remove(className);
+        else update(className, code);
+    }
+
+    @Override
+    public void onCleared() {
+        clear();
+    }
+
+    /**
+     * Indexe (ou réindexe) le code d'une classe.
+     */
+    public synchronized void update(String className, String code) {
+        Integer previous = docByKey.get(className);
+        if (previous != null) kill(previous);
+        if (docCount == keys.length) {
+            keys = Arrays.copyOf(keys, docCount * 2);
+            texts = Arrays.copyOf(texts, docCount * 2);
+        }
+        int id = docCount++;
+        keys[id] = className;
+        texts[id] = code;
+        alive.set(id);
+        docByKey.put(className, id);
+        for (long t : distinctTrigrams(code)) {
+            trigrams.getOrCreate(t).add(id);
+        }
+        for (String token : distinctTokens(code)) {
+            tokens.computeIfAbsent(token, k -> new Postings()).add(id);
+        }
+        if (deadCount > Math.max(1024, docByKey.size())) compact();
+    }
+
+    public synchronized void remove(String className) {
+        Integer id = docByKey.remove(className);
+        if (id != null) kill(id);
+    }
+
+    public synchronized void clear() {
+        docByKey.clear();
+        Arrays.fill(keys, 0, docCount, null);
+        Arrays.fill(texts, 0, docCount, null);
+        alive.clear();
+        docCount = 0;
+        deadCount = 0;
+        trigrams.clear();
+        tokens.clear();
+    }
+
+    public synchronized boolean contains(String className) {
+        return docByKey.containsKey(className);
+    }
+
+    public synchronized int size() {
+        return docByKey.size();
+    }
+
+    /**
+     * Classes dont le code peut contenir ce texte (sans distinction de casse), avec le code indexé.
+     * Les classes absentes du résultat ne le contiennent sûrement pas.
+     */
+    public synchronized Map<String, String> candidates(String text) {
+        int[] ids;
+        if (text.length() >= 3) {
+            ids = trigramCandidates(text);
+        } else if (text.length() == 2 && isIdentifier(text)) {
+            // Trop court pour les trigrammes : union des identifiants qui contiennent le texte
+            // (un seul caractère se trouve presque partout, le filtrage ne vaudrait pas son coût)
+            ids = tokenCandidates(text);
+        } else {
+            ids = null;
+        }
+        return toSources(ids);
+    }
+
+    /**
+     * Toutes les classes indexées, avec leur code (requête impossible à filtrer).
+     */
+    public synchronized Map<String, String> allSources() {
+        return toSources(null);
+    }
+
+    /**
+     * Classes contenant cet identifiant comme mot entier (casse respectée), avec le code indexé.
+     */
+    public synchronized Map<String, String> candidatesForToken(String token) {
+        Postings p = tokens.get(token);
+        return toSources(p != null ? p.decode() : new int[0]);
+    }
+
+    private int[] trigramCandidates(String text) {
+        long[] wanted = distinctTrigrams(text);
+        List<Postings> lists = new ArrayList<>(wanted.length);
+        for (long t : wanted) {
+            Postings p = trigrams.get(t);
+            if (p == null) return new int[0];
+            lists.add(p);
+        }
+        // La liste la plus courte d'abord : les intersections suivantes restent petites
+        lists.sort(Comparator.comparingInt(p -> p.count));
+        int[] ids = lists.get(0).decode();
+        for (int i = 1; i < lists.size() && ids.length > 0; i++) {
+            ids = intersect(ids, lists.get(i).decode());
+        }
+        return ids;
+    }
+
+    private int[] tokenCandidates(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        BitSet found = new BitSet();
+        for (Map.Entry<String, Postings> e : tokens.entrySet()) {
+            if (e.getKey().toLowerCase(Locale.ROOT).contains(lower)) {
+                for (int id : e.getValue().decode()) found.set(id);
+            }
+        }
+        return found.stream().toArray();
+    }
+
+    // ids == null : pas de filtrage possible, toutes les classes sont candidates
+    private Map<String, String> toSources(int[] ids) {
+        Map<String, String> result = new HashMap<>();
+        if (ids == null) {
+            for (int id = alive.nextSetBit(0); id >= 0; id = alive.nextSetBit(id + 1)) result.put(keys[id], texts[id]);
+            return result;
+        }
+        for (int id : ids) {
+            if (alive.get(id)) result.put(keys[id], texts[id]);
+        }
+        return result;
+    }
+
+    private void kill(int id) {
+        alive.clear(id);
+        keys[id] = null;
+        texts[id] = null;
+        deadCount++;
+    }
+
+    // Renumérote les documents vivants et retire les morts de toutes les listes
+    private void compact() {
+        int[] remap = new int[docCount];
+        int n = 0;
+        for (int id = 0; id < docCount; id++) {
+            if (alive.get(id)) {
+                remap[id] = n;
+                keys[n] = keys[id];
+                texts[n] = texts[id];
+                docByKey.put(keys[n], n);
+                n++;
+            } else {
+                remap[id] = -1;
+            }
+        }
+        Arrays.fill(keys, n, docCount, null);
+        Arrays.fill(texts, n, docCount, null);
+        alive.clear();
+        alive.set(0, n);
+        docCount = n;
+        deadCount = 0;
+        for (Postings p : trigrams.lists) {
+            if (p != null) compactPostings(p, remap);
+        }
+        for (Postings p : tokens.values()) compactPostings(p, remap);
+        trigrams.rehash(trigrams.grams.length);
+        tokens.values().removeIf(p -> p.count == 0);
+    }
+
+    private static void compactPostings(Postings p, int[] remap) {
+        int[] ids = p.decode();
+        p.length = 0;
+        p.count = 0;
+        p.last = -1;
+        for (int id : ids) {
+            if (remap[id] >= 0) p.add(remap[id]);
+        }
+        if (p.data.length > 64 && p.length < p.data.length / 4) p.data = Arrays.copyOf(p.data, Math.max(8, p.length * 2));
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // Trigrammes distincts en minuscules, trois caractères de 16 bits dans un long.
+    // Le dédoublonnage passe par une table réutilisée (marquée par génération) plutôt qu'un tri.
+    private long[] distinctTrigrams(String text) {
+        int n = text.length() - 2;
+        if (n <= 0) return new long[0];
+        if (seenGrams.length < n * 2) {
+            int capacity = Integer.highestOneBit(n * 2 - 1) << 1;
+            seenGrams = new long[capacity];
+            seenStamp = new int[capacity];
+            stamp = 0;
+        }
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(seenStamp, 0);
+            stamp = 1;
+        }
+        int mask = seenGrams.length - 1;
+        long[] out = new long[n];
+        int m = 0;
+        char c1 = lower(text.charAt(0));
+        char c2 = lower(text.charAt(1));
+        for (int k = 0; k < n; k++) {
+            char c3 = lower(text.charAt(k + 2));
+            long gram = ((long) c1 << 32) | ((long) c2 << 16) | c3;
+            c1 = c2;
+            c2 = c3;
+            int i = TrigramTable.slot(gram, mask);
+            while (seenStamp[i] == stamp && seenGrams[i] != gram) i = (i + 1) & mask;
+            if (seenStamp[i] == stamp) continue;
+            seenStamp[i] = stamp;
+            seenGrams[i] = gram;
+            out[m++] = gram;
+        }
+        return Arrays.copyOf(out, m);
+    }
+
+    private static char lower(char c) {
+        if (c < 128) return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        return Character.toLowerCase(c);
+    }
+
+    private static Set<String> distinctTokens(String text) {
+        Set<String> result = new HashSet<>();
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            // Suites de caractères d'identifiant (les nombres forment aussi des mots)
+            if (Character.isJavaIdentifierPart(text.charAt(i))) {
+                int start = i++;
+                while (i < n && Character.isJavaIdentifierPart(text.charAt(i))) i++;
+                result.add(text.substring(start, i));
+            } else {
+                i++;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isIdentifier(String text) {
+        if (text.isEmpty()) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isJavaIdentifierPart(text.charAt(i))) return false;
+        }
+        return true;
+    }
+}
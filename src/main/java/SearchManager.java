@@ -1,85 +1,316 @@
 import javax.swing.*;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Gère la recherche dans le code.
+ * La recherche globale passe par un {@link SearchIndex} tenu à jour à chaque changement
+ * de modifiedCode : seules les classes candidates sont relues. Elle tourne sur un thread
+ * dédié qui répartit les classes sur tous les cœurs par paquets, et publie ses résultats
+ * par lots dans l'ordre des classes ; une nouvelle recherche annule la précédente.
  */
 public class SearchManager {
+    private static final int PUBLISH_BATCH_SIZE = 500;
+    private static final long PUBLISH_INTERVAL_NANOS = 50_000_000L;
+    // Taille d'un paquet de la recherche globale : quelques classes par cœur pour équilibrer
+    private static final int SHARDS_PER_CORE = 16;
+    // Classes analysées en parallèle entre deux publications de la recherche bytecode
+    private static final int BYTECODE_CHUNK_SIZE = 256;
+    
+    // Un résultat de recherche globale
+    private static class Hit {
+        final String key;
+        final String className;
+        final int line;
+        // Texte à retrouver dans le code décompilé (recherche bytecode), sinon null
+        final String needle;
+        
+        Hit(String key, String className, int line) {
+            this(key, className, line, null);
+        }
+        
+        Hit(String key, String className, int line, String needle) {
+            this.key = key;
+            this.className = className;
+            this.line = line;
+            this.needle = needle;
+        }
+    }
+    
     private final Map<String, byte[]> classBytes;
     private final Map<String, String> modifiedCode;
     private final Map<String, Integer> resultToLine = new HashMap<>();
     private final Map<String, String> resultToClass = new HashMap<>();
+    private final Map<String, String> resultToNeedle = new HashMap<>();
     private final DefaultListModel<String> globalSearchListModel;
+    // Recherche dans l'éditeur, une par onglet
+    private final Map<RSyntaxTextArea, EditorSearch> editorSearches = new HashMap<>();
     private final DecompilerManager decompilerManager;
+    private final SearchIndex searchIndex = new SearchIndex();
+    // Incrémenté à chaque recherche : les lots d'une recherche dépassée sont ignorés
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+    private ExecutorService searchExecutor;
+    private volatile Future<?> currentSearch;
     
-    public SearchManager(Map<String, byte[]> classBytes, Map<String, String> modifiedCode, 
+    public SearchManager(Map<String, byte[]> classBytes, SourceCodeMap modifiedCode, 
                         DefaultListModel<String> globalSearchListModel, DecompilerManager decompilerManager) {
         this.classBytes = classBytes;
         this.modifiedCode = modifiedCode;
         this.globalSearchListModel = globalSearchListModel;
         this.decompilerManager = decompilerManager;
+        modifiedCode.addListener(searchIndex);
+        for (Map.Entry<String, String> e : modifiedCode.entrySet()) {
+            searchIndex.update(e.getKey(), e.getValue());
+        }
     }
     
     /**
-     * Effectue une recherche globale dans toutes les classes.
+     * Recherche globale du texte littéral (voir {@link #performGlobalSearch(SearchQuery, Map)}).
      */
     public void performGlobalSearch(String searchText, Map<String, RSyntaxTextArea> openTabs) {
-        if (searchText == null || searchText.isEmpty()) {
-            globalSearchListModel.clear();
+        SearchQuery query = searchText == null || searchText.isEmpty() ? null
+                          : SearchQuery.compile(searchText, false, false, false);
+        performGlobalSearch(query, openTabs);
+    }
+    
+    /**
+     * Lance une recherche globale dans toutes les classes, en tâche de fond.
+     * À appeler depuis l'EDT : la recherche précédente est annulée et les résultats
+     * arrivent dans la liste par lots, les premiers dès qu'ils sont trouvés.
+     */
+    public void performGlobalSearch(SearchQuery query, Map<String, RSyntaxTextArea> openTabs) {
+        cancelGlobalSearch();
+        clearResults();
+        if (query == null || query.getText().isEmpty()) {
             return;
         }
-        
+        // Le texte des onglets ouverts se lit sur l'EDT
+        Map<String, String> tabTexts = new HashMap<>();
+        for (Map.Entry<String, RSyntaxTextArea> e : openTabs.entrySet()) {
+            tabTexts.put(e.getKey(), TabManager.textOf(e.getValue()));
+        }
+        int generation = searchGeneration.get();
+        currentSearch = getSearchExecutor().submit(() -> runGlobalSearch(query, tabTexts, generation));
+    }
+    
+    /**
+     * Recherche dans le bytecode de toutes les classes (voir {@link BytecodeSearch}), sans décompiler.
+     * Les classes sont analysées en parallèle par paquets ; les résultats gardent l'ordre des classes.
+     */
+    public void performBytecodeSearch(List<SearchQuery> terms) {
+        cancelGlobalSearch();
+        clearResults();
+        if (terms.isEmpty()) return;
+        int generation = searchGeneration.get();
+        currentSearch = getSearchExecutor().submit(() -> runBytecodeSearch(terms, generation));
+    }
+    
+    private void runBytecodeSearch(List<SearchQuery> terms, int generation) {
+        long start = System.nanoTime();
+        List<String> classNames = new ArrayList<>(classBytes.keySet());
+        int hits = 0;
+        for (int from = 0; from < classNames.size(); from += BYTECODE_CHUNK_SIZE) {
+            if (searchGeneration.get() != generation) return;
+            List<String> chunk = classNames.subList(from, Math.min(classNames.size(), from + BYTECODE_CHUNK_SIZE));
+            List<List<BytecodeSearch.Match>> found = chunk.parallelStream()
+                .map(className -> BytecodeSearch.search(classBytes.get(className), terms))
+                .collect(java.util.stream.Collectors.toList());
+            List<Hit> batch = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                String className = chunk.get(i);
+                String shortName = className.replace(".class", "");
+                for (BytecodeSearch.Match m : found.get(i)) {
+                    batch.add(new Hit(shortName + "." + m.member + "  " + m.description, className, 0, m.needle));
+                }
+            }
+            hits += batch.size();
+            if (!batch.isEmpty()) publish(batch, generation);
+        }
+        System.out.println("DEBUG: Recherche bytecode : " + hits + " résultats dans " + classNames.size()
+                + " classes en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+    
+    private void clearResults() {
         globalSearchListModel.clear();
         resultToLine.clear();
         resultToClass.clear();
-        
+        resultToNeedle.clear();
+    }
+    
+    /**
+     * Annule la recherche globale en cours ; ses lots pas encore affichés sont ignorés.
+     */
+    public void cancelGlobalSearch() {
+        searchGeneration.incrementAndGet();
+        Future<?> search = currentSearch;
+        // Pas d'interruption : une décompilation Procyon en cours se termine proprement
+        if (search != null) search.cancel(false);
+        currentSearch = null;
+    }
+    
+    private void runGlobalSearch(SearchQuery query, Map<String, String> tabTexts, int generation) {
+        // Classes indexées qui peuvent contenir la requête ; les autres sont écartées sans lecture
+        Map<String, String> candidates = query.candidates(searchIndex);
+        long start = System.nanoTime();
+        List<String> toScan = new ArrayList<>();
         for (String className : classBytes.keySet()) {
-            String code;
-            RSyntaxTextArea area = openTabs.get(className);
-            if (area != null) {
-                code = area.getText();
-            } else if (modifiedCode.containsKey(className)) {
-                code = modifiedCode.get(className);
-            } else {
-                code = decompilerManager.decompileClassToString(className, classBytes.get(className));
+            if (tabTexts.containsKey(className) || candidates.containsKey(className) || !searchIndex.contains(className)) {
+                toScan.add(className);
             }
-            
-            String[] lines = code.split("\n");
-            for (int i = 0; i < lines.length; i++) {
-                if (lines[i].contains(searchText)) {
-                    String preview = lines[i].trim();
-                    if (preview.length() > 120) preview = preview.substring(0, 120) + "...";
-                    String key = className.replace(".class", "") + ":" + (i + 1) + "  " + preview;
-                    globalSearchListModel.addElement(key);
-                    resultToLine.put(key, i);
-                    resultToClass.put(key, className);
-                }
+        }
+        // Paquets traités en parallèle (fork/join du pool commun) puis publiés dans l'ordre des
+        // classes : l'ordre des résultats ne dépend pas du nombre de cœurs
+        int shardSize = SHARDS_PER_CORE * Runtime.getRuntime().availableProcessors();
+        // Le premier résultat part tout de suite, les suivants toutes les PUBLISH_INTERVAL_NANOS
+        long lastPublish = start - PUBLISH_INTERVAL_NANOS;
+        List<Hit> batch = new ArrayList<>();
+        int hits = 0;
+        for (int from = 0; from < toScan.size(); from += shardSize) {
+            if (searchGeneration.get() != generation) return;
+            List<String> shard = toScan.subList(from, Math.min(toScan.size(), from + shardSize));
+            List<List<Hit>> found = shard.parallelStream()
+                .map(className -> scanClass(className, query, tabTexts, candidates, generation))
+                .collect(java.util.stream.Collectors.toList());
+            for (List<Hit> classHits : found) {
+                batch.addAll(classHits);
+                hits += classHits.size();
+            }
+            long now = System.nanoTime();
+            if (!batch.isEmpty() && (batch.size() >= PUBLISH_BATCH_SIZE || now - lastPublish >= PUBLISH_INTERVAL_NANOS)) {
+                publish(batch, generation);
+                batch = new ArrayList<>();
+                lastPublish = now;
             }
         }
+        if (!batch.isEmpty()) publish(batch, generation);
+        System.out.println("DEBUG: Recherche globale '" + query.getText() + "' : " + hits + " résultats, " + toScan.size() + "/"
+                + classBytes.size() + " classes lues en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+    
+    // Résultats d'une classe, dans l'ordre des lignes (appelé en parallèle)
+    private List<Hit> scanClass(String className, SearchQuery query, Map<String, String> tabTexts,
+                                Map<String, String> candidates, int generation) {
+        if (searchGeneration.get() != generation) return Collections.emptyList();
+        String code = tabTexts.get(className);
+        if (code == null) code = candidates.get(className);
+        if (code == null) code = modifiedCode.get(className);
+        if (code == null) code = decompilerManager.decompileClassToString(className, classBytes.get(className));
+        if (code == null) return Collections.emptyList();
+        List<Hit> out = new ArrayList<>();
+        addMatchingLines(className, code, query, out);
+        return out;
+    }
+    
+    // Un seul ajout (un seul événement) par lot dans la liste, sur l'EDT
+    private void publish(List<Hit> batch, int generation) {
+        SwingUtilities.invokeLater(() -> {
+            if (searchGeneration.get() != generation) return;
+            List<String> keys = new ArrayList<>(batch.size());
+            for (Hit hit : batch) {
+                keys.add(hit.key);
+                resultToLine.put(hit.key, hit.line);
+                resultToClass.put(hit.key, hit.className);
+                if (hit.needle != null) resultToNeedle.put(hit.key, hit.needle);
+            }
+            globalSearchListModel.addAll(keys);
+        });
+    }
+    
+    // Ajoute un résultat par ligne contenant la requête, sans découper tout le code
+    private static void addMatchingLines(String className, String code, SearchQuery query, List<Hit> out) {
+        SearchQuery.Finder finder = query.finder(code);
+        int line = 0;
+        int lineStart = 0;
+        int idx = finder.find(0);
+        while (idx >= 0) {
+            // Une regex peut commencer sur des fins de ligne (^\\s*...) : la ligne retenue
+            // est celle du premier caractère visible de l'occurrence
+            while (idx < finder.end() && (code.charAt(idx) == '\n' || code.charAt(idx) == '\r')) idx++;
+            for (int i = code.indexOf('\n', lineStart); i >= 0 && i < idx; i = code.indexOf('\n', lineStart)) {
+                line++;
+                lineStart = i + 1;
+            }
+            int lineEnd = code.indexOf('\n', idx);
+            if (lineEnd < 0) lineEnd = code.length();
+            String preview = code.substring(lineStart, lineEnd).trim();
+            if (preview.length() > 120) preview = preview.substring(0, 120) + "...";
+            out.add(new Hit(className.replace(".class", "") + ":" + (line + 1) + "  " + preview, className, line));
+            idx = lineEnd < code.length() ? finder.find(lineEnd + 1) : -1;
+        }
+    }
+    
+    private synchronized ExecutorService getSearchExecutor() {
+        if (searchExecutor == null) {
+            searchExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "global-search");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return searchExecutor;
     }
     
     /**
-     * Recherche dans le code actuel.
+     * Recherche dans le code actuel : sélectionne l'occurrence suivante après le curseur.
      */
     public void searchInCode(RSyntaxTextArea area, String searchText) {
+        searchInCode(area, searchText, true);
+    }
+    
+    /**
+     * Occurrence suivante (ou précédente) dans le code actuel, avec retour au début (ou à la fin).
+     */
+    public void searchInCode(RSyntaxTextArea area, String searchText, boolean forward) {
         if (area == null || searchText == null || searchText.isEmpty()) {
             return;
         }
-        
-        String code = area.getText();
-        int idx = code.indexOf(searchText);
-        if (idx >= 0) {
-            area.setCaretPosition(idx);
-            area.requestFocus();
-            area.select(idx, idx + searchText.length());
-        }
+        EditorSearch find = getEditorSearch(area);
+        find.setQuery(searchText, true, false);
+        if (find.selectNext(forward)) area.requestFocus();
+    }
+    
+    /**
+     * Recherche pendant la frappe : surligne les occurrences visibles et garde la sélection
+     * sur l'occurrence courante tant qu'elle correspond encore.
+     */
+    public void updateInCodeSearch(RSyntaxTextArea area, String searchText) {
+        if (area == null) return;
+        EditorSearch find = getEditorSearch(area);
+        find.setQuery(searchText, true, false);
+        if (searchText != null && !searchText.isEmpty()) find.selectFrom(area.getSelectionStart());
+    }
+    
+    /**
+     * Oublie la recherche d'un éditeur dont l'onglet est fermé et détache ses écouteurs.
+     */
+    public void releaseEditor(RSyntaxTextArea area) {
+        EditorSearch find = editorSearches.remove(area);
+        if (find != null) find.dispose();
     }
     
+    private EditorSearch getEditorSearch(RSyntaxTextArea area) {
+        return editorSearches.computeIfAbsent(area, a -> new EditorSearch(a,
+            new javax.swing.text.DefaultHighlighter.DefaultHighlightPainter(java.awt.Color.ORANGE)));
+    }
+    
+    /**
+     * Résultats affichés -> ligne (0-based), remplis sur l'EDT au fil des lots.
+     */
     public Map<String, Integer> getResultToLine() {
         return resultToLine;
     }
     
+    /**
+     * Résultats de la recherche bytecode -> texte à retrouver dans le code décompilé.
+     */
+    public Map<String, String> getResultToNeedle() {
+        return resultToNeedle;
+    }
+    
     public Map<String, String> getResultToClass() {
         return resultToClass;
     }
@@ -0,0 +1,299 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Requête de recherche compilée une seule fois : texte littéral, expression régulière,
+ * mot entier (identifiant Java) et/ou sans distinction de casse.
+ * Un texte littéral sensible à la casse passe par indexOf (intrinsèque de la JVM), un texte
+ * littéral sans casse par un Boyer-Moore-Horspool sur les caractères repliés ; les regex par
+ * un Pattern appliqué directement au code (CharSequence), sans découpage en lignes.
+ * Une requête compilée est immuable et peut servir à plusieurs threads à la fois.
+ */
+public class SearchQuery {
+    private final String text;
+    private final boolean regex;
+    private final boolean wholeWord;
+    private final boolean ignoreCase;
+    // null = recherche littérale (indexOf ou Horspool)
+    private final Pattern pattern;
+    // Littéral sans casse : texte replié et table de décalage Horspool (sinon null)
+    private final char[] folded;
+    private final int[] shift;
+    // Mot entier littéral : bornes vérifiées après coup (un lookbehind en tête de Pattern
+    // empêche la recherche rapide du littéral)
+    private final boolean checkBounds;
+
+    private SearchQuery(String text, boolean regex, boolean wholeWord, boolean ignoreCase, Pattern pattern) {
+        this.text = text;
+        this.regex = regex;
+        this.wholeWord = wholeWord;
+        this.ignoreCase = ignoreCase;
+        this.pattern = pattern;
+        this.checkBounds = wholeWord && !regex;
+        if (pattern == null && ignoreCase) {
+            folded = new char[text.length()];
+            for (int i = 0; i < folded.length; i++) folded[i] = fold(text.charAt(i));
+            // Décalage indexé par l'octet bas du caractère : les collisions gardent le plus petit,
+            // ce qui reste correct
+            shift = new int[256];
+            Arrays.fill(shift, folded.length);
+            for (int i = 0; i < folded.length - 1; i++) shift[folded[i] & 0xff] = folded.length - 1 - i;
+        } else {
+            folded = null;
+            shift = null;
+        }
+    }
+
+    /**
+     * Compile une requête. Lève PatternSyntaxException si l'expression régulière est invalide.
+     */
+    public static SearchQuery compile(String text, boolean regex, boolean wholeWord, boolean ignoreCase)
+            throws PatternSyntaxException {
+        if (!regex) {
+            return new SearchQuery(text, false, wholeWord, ignoreCase, null);
+        }
+        String expr = text;
+        if (wholeWord) {
+            // Bornes d'identifiant Java ($ et lettres non ASCII compris), plus juste que \b
+            // pour du code décompilé ou obfusqué
+            expr = "(?<!\\p{javaJavaIdentifierPart})(?:" + expr + ")(?!\\p{javaJavaIdentifierPart})";
+        }
+        int flags = Pattern.MULTILINE;
+        if (ignoreCase) flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        return new SearchQuery(text, regex, wholeWord, ignoreCase, Pattern.compile(expr, flags));
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Matcher réutilisable sur un code, pour enchaîner les recherches sans réallouer.
+     */
+    public Finder finder(String code) {
+        return new Finder(code);
+    }
+
+    /**
+     * Recherches successives dans un même code.
+     */
+    public class Finder {
+        private final String code;
+        private final Matcher matcher;
+        private int end = -1;
+
+        private Finder(String code) {
+            this.code = code;
+            this.matcher = pattern != null ? pattern.matcher(code) : null;
+        }
+
+        /**
+         * Position de la prochaine occurrence à partir de from, ou -1.
+         */
+        public int find(int from) {
+            while (from <= code.length()) {
+                int idx;
+                if (folded != null) {
+                    idx = indexOfFolded(from);
+                    end = idx >= 0 ? idx + folded.length : -1;
+                } else if (matcher == null) {
+                    idx = code.indexOf(text, from);
+                    end = idx >= 0 ? idx + text.length() : -1;
+                } else if (matcher.find(from)) {
+                    idx = matcher.start();
+                    end = matcher.end();
+                } else {
+                    idx = -1;
+                }
+                if (idx < 0 || !checkBounds || isWordAt(idx, end)) return idx;
+                from = idx + 1;
+            }
+            return -1;
+        }
+
+        // Horspool sans allocation : comparaison de droite à gauche, saut selon le dernier caractère
+        private int indexOfFolded(int from) {
+            int m = folded.length;
+            int last = m - 1;
+            int limit = code.length() - m;
+            for (int i = Math.max(0, from); i <= limit; ) {
+                char c = fold(code.charAt(i + last));
+                if (c == folded[last]) {
+                    int j = last - 1;
+                    while (j >= 0 && fold(code.charAt(i + j)) == folded[j]) j--;
+                    if (j < 0) return i;
+                }
+                i += shift[c & 0xff];
+            }
+            return -1;
+        }
+
+        private boolean isWordAt(int start, int end) {
+            return (start == 0 || !Character.isJavaIdentifierPart(code.charAt(start - 1)))
+                && (end >= code.length() || !Character.isJavaIdentifierPart(code.charAt(end)));
+        }
+
+        /**
+         * Fin de la dernière occurrence trouvée.
+         */
+        public int end() {
+            return end;
+        }
+    }
+
+    /**
+     * Classes indexées qui peuvent contenir la requête, avec leur code.
+     * Les classes indexées absentes du résultat ne la contiennent sûrement pas.
+     */
+    public Map<String, String> candidates(SearchIndex index) {
+        String literal;
+        if (regex) {
+            literal = requiredLiteral(text);
+            // (?i) dans l'expression : même prudence que le mode sans casse
+            if (text.contains("(?") && !isAscii(literal)) return index.allSources();
+        } else if (wholeWord && !ignoreCase && isIdentifier(text)) {
+            // Mot entier sensible à la casse : la liste de l'identifiant est exacte
+            return index.candidatesForToken(text);
+        } else {
+            literal = text;
+        }
+        // Les trigrammes sont en minuscules simples : sans casse, on ne s'y fie que pour l'ASCII
+        if (literal.isEmpty() || (ignoreCase && !isAscii(literal))) return index.allSources();
+        return index.candidates(literal);
+    }
+
+    /**
+     * Plus long morceau littéral obligatoire d'une expression régulière : une suite de caractères
+     * au premier niveau (hors groupes et classes), sans quantificateur qui la rende facultative.
+     * Toute occurrence de l'expression le contient. Chaîne vide si rien n'est sûr (alternative
+     * au premier niveau, mode commentaires...).
+     */
+    static String requiredLiteral(String expr) {
+        if (INLINE_COMMENTS_FLAG.matcher(expr).find()) return "";
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        int i = 0;
+        int n = expr.length();
+        while (i < n) {
+            char c = expr.charAt(i);
+            String literal = null;
+            int next = i + 1;
+            if (c == '\\') {
+                if (i + 1 >= n) break;
+                char e = expr.charAt(i + 1);
+                next = i + 2;
+                if (e == 'Q') {
+                    int stop = expr.indexOf("\\E", next);
+                    literal = expr.substring(next, stop < 0 ? n : stop);
+                    next = stop < 0 ? n : stop + 2;
+                } else if (!Character.isLetterOrDigit(e)) {
+                    literal = String.valueOf(e);
+                } else {
+                    next = skipEscape(expr, e, next);
+                }
+            } else if (c == '[') {
+                next = skipClass(expr, i);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|') {
+                if (depth == 0) return "";
+            } else if (c == '{') {
+                // Quantificateur {n,m} d'un élément déjà écarté
+                int close = expr.indexOf('}', i);
+                next = close < 0 ? n : close + 1;
+            } else if (".^$*+?".indexOf(c) < 0) {
+                literal = String.valueOf(c);
+            }
+            if (literal == null || depth > 0) {
+                best = longest(best, run);
+                i = next;
+                continue;
+            }
+            char q = next < n ? expr.charAt(next) : 0;
+            if (q == '?' || q == '*' || q == '{') {
+                // Dernier caractère facultatif : seul ce qui le précède est sûr
+                run.append(literal, 0, literal.length() - 1);
+                best = longest(best, run);
+            } else if (q == '+') {
+                run.append(literal);
+                best = longest(best, run);
+            } else {
+                run.append(literal);
+            }
+            i = next;
+        }
+        return longest(best, run);
+    }
+
+    private static final Pattern INLINE_COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z-]*x");
+
+    private static String longest(String best, StringBuilder run) {
+        String result = run.length() > best.length() ? run.toString() : best;
+        run.setLength(0);
+        return result;
+    }
+
+    // Fin d'un échappement non littéral (\d, \p{Lu}, \x41, \u00e9, \k<nom>, \12...)
+    private static int skipEscape(String expr, char e, int next) {
+        int n = expr.length();
+        if ((e == 'p' || e == 'P' || e == 'N' || e == 'x') && next < n && expr.charAt(next) == '{') {
+            int close = expr.indexOf('}', next);
+            return close < 0 ? n : close + 1;
+        }
+        if (e == 'k' && next < n && expr.charAt(next) == '<') {
+            int close = expr.indexOf('>', next);
+            return close < 0 ? n : close + 1;
+        }
+        if (e == 'p' || e == 'P' || e == 'c') return Math.min(n, next + 1);
+        if (e == 'x') return Math.min(n, next + 2);
+        if (e == 'u') return Math.min(n, next + 4);
+        if (Character.isDigit(e)) {
+            while (next < n && Character.isDigit(expr.charAt(next))) next++;
+        }
+        return next;
+    }
+
+    // Fin d'une classe de caractères [...], classes imbriquées comprises
+    private static int skipClass(String expr, int start) {
+        int n = expr.length();
+        int j = start + 1;
+        if (j < n && expr.charAt(j) == '^') j++;
+        if (j < n && expr.charAt(j) == ']') j++;
+        int depth = 1;
+        while (j < n && depth > 0) {
+            char c = expr.charAt(j);
+            if (c == '\\') j++;
+            else if (c == '[') depth++;
+            else if (c == ']') depth--;
+            j++;
+        }
+        return j;
+    }
+
+    // Même équivalence que Pattern.CASE_INSENSITIVE | UNICODE_CASE pour un caractère
+    private static char fold(char c) {
+        if (c < 128) return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static boolean isIdentifier(String s) {
+        if (s.isEmpty()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isJavaIdentifierPart(s.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 128) return false;
+        }
+        return true;
+    }
+}
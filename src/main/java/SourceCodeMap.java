@@ -0,0 +1,128 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Map nom de classe -> code source (décompilé ou modifié) qui prévient ses écouteurs
+ * à chaque changement, pour tenir à jour les index (recherche globale) sans tout reparcourir.
+ * Les lectures sont sans verrou ; les écritures sont sérialisées pour que les écouteurs
+ * voient les versions d'une même classe dans l'ordre.
+ */
+public class SourceCodeMap extends AbstractMap<String, String> {
+
+    /**
+     * Écouteur des changements de code.
+     */
+    public interface Listener {
+        /**
+         * Code d'une classe ajouté ou remplacé ; code null = classe retirée.
+         */
+        void onSourceChanged(String className, String code);
+
+        void onCleared();
+    }
+
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public String get(Object key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized String put(String key, String value) {
+        // put(clé, null) = pas d'entrée, comme ClassBytesMap
+        String old = value == null ? entries.remove(key) : entries.put(key, value);
+        if (!Objects.equals(old, value)) {
+            for (Listener l : listeners) l.onSourceChanged(key, value);
+        }
+        return old;
+    }
+
+    /**
+     * Enregistre un lot en une fois : aucune autre écriture ne s'intercale pendant le lot.
+     */
+    @Override
+    public synchronized void putAll(Map<? extends String, ? extends String> m) {
+        for (Map.Entry<? extends String, ? extends String> e : m.entrySet()) put(e.getKey(), e.getValue());
+    }
+
+    @Override
+    public synchronized String remove(Object key) {
+        String old = entries.remove(key);
+        if (old != null) {
+            for (Listener l : listeners) l.onSourceChanged((String) key, null);
+        }
+        return old;
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        for (Listener l : listeners) l.onCleared();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                Iterator<Map.Entry<String, String>> it = entries.entrySet().iterator();
+                return new Iterator<Map.Entry<String, String>>() {
+                    private String last;
+
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    public Map.Entry<String, String> next() {
+                        Map.Entry<String, String> e = it.next();
+                        last = e.getKey();
+                        return new AbstractMap.SimpleEntry<String, String>(e.getKey(), e.getValue()) {
+                            @Override
+                            public String setValue(String value) {
+                                super.setValue(value);
+                                return SourceCodeMap.this.put(getKey(), value);
+                            }
+                        };
+                    }
+
+                    public void remove() {
+                        if (last == null) throw new IllegalStateException();
+                        SourceCodeMap.this.remove(last);
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+}
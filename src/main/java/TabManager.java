@@ -3,17 +3,29 @@ import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
 import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
 import org.fife.ui.rtextarea.RTextScrollPane;
 import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class TabManager {
+    // Texte à appliquer à un onglet caché quand il redeviendra visible
+    private static final String PENDING_TEXT = "paladium.pendingText";
+    
     private final JTabbedPane tabbedPane;
     private final Map<String, RSyntaxTextArea> openTabs;
     private final ThemeManager themeManager;
+    // Prévenus à la fermeture d'un onglet, pour libérer ce qui est attaché à son éditeur
+    private final List<Consumer<RSyntaxTextArea>> tabClosedListeners = new ArrayList<>();
     
     public TabManager(JTabbedPane tabbedPane, Map<String, RSyntaxTextArea> openTabs, ThemeManager themeManager) {
         this.tabbedPane = tabbedPane;
         this.openTabs = openTabs;
         this.themeManager = themeManager;
+        tabbedPane.addChangeListener(e -> {
+            RSyntaxTextArea current = getCurrentTab();
+            if (current != null) applyPendingText(current);
+        });
     }
     
     public RSyntaxTextArea createOrGetTab(String className, Runnable onNewTab) {
@@ -23,6 +35,13 @@ public class TabManager {
             area.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_JAVA);
             area.setCodeFoldingEnabled(true);
             area.setEditable(true);
+            RSyntaxTextArea created = area;
+            // Toute modification directe du texte remplace un texte en attente
+            area.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+                public void insertUpdate(javax.swing.event.DocumentEvent e) { created.putClientProperty(PENDING_TEXT, null); }
+                public void removeUpdate(javax.swing.event.DocumentEvent e) { created.putClientProperty(PENDING_TEXT, null); }
+                public void changedUpdate(javax.swing.event.DocumentEvent e) {}
+            });
             openTabs.put(className, area);
             addClosableTab(className, area);
             if (onNewTab != null) onNewTab.run();
@@ -64,6 +83,7 @@ public class TabManager {
             if (closeIdx != -1) {
                 tabbedPane.remove(closeIdx);
                 openTabs.values().remove(area);
+                fireTabClosed(area);
             }
         });
         tabPanel.add(titleLabel);
@@ -94,9 +114,93 @@ public class TabManager {
         }
     }
     
+    /**
+     * Signale un avertissement sur l'onglet d'une classe (⚠ devant le titre, détail en info-bulle) ;
+     * warning null le retire.
+     */
+    public void setTabWarning(String className, String warning) {
+        RSyntaxTextArea area = openTabs.get(className);
+        if (area == null) return;
+        for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+            java.awt.Component comp = tabbedPane.getComponentAt(i);
+            if (comp instanceof RTextScrollPane && ((RTextScrollPane) comp).getViewport().getView() == area) {
+                String title = tabbedPane.getTitleAt(i);
+                tabbedPane.setToolTipTextAt(i, warning);
+                JPanel tabPanel = (JPanel) tabbedPane.getTabComponentAt(i);
+                if (tabPanel != null) {
+                    JLabel titleLabel = (JLabel) tabPanel.getComponent(0);
+                    titleLabel.setText((warning != null ? "⚠ " : "") + title + "  ");
+                    titleLabel.setToolTipText(warning);
+                }
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Ferme l'onglet d'une classe s'il est ouvert.
+     */
+    public void closeTab(String className) {
+        RSyntaxTextArea area = openTabs.remove(className);
+        if (area == null) return;
+        for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+            java.awt.Component comp = tabbedPane.getComponentAt(i);
+            if (comp instanceof RTextScrollPane && ((RTextScrollPane) comp).getViewport().getView() == area) {
+                tabbedPane.remove(i);
+                break;
+            }
+        }
+        fireTabClosed(area);
+    }
+    
     public void closeAllTabs() {
+        List<RSyntaxTextArea> closed = new ArrayList<>(openTabs.values());
         tabbedPane.removeAll();
         openTabs.clear();
+        for (RSyntaxTextArea area : closed) fireTabClosed(area);
+    }
+    
+    public void addTabClosedListener(Consumer<RSyntaxTextArea> listener) {
+        tabClosedListeners.add(listener);
+    }
+    
+    private void fireTabClosed(RSyntaxTextArea area) {
+        for (Consumer<RSyntaxTextArea> listener : tabClosedListeners) listener.accept(area);
+    }
+    
+    /**
+     * Remplace le texte d'un onglet ; s'il est caché, le setText (coûteux sur un gros fichier)
+     * est reporté au moment où il sera affiché. À appeler sur l'EDT.
+     */
+    public void setTextWhenVisible(RSyntaxTextArea area, String text) {
+        if (area.isShowing()) {
+            area.putClientProperty(PENDING_TEXT, null);
+            setTextKeepingCaret(area, text);
+        } else {
+            area.putClientProperty(PENDING_TEXT, text);
+        }
+    }
+    
+    /**
+     * Texte d'un onglet, y compris un texte en attente pas encore appliqué.
+     */
+    public static String textOf(RSyntaxTextArea area) {
+        Object pending = area.getClientProperty(PENDING_TEXT);
+        return pending instanceof String ? (String) pending : area.getText();
+    }
+    
+    private void applyPendingText(RSyntaxTextArea area) {
+        Object pending = area.getClientProperty(PENDING_TEXT);
+        if (pending instanceof String) {
+            area.putClientProperty(PENDING_TEXT, null);
+            setTextKeepingCaret(area, (String) pending);
+        }
+    }
+    
+    private static void setTextKeepingCaret(RSyntaxTextArea area, String text) {
+        int caret = area.getCaretPosition();
+        area.setText(text);
+        area.setCaretPosition(Math.min(caret, text.length()));
     }
     
     public RSyntaxTextArea getCurrentTab() {
@@ -0,0 +1,33 @@
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SearchIndexTest {
+
+    /**
+     * Assez de documents aléatoires pour forcer plusieurs agrandissements de la table
+     * des trigrammes : chaque document doit rester trouvable par ses propres trigrammes.
+     */
+    @Test
+    public void trigramsSurviveTableGrowth() {
+        Random random = new Random(42);
+        String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 .;(){}";
+        SearchIndex index = new SearchIndex();
+        String[] docs = new String[400];
+        for (int d = 0; d < docs.length; d++) {
+            StringBuilder sb = new StringBuilder(300);
+            for (int i = 0; i < 300; i++) sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            docs[d] = sb.toString();
+            index.update("Doc" + d, docs[d]);
+        }
+        for (int d = 0; d < docs.length; d++) {
+            for (int i = 0; i + 3 <= docs[d].length(); i++) {
+                String gram = docs[d].substring(i, i + 3);
+                assertTrue("Doc" + d + " introuvable pour '" + gram + "'",
+                        index.candidates(gram).containsKey("Doc" + d));
+            }
+        }
+    }
+}